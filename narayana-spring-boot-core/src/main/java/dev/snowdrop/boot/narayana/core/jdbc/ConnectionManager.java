@@ -35,7 +35,7 @@ public class ConnectionManager {
         this.password = password;
     }
 
-    public void connectAndAccept(XAResourceConsumer consumer) throws XAException {
+    public synchronized void connectAndAccept(XAResourceConsumer consumer) throws XAException {
         if (isConnected()) {
             try {
                 consumer.accept(this.xaConnection.getXAResource());
@@ -55,7 +55,7 @@ public class ConnectionManager {
         }
     }
 
-    public <T> T connectAndApply(XAResourceFunction<T> function) throws XAException {
+    public synchronized <T> T connectAndApply(XAResourceFunction<T> function) throws XAException {
         if (isConnected()) {
             try {
                 return function.apply(this.xaConnection.getXAResource());
@@ -74,7 +74,20 @@ public class ConnectionManager {
         }
     }
 
-    public void connect() throws XAException {
+    /**
+     * Apply a function as part of a recovery scan. A scan spans several {@code recover} calls, which have to use the
+     * same connection from {@link #connect()} until {@link #disconnect()}.
+     *
+     * @param function the function to apply
+     * @param <T>      the result type
+     * @return the result of the function
+     * @throws XAException if the connection failed or the function threw an exception
+     */
+    public <T> T connectAndScan(XAResourceFunction<T> function) throws XAException {
+        return connectAndApply(function);
+    }
+
+    public synchronized void connect() throws XAException {
         if (isConnected()) {
             return;
         }
@@ -92,7 +105,7 @@ public class ConnectionManager {
         }
     }
 
-    public void disconnect() {
+    public synchronized void disconnect() {
         if (!isConnected()) {
             return;
         }
@@ -105,11 +118,11 @@ public class ConnectionManager {
         }
     }
 
-    public boolean isConnected() {
+    public synchronized boolean isConnected() {
         return this.xaConnection != null;
     }
 
-    private XAConnection createXAConnection() throws SQLException {
+    protected XAConnection createXAConnection() throws SQLException {
         if (this.user == null && this.password == null) {
             return this.xaDataSource.getXAConnection();
         }
@@ -117,7 +130,7 @@ public class ConnectionManager {
         return this.xaDataSource.getXAConnection(this.user, this.password);
     }
 
-    private XAException createXAException(String message) {
+    protected XAException createXAException(String message) {
         XAException xaException = new XAException(message);
         xaException.errorCode = XAException.XAER_RMFAIL;
         return xaException;
@@ -16,6 +16,14 @@
 
 package dev.snowdrop.boot.narayana.core.jdbc;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import javax.sql.XADataSource;
 import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
@@ -30,8 +38,15 @@ import com.arjuna.ats.jta.recovery.XAResourceRecoveryHelper;
  */
 public class DataSourceXAResourceRecoveryHelper implements XAResourceRecoveryHelper, XAResource {
 
+    private static final int UNRESOLVED_SCANS = 3;
+
     private final ConnectionManager connectionManager;
     private final String name;
+    private final RecoveryRateLimiter rateLimiter;
+    private final RecoveryCircuitBreaker circuitBreaker;
+    private final int maxXidsPerScan;
+    private final boolean pagedScan;
+    private volatile Map<XidKey, Integer> returnedXids = Map.of();
 
     /**
      * Create a new {@link DataSourceXAResourceRecoveryHelper} instance.
@@ -52,8 +67,71 @@ public class DataSourceXAResourceRecoveryHelper implements XAResourceRecoveryHel
      * @param name         the datasource name or {@code null}
      */
     public DataSourceXAResourceRecoveryHelper(XADataSource xaDataSource, String user, String password, String name) {
-        this.connectionManager = new ConnectionManager(xaDataSource, user, password);
+        this(new ConnectionManager(xaDataSource, user, password), name);
+    }
+
+    /**
+     * Create a new {@link DataSourceXAResourceRecoveryHelper} instance.
+     *
+     * @param connectionManager the connection manager used to access the database
+     * @param name              the datasource name or {@code null}
+     */
+    public DataSourceXAResourceRecoveryHelper(ConnectionManager connectionManager, String name) {
+        this(connectionManager, name, null);
+    }
+
+    /**
+     * Create a new {@link DataSourceXAResourceRecoveryHelper} instance. Commits, rollbacks and forgets of recovered
+     * branches wait for a permit of the rate limiter, so that recovery doesn't flood a database which just came back.
+     * If no permit can be reserved in time, or the wait is interrupted, they fail with {@link XAException#XA_RETRY}
+     * and are retried by a later recovery pass.
+     *
+     * @param connectionManager the connection manager used to access the database
+     * @param name              the datasource name or {@code null}
+     * @param rateLimiter       the rate limiter for completions or {@code null}
+     */
+    public DataSourceXAResourceRecoveryHelper(ConnectionManager connectionManager, String name, RecoveryRateLimiter rateLimiter) {
+        this(connectionManager, name, rateLimiter, null);
+    }
+
+    /**
+     * Create a new {@link DataSourceXAResourceRecoveryHelper} instance. While the circuit breaker is open, the database
+     * is left out of recovery scans instead of waiting for the connect timeout of the driver on every scan, and
+     * branch operations fail fast with {@link XAException#XAER_RMFAIL}.
+     *
+     * @param connectionManager the connection manager used to access the database
+     * @param name              the datasource name or {@code null}
+     * @param rateLimiter       the rate limiter for completions or {@code null}
+     * @param circuitBreaker    the circuit breaker for connection attempts or {@code null}
+     */
+    public DataSourceXAResourceRecoveryHelper(ConnectionManager connectionManager, String name, RecoveryRateLimiter rateLimiter,
+            RecoveryCircuitBreaker circuitBreaker) {
+        this(connectionManager, name, rateLimiter, circuitBreaker, 0, false);
+    }
+
+    /**
+     * Create a new {@link DataSourceXAResourceRecoveryHelper} instance. A recovery scan returns at most
+     * {@code maxXidsPerScan} in-doubt branches, the remaining ones are picked up by the following scans. Branches
+     * returned by several consecutive scans without being resolved are returned after all other ones, so that they
+     * can't starve them. With paged scans, the branches are fetched from the driver in chunks with
+     * {@link XAResource#TMNOFLAGS} after the initial {@link XAResource#TMSTARTRSCAN}, until enough branches are found
+     * or the driver returns no further branches. Without paged scans the driver reads all branches at once.
+     *
+     * @param connectionManager the connection manager used to access the database
+     * @param name              the datasource name or {@code null}
+     * @param rateLimiter       the rate limiter for completions or {@code null}
+     * @param circuitBreaker    the circuit breaker for connection attempts or {@code null}
+     * @param maxXidsPerScan    maximum number of branches returned by a recovery scan or 0 for no limit
+     * @param pagedScan         whether to fetch the branches in chunks from the driver
+     */
+    public DataSourceXAResourceRecoveryHelper(ConnectionManager connectionManager, String name, RecoveryRateLimiter rateLimiter,
+            RecoveryCircuitBreaker circuitBreaker, int maxXidsPerScan, boolean pagedScan) {
+        this.connectionManager = connectionManager;
         this.name = name;
+        this.rateLimiter = rateLimiter;
+        this.circuitBreaker = circuitBreaker;
+        this.maxXidsPerScan = maxXidsPerScan;
+        this.pagedScan = pagedScan;
     }
 
     @Override
@@ -64,8 +142,14 @@ public class DataSourceXAResourceRecoveryHelper implements XAResourceRecoveryHel
     @Override
     public XAResource[] getXAResources() {
         if (!this.connectionManager.isConnected()) {
-            try {
+            if (this.circuitBreaker != null && !this.circuitBreaker.tryAcquire(() -> {
                 this.connectionManager.connect();
+                return null;
+            })) {
+                return new XAResource[0];
+            }
+            try {
+                connect();
             } catch (XAException ignored) {
                 return new XAResource[0];
             }
@@ -77,7 +161,10 @@ public class DataSourceXAResourceRecoveryHelper implements XAResourceRecoveryHel
     @Override
     public Xid[] recover(int flag) throws XAException {
         try {
-            return this.connectionManager.connectAndApply(delegate -> delegate.recover(flag));
+            if (flag != XAResource.TMSTARTRSCAN || (this.maxXidsPerScan <= 0 && !this.pagedScan)) {
+                return this.connectionManager.connectAndScan(delegate -> delegate.recover(flag));
+            }
+            return this.connectionManager.connectAndScan(this::scan);
         } finally {
             if (flag == XAResource.TMENDRSCAN) {
                 this.connectionManager.disconnect();
@@ -87,11 +174,13 @@ public class DataSourceXAResourceRecoveryHelper implements XAResourceRecoveryHel
 
     @Override
     public void start(Xid xid, int flags) throws XAException {
+        checkCircuitBreaker();
         this.connectionManager.connectAndAccept(delegate -> delegate.start(xid, flags));
     }
 
     @Override
     public void end(Xid xid, int flags) throws XAException {
+        checkCircuitBreaker();
         this.connectionManager.connectAndAccept(delegate -> delegate.end(xid, flags));
     }
 
@@ -102,12 +191,12 @@ public class DataSourceXAResourceRecoveryHelper implements XAResourceRecoveryHel
 
     @Override
     public void commit(Xid xid, boolean onePhase) throws XAException {
-        this.connectionManager.connectAndAccept(delegate -> delegate.commit(xid, onePhase));
+        complete(delegate -> delegate.commit(xid, onePhase));
     }
 
     @Override
     public void rollback(Xid xid) throws XAException {
-        this.connectionManager.connectAndAccept(delegate -> delegate.rollback(xid));
+        complete(delegate -> delegate.rollback(xid));
     }
 
     @Override
@@ -117,7 +206,7 @@ public class DataSourceXAResourceRecoveryHelper implements XAResourceRecoveryHel
 
     @Override
     public void forget(Xid xid) throws XAException {
-        this.connectionManager.connectAndAccept(delegate -> delegate.forget(xid));
+        complete(delegate -> delegate.forget(xid));
     }
 
     @Override
@@ -129,4 +218,103 @@ public class DataSourceXAResourceRecoveryHelper implements XAResourceRecoveryHel
     public boolean setTransactionTimeout(int seconds) throws XAException {
         return this.connectionManager.connectAndApply(delegate -> delegate.setTransactionTimeout(seconds));
     }
+
+    /**
+     * Collect the in-doubt branches of a new recovery scan. Branches returned by the last {@value #UNRESOLVED_SCANS}
+     * scans are considered unresolvable for now and only fill up the space left by other branches. Paging stops at the
+     * first chunk without new branches, so drivers which ignore {@link XAResource#TMNOFLAGS} and return all branches
+     * on every call are read only twice.
+     */
+    private Xid[] scan(XAResource delegate) throws XAException {
+        int limit = this.maxXidsPerScan > 0 ? this.maxXidsPerScan : Integer.MAX_VALUE;
+        Map<XidKey, Integer> previousXids = this.returnedXids;
+        List<Xid> xids = new ArrayList<>();
+        List<Xid> unresolvedXids = new ArrayList<>();
+        Set<XidKey> seen = new HashSet<>();
+        Xid[] chunk = delegate.recover(XAResource.TMSTARTRSCAN);
+        while (chunk != null && chunk.length > 0) {
+            boolean found = false;
+            for (Xid xid : chunk) {
+                XidKey key = new XidKey(xid);
+                if (!seen.add(key)) {
+                    continue;
+                }
+                found = true;
+                if (previousXids.getOrDefault(key, 0) < UNRESOLVED_SCANS) {
+                    if (xids.size() < limit) {
+                        xids.add(xid);
+                    }
+                } else if (unresolvedXids.size() < limit) {
+                    unresolvedXids.add(xid);
+                }
+            }
+            if (!found || !this.pagedScan || xids.size() >= limit) {
+                break;
+            }
+            chunk = delegate.recover(XAResource.TMNOFLAGS);
+        }
+        for (int i = 0; i < unresolvedXids.size() && xids.size() < limit; i++) {
+            xids.add(unresolvedXids.get(i));
+        }
+        Map<XidKey, Integer> returned = new HashMap<>();
+        for (Xid xid : xids) {
+            XidKey key = new XidKey(xid);
+            returned.put(key, previousXids.getOrDefault(key, 0) + 1);
+        }
+        this.returnedXids = returned;
+        return xids.toArray(new Xid[0]);
+    }
+
+    private void complete(XAResourceConsumer completion) throws XAException {
+        checkCircuitBreaker();
+        if (this.rateLimiter == null) {
+            this.connectionManager.connectAndAccept(completion);
+            return;
+        }
+        try {
+            if (!this.rateLimiter.acquire()) {
+                throw new XAException(XAException.XA_RETRY);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XAException(XAException.XA_RETRY);
+        }
+        long startTime = System.nanoTime();
+        try {
+            this.connectionManager.connectAndAccept(completion);
+        } finally {
+            this.rateLimiter.completed(System.nanoTime() - startTime);
+        }
+    }
+
+    private void checkCircuitBreaker() throws XAException {
+        if (this.circuitBreaker != null && this.circuitBreaker.isOpen()) {
+            throw new XAException(XAException.XAER_RMFAIL);
+        }
+    }
+
+    private void connect() throws XAException {
+        try {
+            this.connectionManager.connect();
+        } catch (XAException e) {
+            if (this.circuitBreaker != null) {
+                this.circuitBreaker.failure();
+            }
+            throw e;
+        }
+        if (this.circuitBreaker != null) {
+            this.circuitBreaker.success();
+        }
+    }
+
+    private record XidKey(int formatId, ByteBuffer globalTransactionId, ByteBuffer branchQualifier) {
+
+        private XidKey(Xid xid) {
+            this(xid.getFormatId(), wrap(xid.getGlobalTransactionId()), wrap(xid.getBranchQualifier()));
+        }
+
+        private static ByteBuffer wrap(byte[] bytes) {
+            return bytes != null ? ByteBuffer.wrap(bytes) : null;
+        }
+    }
 }
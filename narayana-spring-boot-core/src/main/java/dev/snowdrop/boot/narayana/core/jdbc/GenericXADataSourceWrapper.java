@@ -19,6 +19,9 @@ package dev.snowdrop.boot.narayana.core.jdbc;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.sql.DataSource;
 import javax.sql.XADataSource;
@@ -30,6 +33,7 @@ import com.arjuna.ats.internal.jta.recovery.arjunacore.XARecoveryModule;
 import com.arjuna.ats.jta.recovery.XAResourceRecoveryHelper;
 import dev.snowdrop.boot.narayana.core.properties.RecoveryProperties;
 import dev.snowdrop.boot.narayana.core.properties.TransactionalDriverProperties;
+import org.jboss.logging.Logger;
 import org.springframework.boot.jdbc.DatabaseDriver;
 import org.springframework.boot.jdbc.XADataSourceWrapper;
 import org.springframework.jdbc.support.JdbcUtils;
@@ -42,9 +46,12 @@ import org.springframework.jdbc.support.JdbcUtils;
  */
 public class GenericXADataSourceWrapper implements XADataSourceWrapper {
 
+    private static final Logger LOGGER = Logger.getLogger(GenericXADataSourceWrapper.class);
+
     private final XARecoveryModule xaRecoveryModule;
     private final TransactionalDriverProperties transactionalDriverProperties;
     private final RecoveryProperties recoveryCredentials;
+    private final Map<String, XAResourceRecoveryHelper> recoveryHelpers = new ConcurrentHashMap<>();
 
     /**
      * Create a new {@link GenericXADataSourceWrapper} instance.
@@ -90,7 +97,9 @@ public class GenericXADataSourceWrapper implements XADataSourceWrapper {
     }
 
     /**
-     * Register newly created recovery helper with the {@link XARecoveryModule} and delegate data source wrapping.
+     * Register newly created recovery helper with the {@link XARecoveryModule} and delegate data source wrapping. Data
+     * sources connecting to the same database URL with the same user share the recovery helper registered for the
+     * first of them, so that recovery scans the resource manager only once.
      *
      * @param dataSource {@link XADataSource} that needs to be wrapped.
      * @return wrapped data source
@@ -98,38 +107,82 @@ public class GenericXADataSourceWrapper implements XADataSourceWrapper {
      */
     @Override
     public DataSource wrapDataSource(XADataSource dataSource) throws Exception {
-        if (this.recoveryCredentials.isEnabled()) {
+        try (Connection conn = dataSource.getXAConnection().getConnection()) {
+            DatabaseMetaData metaData = conn.getMetaData();
+            if (this.recoveryCredentials.isEnabled()) {
+                registerRecoveryHelper(dataSource, metaData);
+            }
+            registerModifier(metaData);
+        }
+        return new NarayanaDataSource(dataSource, this.transactionalDriverProperties);
+    }
+
+    private void registerRecoveryHelper(XADataSource dataSource, DatabaseMetaData metaData) throws SQLException {
+        String url = metaData.getURL();
+        if (url == null) {
+            this.xaRecoveryModule.addXAResourceRecoveryHelper(getRecoveryHelper(dataSource));
+            return;
+        }
+        String resourceManager = url + ";user=" + metaData.getUserName();
+        AtomicBoolean registered = new AtomicBoolean();
+        this.recoveryHelpers.computeIfAbsent(resourceManager, key -> {
             XAResourceRecoveryHelper recoveryHelper = getRecoveryHelper(dataSource);
             this.xaRecoveryModule.addXAResourceRecoveryHelper(recoveryHelper);
+            registered.set(true);
+            return recoveryHelper;
+        });
+        if (!registered.get()) {
+            LOGGER.debugf("Data source %s uses the same database and user as an already registered one, sharing its recovery helper",
+                    dataSource);
         }
-        registerModifier(dataSource);
-        return new NarayanaDataSource(dataSource, this.transactionalDriverProperties);
     }
 
     private XAResourceRecoveryHelper getRecoveryHelper(XADataSource dataSource) {
+        return new DataSourceXAResourceRecoveryHelper(getConnectionManager(dataSource), this.transactionalDriverProperties.getName(),
+                getRateLimiter(), getCircuitBreaker(dataSource), this.recoveryCredentials.getMaxXidsPerScan(),
+                this.recoveryCredentials.isPagedScan());
+    }
+
+    private ConnectionManager getConnectionManager(XADataSource dataSource) {
+        if (this.recoveryCredentials.getMaxConnections() > 1) {
+            return new PooledConnectionManager(dataSource, this.recoveryCredentials.getUser(),
+                    this.recoveryCredentials.getPassword(), this.recoveryCredentials.getMaxConnections());
+        }
         if (this.recoveryCredentials.isValid()) {
-            return new DataSourceXAResourceRecoveryHelper(dataSource, this.recoveryCredentials.getUser(),
-                    this.recoveryCredentials.getPassword(), this.transactionalDriverProperties.getName());
+            return new ConnectionManager(dataSource, this.recoveryCredentials.getUser(), this.recoveryCredentials.getPassword());
         }
-        return new DataSourceXAResourceRecoveryHelper(dataSource, this.transactionalDriverProperties.getName());
+        return new ConnectionManager(dataSource, null, null);
     }
 
-    private void registerModifier(XADataSource dataSource) throws SQLException {
-        try (Connection conn = dataSource.getXAConnection().getConnection()) {
-            DatabaseMetaData metaData = conn.getMetaData();
-            String driver = metaData.getDriverName();
-            int major = metaData.getDriverMajorVersion();
-            int minor = metaData.getDriverMinorVersion();
-            switch (this.transactionalDriverProperties.getModifier()) {
-                case DEFAULT -> {
-                    switch (DatabaseDriver.fromProductName(JdbcUtils.commonDatabaseName(metaData.getDatabaseProductName()))) {
-                        case DB2, H2, MYSQL, ORACLE, SQLSERVER -> ModifierFactory.putModifier(driver, major, minor, IsSameRMModifier.class.getName());
-                        case POSTGRESQL -> ModifierFactory.putModifier(driver, major, minor, SupportsMultipleConnectionsModifier.class.getName());
-                    }
+    private RecoveryRateLimiter getRateLimiter() {
+        if (this.recoveryCredentials.getMaxXidsPerSecond() <= 0) {
+            return null;
+        }
+        return new RecoveryRateLimiter(this.recoveryCredentials.getMaxXidsPerSecond(), this.recoveryCredentials.getLatencyThreshold());
+    }
+
+    private RecoveryCircuitBreaker getCircuitBreaker(XADataSource dataSource) {
+        if (this.recoveryCredentials.getCircuitBreakerThreshold() <= 0) {
+            return null;
+        }
+        String name = this.transactionalDriverProperties.getName() != null ? this.transactionalDriverProperties.getName() : dataSource.toString();
+        return new RecoveryCircuitBreaker(name, this.recoveryCredentials.getCircuitBreakerThreshold(),
+                this.recoveryCredentials.getCircuitBreakerCooldown(), this.recoveryCredentials.getCircuitBreakerMaxCooldown());
+    }
+
+    private void registerModifier(DatabaseMetaData metaData) throws SQLException {
+        String driver = metaData.getDriverName();
+        int major = metaData.getDriverMajorVersion();
+        int minor = metaData.getDriverMinorVersion();
+        switch (this.transactionalDriverProperties.getModifier()) {
+            case DEFAULT -> {
+                switch (DatabaseDriver.fromProductName(JdbcUtils.commonDatabaseName(metaData.getDatabaseProductName()))) {
+                    case DB2, H2, MYSQL, ORACLE, SQLSERVER -> ModifierFactory.putModifier(driver, major, minor, IsSameRMModifier.class.getName());
+                    case POSTGRESQL -> ModifierFactory.putModifier(driver, major, minor, SupportsMultipleConnectionsModifier.class.getName());
                 }
-                case IS_SAME_RM -> ModifierFactory.putModifier(driver, major, minor, IsSameRMModifier.class.getName());
-                case SUPPORTS_MULTIPLE_CONNECTIONS -> ModifierFactory.putModifier(driver, major, minor, SupportsMultipleConnectionsModifier.class.getName());
             }
+            case IS_SAME_RM -> ModifierFactory.putModifier(driver, major, minor, IsSameRMModifier.class.getName());
+            case SUPPORTS_MULTIPLE_CONNECTIONS -> ModifierFactory.putModifier(driver, major, minor, SupportsMultipleConnectionsModifier.class.getName());
         }
     }
 }
@@ -0,0 +1,657 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jdbc;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.sql.ConnectionEventListener;
+import javax.sql.StatementEventListener;
+import javax.sql.XAConnection;
+import javax.sql.XADataSource;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.springframework.boot.jdbc.DatabaseDriver;
+
+final class MultiplexingXADataSource implements XADataSource {
+
+    /**
+     * Drivers known to support suspending and resuming several transaction branches on one physical connection.
+     */
+    static final Set<DatabaseDriver> SUPPORTED_DRIVERS = EnumSet.of(DatabaseDriver.DB2, DatabaseDriver.ORACLE);
+
+    private static final Set<String> SESSION_SETTERS = Set.of("setAutoCommit", "setTransactionIsolation", "setReadOnly",
+            "setCatalog", "setSchema");
+
+    private final XADataSource xaDataSource;
+    private final PhysicalConnection[] physicalConnections;
+    private final long leaseTimeoutNanos;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Create a new {@link MultiplexingXADataSource} instance. Logical connections are spread over a fixed number of
+     * physical connections, which a logical connection leases while it is in use. Waiting for a lease longer than the
+     * timeout fails with an {@link SQLException}. The transaction branch of an idle logical connection stays
+     * associated with its physical connection and is only suspended ({@code TMSUSPEND}) when another logical connection
+     * leases it, so that several transactions can be multiplexed over one physical connection without a round trip per
+     * call. Session state set by a logical connection, i.e. auto-commit, isolation, read-only, catalog and schema, is
+     * reset when the physical connection passes to another logical connection. Connections for other users than the
+     * configured one are not supported.
+     *
+     * @param xaDataSource        the XA DataSource
+     * @param physicalConnections number of physical connections
+     * @param leaseTimeout        maximum time to wait for a physical connection
+     */
+    MultiplexingXADataSource(XADataSource xaDataSource, int physicalConnections, Duration leaseTimeout) {
+        this.xaDataSource = xaDataSource;
+        this.leaseTimeoutNanos = leaseTimeout.toNanos();
+        this.physicalConnections = new PhysicalConnection[physicalConnections];
+        for (int i = 0; i < physicalConnections; i++) {
+            this.physicalConnections[i] = new PhysicalConnection();
+        }
+    }
+
+    /**
+     * Return the driver of the XA data source if it is known to support multiplexing.
+     *
+     * @param xaDataSource the XA DataSource
+     * @return the database driver if it supports multiplexing or {@code null}
+     */
+    static DatabaseDriver getSupportedDriver(XADataSource xaDataSource) {
+        for (DatabaseDriver driver : SUPPORTED_DRIVERS) {
+            if (xaDataSource.getClass().getName().equals(driver.getXaDataSourceClassName())) {
+                return driver;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public XAConnection getXAConnection() throws SQLException {
+        int index = Math.floorMod(this.next.getAndIncrement(), this.physicalConnections.length);
+        return new LogicalConnection(this.physicalConnections[index]);
+    }
+
+    @Override
+    public XAConnection getXAConnection(String user, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Multiplexed XA connections don't support per-user credentials");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return this.xaDataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        this.xaDataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        this.xaDataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return this.xaDataSource.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return this.xaDataSource.getParentLogger();
+    }
+
+    private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private static Map<String, Object> readSessionState(Connection connection) throws SQLException {
+        Map<String, Object> state = new HashMap<>();
+        state.put("setAutoCommit", connection.getAutoCommit());
+        state.put("setTransactionIsolation", connection.getTransactionIsolation());
+        state.put("setReadOnly", connection.isReadOnly());
+        state.put("setCatalog", connection.getCatalog());
+        try {
+            state.put("setSchema", connection.getSchema());
+        } catch (SQLFeatureNotSupportedException | AbstractMethodError ignored) {
+            // schema changes can't be reset, the physical connection is discarded instead
+        }
+        return state;
+    }
+
+    private static XAException createXAException(Exception cause) {
+        XAException xaException = new XAException(XAException.XAER_RMFAIL);
+        xaException.initCause(cause);
+        return xaException;
+    }
+
+    /**
+     * Physical connection shared by logical connections. Only one logical connection can lease it at a time, its state
+     * is only accessed by the lease holder.
+     */
+    private final class PhysicalConnection {
+
+        private final Semaphore lease = new Semaphore(1);
+        private volatile Thread owner;
+        private XAConnection xaConnection;
+        private Connection connection;
+        private XAResource xaResource;
+        private Map<String, Object> defaultSessionState = Map.of();
+        private Map<String, Object> sessionState = new HashMap<>();
+        private Object sessionOwner;
+        private Xid associatedXid;
+
+        private boolean isLeasedBy(Thread thread) {
+            return this.owner == thread;
+        }
+
+        private void acquire() throws SQLException {
+            try {
+                if (!this.lease.tryAcquire(MultiplexingXADataSource.this.leaseTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                    throw new SQLException("Timed out after " + Duration.ofNanos(MultiplexingXADataSource.this.leaseTimeoutNanos)
+                            + " waiting for a multiplexed physical connection");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a multiplexed physical connection", e);
+            }
+            this.owner = Thread.currentThread();
+            try {
+                if (this.xaConnection == null) {
+                    this.xaConnection = MultiplexingXADataSource.this.xaDataSource.getXAConnection();
+                    this.connection = this.xaConnection.getConnection();
+                    this.xaResource = this.xaConnection.getXAResource();
+                    this.defaultSessionState = readSessionState(this.connection);
+                }
+            } catch (SQLException | RuntimeException e) {
+                release();
+                throw e;
+            }
+        }
+
+        private void release() {
+            this.owner = null;
+            this.lease.release();
+        }
+
+        /**
+         * Associate the given branch with the physical connection, suspending the branch of another logical connection
+         * left associated with it. Without a branch, only the other branch is suspended.
+         */
+        private void associate(Xid xid) throws XAException {
+            if (xid != null && xid.equals(this.associatedXid)) {
+                return;
+            }
+            detach();
+            if (xid != null) {
+                this.xaResource.start(xid, XAResource.TMRESUME);
+                this.associatedXid = xid;
+            }
+        }
+
+        private void detach() throws XAException {
+            if (this.associatedXid != null) {
+                Xid xid = this.associatedXid;
+                this.associatedXid = null;
+                this.xaResource.end(xid, XAResource.TMSUSPEND);
+            }
+        }
+
+        /**
+         * Switch the session state to the one of the given logical connection, resetting the state changed by the
+         * previous one first. A physical connection which can't be reset is discarded.
+         */
+        private void switchSession(Object logicalConnection, Map<String, Object> state) throws SQLException {
+            if (this.sessionOwner == logicalConnection || (this.sessionState.isEmpty() && state.isEmpty())) {
+                this.sessionOwner = logicalConnection;
+                return;
+            }
+            try {
+                detach();
+                for (String setter : this.sessionState.keySet()) {
+                    if (!this.defaultSessionState.containsKey(setter)) {
+                        throw new SQLException("Default of " + setter + " is unknown");
+                    }
+                    applySessionState(setter, this.defaultSessionState.get(setter));
+                }
+                this.sessionState = new HashMap<>();
+                for (Map.Entry<String, Object> entry : state.entrySet()) {
+                    applySessionState(entry.getKey(), entry.getValue());
+                }
+                this.sessionState.putAll(state);
+                this.sessionOwner = logicalConnection;
+            } catch (XAException | SQLException | RuntimeException e) {
+                closeQuietly();
+                throw e instanceof SQLException sqlException ? sqlException
+                        : new SQLException("Failed to reset the session state of the physical connection", e);
+            }
+        }
+
+        private void recordSessionState(String setter, Object value, Map<String, Object> state) {
+            if (value != null && value.equals(this.defaultSessionState.get(setter))) {
+                state.remove(setter);
+                this.sessionState.remove(setter);
+            } else {
+                state.put(setter, value);
+                this.sessionState.put(setter, value);
+            }
+        }
+
+        private void applySessionState(String setter, Object value) throws SQLException {
+            switch (setter) {
+                case "setAutoCommit" -> this.connection.setAutoCommit((Boolean) value);
+                case "setTransactionIsolation" -> this.connection.setTransactionIsolation((Integer) value);
+                case "setReadOnly" -> this.connection.setReadOnly((Boolean) value);
+                case "setCatalog" -> this.connection.setCatalog((String) value);
+                case "setSchema" -> this.connection.setSchema((String) value);
+                default -> throw new SQLException("Unknown session state " + setter);
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                close();
+            } catch (SQLException ignored) {
+                // the connection is discarded anyway
+            }
+        }
+
+        private void close() throws SQLException {
+            if (this.xaConnection != null) {
+                try {
+                    this.xaConnection.close();
+                } finally {
+                    this.xaConnection = null;
+                    this.connection = null;
+                    this.xaResource = null;
+                    this.associatedXid = null;
+                    this.sessionState = new HashMap<>();
+                    this.sessionOwner = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Logical {@link XAConnection} leasing its physical connection between the first statement creation and the
+     * last statement close.
+     */
+    private final class LogicalConnection implements XAConnection, XAResource, InvocationHandler {
+
+        private final Map<String, Object> sessionState = new LinkedHashMap<>();
+        private PhysicalConnection physicalConnection;
+        private boolean dedicated;
+        private boolean closed;
+        private Connection connection;
+        private Xid xid;
+        private Xid suspendedXid;
+        private boolean leased;
+        private int openStatements;
+
+        private LogicalConnection(PhysicalConnection physicalConnection) {
+            this.physicalConnection = physicalConnection;
+        }
+
+        /**
+         * Acquire the physical connection. The lease isn't reentrant: if the current thread holds it already through
+         * another logical connection, e.g. for a suspended outer transaction, waiting for it would never return. A
+         * logical connection without transaction branch moves to a dedicated physical connection in this case, while a
+         * branch associated with the shared physical connection can't be moved and fails.
+         */
+        private synchronized void acquire() throws SQLException {
+            if (!this.dedicated && this.physicalConnection.isLeasedBy(Thread.currentThread())) {
+                if (this.xid != null || this.suspendedXid != null) {
+                    throw new SQLException("Physical connection of a transaction branch is leased by the current thread already");
+                }
+                this.physicalConnection = new PhysicalConnection();
+                this.dedicated = true;
+            }
+            this.physicalConnection.acquire();
+            try {
+                this.physicalConnection.switchSession(this, this.sessionState);
+            } catch (SQLException | RuntimeException e) {
+                this.physicalConnection.release();
+                throw e;
+            }
+        }
+
+        private synchronized void lease() throws SQLException {
+            if (this.leased) {
+                return;
+            }
+            acquire();
+            try {
+                this.physicalConnection.associate(this.xid);
+            } catch (XAException e) {
+                this.physicalConnection.release();
+                throw new SQLException("Failed to resume transaction branch " + this.xid, e);
+            }
+            this.leased = true;
+        }
+
+        /**
+         * Release the physical connection once no statement is open. The transaction branch stays associated with it
+         * until another logical connection leases it. Connections used outside a transaction keep their lease.
+         */
+        private synchronized void releaseIfIdle() {
+            if (!this.leased || this.openStatements > 0 || this.xid == null) {
+                return;
+            }
+            this.leased = false;
+            this.physicalConnection.release();
+        }
+
+        private synchronized void releaseLease() {
+            if (this.leased) {
+                this.leased = false;
+                this.openStatements = 0;
+                this.physicalConnection.release();
+            }
+        }
+
+        private synchronized void suspendLease() {
+            this.openStatements = 0;
+            releaseIfIdle();
+            releaseLease();
+        }
+
+        private synchronized void closeIfDedicated() throws SQLException {
+            if (this.closed && this.dedicated && !this.leased && this.xid == null && this.suspendedXid == null) {
+                this.physicalConnection.close();
+            }
+        }
+
+        @Override
+        public synchronized Connection getConnection() throws SQLException {
+            if (this.connection == null) {
+                this.connection = (Connection) Proxy.newProxyInstance(MultiplexingXADataSource.class.getClassLoader(),
+                        new Class<?>[]{Connection.class}, this);
+            }
+            return this.connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "MultiplexedConnection[" + this.physicalConnection.connection + "]";
+                case "isClosed":
+                    synchronized (this) {
+                        return this.connection != proxy;
+                    }
+                case "close":
+                    synchronized (this) {
+                        if (this.connection == proxy) {
+                            this.connection = null;
+                            suspendLease();
+                        }
+                    }
+                    return null;
+                default:
+                    break;
+            }
+            lease();
+            try {
+                Object result = invokeOn(this.physicalConnection.connection, method, args);
+                if (SESSION_SETTERS.contains(method.getName())) {
+                    synchronized (this) {
+                        this.physicalConnection.recordSessionState(method.getName(), args[0], this.sessionState);
+                    }
+                }
+                if (result instanceof Statement statement) {
+                    synchronized (this) {
+                        this.openStatements++;
+                    }
+                    return Proxy.newProxyInstance(MultiplexingXADataSource.class.getClassLoader(),
+                            new Class<?>[]{method.getReturnType()}, new LeasedStatement(statement, proxy));
+                }
+                return result;
+            } finally {
+                releaseIfIdle();
+            }
+        }
+
+        @Override
+        public XAResource getXAResource() {
+            return this;
+        }
+
+        @Override
+        public synchronized void close() throws SQLException {
+            this.connection = null;
+            this.closed = true;
+            suspendLease();
+            closeIfDedicated();
+        }
+
+        @Override
+        public void addConnectionEventListener(ConnectionEventListener listener) {
+        }
+
+        @Override
+        public void removeConnectionEventListener(ConnectionEventListener listener) {
+        }
+
+        @Override
+        public void addStatementEventListener(StatementEventListener listener) {
+        }
+
+        @Override
+        public void removeStatementEventListener(StatementEventListener listener) {
+        }
+
+        @Override
+        public synchronized void start(Xid xid, int flags) throws XAException {
+            if (flags == TMRESUME) {
+                this.xid = this.suspendedXid;
+                this.suspendedXid = null;
+                return;
+            }
+            boolean alreadyLeased = this.leased;
+            if (!alreadyLeased) {
+                acquireForXA();
+            }
+            try {
+                this.physicalConnection.detach();
+                this.physicalConnection.xaResource.start(xid, flags);
+                this.physicalConnection.associatedXid = xid;
+                this.xid = xid;
+                this.leased = true;
+                releaseIfIdle();
+            } finally {
+                if (!alreadyLeased && this.xid == null) {
+                    this.physicalConnection.release();
+                }
+            }
+        }
+
+        @Override
+        public synchronized void end(Xid xid, int flags) throws XAException {
+            try {
+                if (!this.leased) {
+                    acquireForXA();
+                    this.leased = true;
+                }
+                if (flags == TMSUSPEND) {
+                    if (xid.equals(this.physicalConnection.associatedXid)) {
+                        this.physicalConnection.detach();
+                    }
+                } else {
+                    try {
+                        this.physicalConnection.associate(xid);
+                        this.physicalConnection.xaResource.end(xid, flags);
+                    } finally {
+                        this.physicalConnection.associatedXid = null;
+                    }
+                }
+            } finally {
+                if (flags == TMSUSPEND) {
+                    this.suspendedXid = this.xid;
+                }
+                this.xid = null;
+                releaseLease();
+            }
+        }
+
+        private void acquireForXA() throws XAException {
+            try {
+                acquire();
+            } catch (SQLException e) {
+                throw createXAException(e);
+            }
+        }
+
+        private <T> T withPhysicalResource(XAResourceFunction<T> function) throws XAException {
+            synchronized (this) {
+                if (this.leased) {
+                    return function.apply(this.physicalConnection.xaResource);
+                }
+            }
+            acquireForXA();
+            try {
+                this.physicalConnection.detach();
+                return function.apply(this.physicalConnection.xaResource);
+            } finally {
+                this.physicalConnection.release();
+            }
+        }
+
+        private void completeBranch(XAResourceFunction<Void> function) throws XAException {
+            withPhysicalResource(function);
+            try {
+                closeIfDedicated();
+            } catch (SQLException e) {
+                throw createXAException(e);
+            }
+        }
+
+        @Override
+        public int prepare(Xid xid) throws XAException {
+            return withPhysicalResource(xaResource -> xaResource.prepare(xid));
+        }
+
+        @Override
+        public void commit(Xid xid, boolean onePhase) throws XAException {
+            completeBranch(xaResource -> {
+                xaResource.commit(xid, onePhase);
+                return null;
+            });
+        }
+
+        @Override
+        public void rollback(Xid xid) throws XAException {
+            completeBranch(xaResource -> {
+                xaResource.rollback(xid);
+                return null;
+            });
+        }
+
+        @Override
+        public void forget(Xid xid) throws XAException {
+            completeBranch(xaResource -> {
+                xaResource.forget(xid);
+                return null;
+            });
+        }
+
+        @Override
+        public Xid[] recover(int flag) throws XAException {
+            return withPhysicalResource(xaResource -> xaResource.recover(flag));
+        }
+
+        @Override
+        public boolean isSameRM(XAResource xaResource) {
+            return this == xaResource;
+        }
+
+        @Override
+        public int getTransactionTimeout() throws XAException {
+            return withPhysicalResource(XAResource::getTransactionTimeout);
+        }
+
+        @Override
+        public boolean setTransactionTimeout(int seconds) throws XAException {
+            return withPhysicalResource(xaResource -> xaResource.setTransactionTimeout(seconds));
+        }
+
+        /**
+         * Statement proxy keeping the physical connection leased until the statement is closed.
+         */
+        private final class LeasedStatement implements InvocationHandler {
+
+            private final Statement statement;
+            private final Object connection;
+            private boolean closed;
+
+            private LeasedStatement(Statement statement, Object connection) {
+                this.statement = statement;
+                this.connection = connection;
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "getConnection":
+                        return this.connection;
+                    case "close":
+                        if (!this.closed) {
+                            this.closed = true;
+                            try {
+                                this.statement.close();
+                            } finally {
+                                synchronized (LogicalConnection.this) {
+                                    LogicalConnection.this.openStatements = Math.max(0, LogicalConnection.this.openStatements - 1);
+                                }
+                                releaseIfIdle();
+                            }
+                        }
+                        return null;
+                    default:
+                        return invokeOn(this.statement, method, args);
+                }
+            }
+        }
+    }
+}
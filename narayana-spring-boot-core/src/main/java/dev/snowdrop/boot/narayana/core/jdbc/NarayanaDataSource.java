@@ -21,14 +21,16 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.util.Properties;
-import java.util.logging.Logger;
 
 import javax.sql.DataSource;
 import javax.sql.XADataSource;
 
 import com.arjuna.ats.internal.jdbc.ConnectionManager;
 import com.arjuna.ats.jdbc.TransactionalDriver;
+import com.arjuna.ats.jta.common.jtaPropertyManager;
 import dev.snowdrop.boot.narayana.core.properties.TransactionalDriverProperties;
+import org.jboss.logging.Logger;
+import org.springframework.boot.jdbc.DatabaseDriver;
 
 /**
  * {@link DataSource} implementation wrapping {@link XADataSource} and using
@@ -38,7 +40,10 @@ import dev.snowdrop.boot.narayana.core.properties.TransactionalDriverProperties;
  */
 public class NarayanaDataSource implements DataSource {
 
+    private static final Logger LOGGER = Logger.getLogger(NarayanaDataSource.class);
+
     private final XADataSource xaDataSource;
+    private final XADataSource connectionXaDataSource;
     private final TransactionalDriverProperties transactionalDriverProperties;
 
     /**
@@ -50,19 +55,42 @@ public class NarayanaDataSource implements DataSource {
     public NarayanaDataSource(XADataSource xaDataSource, TransactionalDriverProperties transactionalDriverProperties) {
         this.xaDataSource = xaDataSource;
         this.transactionalDriverProperties = transactionalDriverProperties;
+        this.connectionXaDataSource = multiplex(xaDataSource, transactionalDriverProperties.getMultiplexing());
+    }
+
+    private static XADataSource multiplex(XADataSource xaDataSource, TransactionalDriverProperties.Multiplexing multiplexing) {
+        if (!multiplexing.isEnabled()) {
+            return xaDataSource;
+        }
+        DatabaseDriver driver = MultiplexingXADataSource.getSupportedDriver(xaDataSource);
+        if (driver == null || !multiplexing.getDrivers().contains(driver)) {
+            LOGGER.warnf("Not multiplexing %s, multiplexing is only used for the supported drivers %s listed in the drivers property",
+                    xaDataSource.getClass().getName(), MultiplexingXADataSource.SUPPORTED_DRIVERS);
+            return xaDataSource;
+        }
+        return new MultiplexingXADataSource(xaDataSource, multiplexing.getPhysicalConnections(), multiplexing.getLeaseTimeout());
     }
 
     private Properties createProperties() {
         Properties properties = new Properties();
-        properties.put(TransactionalDriver.XADataSource, this.xaDataSource);
+        properties.put(TransactionalDriver.XADataSource, this.connectionXaDataSource);
         properties.put(TransactionalDriver.poolConnections, String.valueOf(this.transactionalDriverProperties.getPool().isEnabled()));
         properties.put(TransactionalDriver.maxConnections, this.transactionalDriverProperties.getPool().getMaxConnections());
         return properties;
     }
 
+    private Connection wrapConnection(Connection connection) {
+        TransactionalDriverProperties.WriteBehind writeBehind = this.transactionalDriverProperties.getWriteBehind();
+        if (!writeBehind.isEnabled()) {
+            return connection;
+        }
+        return WriteBehindConnection.wrap(connection, this,
+                jtaPropertyManager.getJTAEnvironmentBean().getTransactionSynchronizationRegistry(), writeBehind.getMaxBatchSize());
+    }
+
     @Override
     public Connection getConnection() throws SQLException {
-        return ConnectionManager.create(this.transactionalDriverProperties.getName(), createProperties());
+        return wrapConnection(ConnectionManager.create(this.transactionalDriverProperties.getName(), createProperties()));
     }
 
     @Override
@@ -70,7 +98,7 @@ public class NarayanaDataSource implements DataSource {
         Properties properties = createProperties();
         properties.put(TransactionalDriver.userName, username);
         properties.put(TransactionalDriver.password, password);
-        return ConnectionManager.create(this.transactionalDriverProperties.getName(), properties);
+        return wrapConnection(ConnectionManager.create(this.transactionalDriverProperties.getName(), properties));
     }
 
     @Override
@@ -94,7 +122,7 @@ public class NarayanaDataSource implements DataSource {
     }
 
     @Override
-    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
         throw new SQLFeatureNotSupportedException();
     }
 
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jdbc;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import javax.sql.XAConnection;
+import javax.sql.XADataSource;
+import javax.transaction.xa.XAException;
+
+import org.jboss.logging.Logger;
+
+public class PooledConnectionManager extends ConnectionManager {
+
+    private static final Logger LOGGER = Logger.getLogger(PooledConnectionManager.class);
+
+    private final int maxConnections;
+    private final Semaphore permits;
+    private final Deque<XAConnection> idleConnections = new ArrayDeque<>();
+
+    /**
+     * Create a new {@link PooledConnectionManager} instance. Recovery scans use the single connection opened by
+     * {@link #connect()}, all other operations such as commit and rollback of recovered branches borrow a connection
+     * from a bounded pool, so that several threads can complete branches of the same data source concurrently.
+     *
+     * @param xaDataSource   the XA data source
+     * @param user           the database user or {@code null}
+     * @param password       the database password or {@code null}
+     * @param maxConnections maximum number of pooled connections used concurrently
+     */
+    public PooledConnectionManager(XADataSource xaDataSource, String user, String password, int maxConnections) {
+        super(xaDataSource, user, password);
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections must be at least 1");
+        }
+        this.maxConnections = maxConnections;
+        this.permits = new Semaphore(maxConnections, true);
+    }
+
+    public int getMaxConnections() {
+        return this.maxConnections;
+    }
+
+    @Override
+    public void connectAndAccept(XAResourceConsumer consumer) throws XAException {
+        connectAndApply(xaResource -> {
+            consumer.accept(xaResource);
+            return null;
+        });
+    }
+
+    /**
+     * Apply a function with a connection borrowed from the pool, waiting while all connections are in use. The
+     * connection is discarded if it fails with {@link XAException#XAER_RMFAIL}.
+     */
+    @Override
+    public <T> T connectAndApply(XAResourceFunction<T> function) throws XAException {
+        acquirePermit();
+        XAConnection xaConnection = null;
+        boolean reusable = false;
+        try {
+            xaConnection = borrowConnection();
+            T result = function.apply(xaConnection.getXAResource());
+            reusable = true;
+            return result;
+        } catch (XAException e) {
+            reusable = e.errorCode != XAException.XAER_RMFAIL;
+            throw e;
+        } catch (SQLException e) {
+            throw createXAException(e.getMessage());
+        } finally {
+            if (xaConnection != null) {
+                returnConnection(xaConnection, reusable);
+            }
+            this.permits.release();
+        }
+    }
+
+    @Override
+    public <T> T connectAndScan(XAResourceFunction<T> function) throws XAException {
+        return super.connectAndApply(function);
+    }
+
+    /**
+     * Close the scan connection and all idle pooled connections. Connections in use are returned to the pool and
+     * closed by the next disconnect.
+     */
+    @Override
+    public void disconnect() {
+        super.disconnect();
+        List<XAConnection> connections;
+        synchronized (this.idleConnections) {
+            connections = new ArrayList<>(this.idleConnections);
+            this.idleConnections.clear();
+        }
+        connections.forEach(PooledConnectionManager::closeQuietly);
+    }
+
+    int getIdleConnections() {
+        synchronized (this.idleConnections) {
+            return this.idleConnections.size();
+        }
+    }
+
+    private void acquirePermit() throws XAException {
+        try {
+            this.permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw createXAException("Interrupted while waiting for a recovery connection");
+        }
+    }
+
+    private XAConnection borrowConnection() throws SQLException {
+        XAConnection xaConnection;
+        synchronized (this.idleConnections) {
+            xaConnection = this.idleConnections.pollFirst();
+        }
+        return xaConnection != null ? xaConnection : createXAConnection();
+    }
+
+    private void returnConnection(XAConnection xaConnection, boolean reusable) {
+        if (reusable) {
+            synchronized (this.idleConnections) {
+                this.idleConnections.offerFirst(xaConnection);
+            }
+        } else {
+            closeQuietly(xaConnection);
+        }
+    }
+
+    private static void closeQuietly(XAConnection xaConnection) {
+        try {
+            xaConnection.close();
+        } catch (SQLException e) {
+            LOGGER.debugf(e, "Failed to close recovery connection %s", xaConnection);
+        }
+    }
+}
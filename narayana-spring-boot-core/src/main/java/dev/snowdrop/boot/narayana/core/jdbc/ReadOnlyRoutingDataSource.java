@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class ReadOnlyRoutingDataSource extends AbstractDataSource {
+
+    private final DataSource primaryDataSource;
+    private final DataSource replicaDataSource;
+    private final TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    /**
+     * Create a new {@link ReadOnlyRoutingDataSource} instance. Writable transactions use the primary data source,
+     * typically a {@link NarayanaDataSource}. Read-only Spring transactions and non-transactional work use plain local
+     * connections of the replica data source.
+     *
+     * @param primaryDataSource XA enabled data source used by writable transactions
+     * @param replicaDataSource data source used by read-only transactions and non-transactional work
+     */
+    public ReadOnlyRoutingDataSource(DataSource primaryDataSource, DataSource replicaDataSource) {
+        this(primaryDataSource, replicaDataSource, null);
+    }
+
+    /**
+     * Create a new {@link ReadOnlyRoutingDataSource} instance.
+     *
+     * @param primaryDataSource                  XA enabled data source used by writable transactions
+     * @param replicaDataSource                  data source used by read-only transactions and non-transactional work
+     * @param transactionSynchronizationRegistry registry used to detect JTA transactions not managed by Spring
+     */
+    public ReadOnlyRoutingDataSource(DataSource primaryDataSource, DataSource replicaDataSource,
+            TransactionSynchronizationRegistry transactionSynchronizationRegistry) {
+        this.primaryDataSource = primaryDataSource;
+        this.replicaDataSource = replicaDataSource;
+        this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+    }
+
+    /**
+     * Determine the target {@link DataSource} for the current thread.
+     *
+     * @return the primary data source within a writable transaction, the replica data source otherwise
+     */
+    protected DataSource determineTargetDataSource() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? this.replicaDataSource : this.primaryDataSource;
+        }
+        if (this.transactionSynchronizationRegistry != null && this.transactionSynchronizationRegistry.getTransactionKey() != null) {
+            return this.primaryDataSource;
+        }
+        return this.replicaDataSource;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return determineTargetDataSource().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return determineTargetDataSource().getConnection(username, password);
+    }
+
+    public DataSource getPrimaryDataSource() {
+        return this.primaryDataSource;
+    }
+
+    public DataSource getReplicaDataSource() {
+        return this.replicaDataSource;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jdbc;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.jboss.logging.Logger;
+
+public class RecoveryCircuitBreaker {
+
+    private static final Logger LOGGER = Logger.getLogger(RecoveryCircuitBreaker.class);
+
+    private static final ExecutorService PROBE_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "narayana-recovery-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String name;
+    private final int failureThreshold;
+    private final Duration initialCooldown;
+    private final Duration maxCooldown;
+    private int failures;
+    private Duration cooldown;
+    private long openUntilNanos;
+    private boolean probing;
+
+    /**
+     * Create a new {@link RecoveryCircuitBreaker} instance. After the given number of consecutive connection failures
+     * the breaker opens and recovery skips the resource. Once the cooldown has passed, a single connection attempt is
+     * made on a daemon thread shared by all breakers, and no further attempt is made while it is in flight. If it
+     * succeeds the breaker closes, otherwise it opens again with twice the
+     * cooldown, up to the maximum.
+     *
+     * @param name             name of the resource used in log messages
+     * @param failureThreshold number of consecutive failures opening the breaker
+     * @param initialCooldown  time the resource is skipped after the breaker opened
+     * @param maxCooldown      upper limit of the cooldown
+     */
+    public RecoveryCircuitBreaker(String name, int failureThreshold, Duration initialCooldown, Duration maxCooldown) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1");
+        }
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.initialCooldown = initialCooldown;
+        this.maxCooldown = maxCooldown;
+        this.cooldown = initialCooldown;
+    }
+
+    public synchronized boolean isOpen() {
+        return this.failures >= this.failureThreshold;
+    }
+
+    /**
+     * Check whether the caller may connect to the resource. While the breaker is open, the caller has to skip the
+     * resource. If the cooldown has passed, the probe is started in the background, so that the caller doesn't block.
+     *
+     * @param probe connection attempt run in the background, its outcome closes or reopens the breaker
+     * @return {@code true} if the breaker is closed and the caller may connect
+     */
+    public boolean tryAcquire(Callable<?> probe) {
+        synchronized (this) {
+            if (!isOpen()) {
+                return true;
+            }
+            if (this.probing || nanoTime() - this.openUntilNanos < 0) {
+                return false;
+            }
+            this.probing = true;
+        }
+        startProbe(() -> {
+            try {
+                probe.call();
+                success();
+            } catch (Exception e) {
+                LOGGER.debugf(e, "Recovery probe of %s failed", this.name);
+                failure();
+            } finally {
+                synchronized (this) {
+                    this.probing = false;
+                }
+            }
+        });
+        return false;
+    }
+
+    /**
+     * Record a successful connection and close the breaker.
+     */
+    public synchronized void success() {
+        if (isOpen()) {
+            LOGGER.infof("%s is reachable again, resuming its recovery", this.name);
+        }
+        this.failures = 0;
+        this.cooldown = this.initialCooldown;
+    }
+
+    /**
+     * Record a failed connection. The breaker opens when the threshold is reached, failures while it is open double
+     * the cooldown.
+     */
+    public synchronized void failure() {
+        if (isOpen()) {
+            Duration doubledCooldown = this.cooldown.multipliedBy(2);
+            this.cooldown = doubledCooldown.compareTo(this.maxCooldown) > 0 ? this.maxCooldown : doubledCooldown;
+        } else {
+            this.failures++;
+        }
+        if (isOpen()) {
+            LOGGER.warnf("%s is unreachable, skipping its recovery for %s", this.name, this.cooldown);
+            this.openUntilNanos = nanoTime() + this.cooldown.toNanos();
+        }
+    }
+
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    protected void startProbe(Runnable probe) {
+        PROBE_EXECUTOR.execute(probe);
+    }
+}
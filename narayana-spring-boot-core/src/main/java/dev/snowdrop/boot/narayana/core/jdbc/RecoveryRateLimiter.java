@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jdbc;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+public class RecoveryRateLimiter {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double maxRate;
+    private final double minRate;
+    private final long latencyThresholdNanos;
+    private final long maxWaitNanos;
+    private double rate;
+    private long nextPermitNanos;
+    private boolean permitTaken;
+
+    /**
+     * Create a new {@link RecoveryRateLimiter} instance. Permits are handed out evenly spaced at the current rate,
+     * which starts at the maximum. Whenever a completion takes longer than the latency threshold, the database is
+     * considered busy and the rate is halved, down to one permit per second. Each fast completion raises the rate by a
+     * tenth of the maximum again. A caller waits at most the spacing of the minimum rate for its permit, so the
+     * single recovery thread is paced rather than blocked.
+     *
+     * @param maxXidsPerSecond maximum number of permits per second
+     * @param latencyThreshold completion latency above which the rate is reduced
+     */
+    public RecoveryRateLimiter(double maxXidsPerSecond, Duration latencyThreshold) {
+        if (maxXidsPerSecond <= 0) {
+            throw new IllegalArgumentException("maxXidsPerSecond must be positive");
+        }
+        this.maxRate = maxXidsPerSecond;
+        this.minRate = Math.min(1, maxXidsPerSecond);
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.maxWaitNanos = (long) (NANOS_PER_SECOND / this.minRate);
+        this.rate = maxXidsPerSecond;
+    }
+
+    public synchronized double getRate() {
+        return this.rate;
+    }
+
+    /**
+     * Wait until the next permit is available. Permits are reserved in order, a caller which would have to wait
+     * longer than the spacing of the minimum rate, because other callers reserved the following permits already,
+     * gets none.
+     *
+     * @return whether a permit was taken
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public boolean acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = nanoTime();
+            long permitNanos = this.permitTaken && this.nextPermitNanos - now > 0 ? this.nextPermitNanos : now;
+            waitNanos = permitNanos - now;
+            if (waitNanos > this.maxWaitNanos) {
+                return false;
+            }
+            this.nextPermitNanos = permitNanos + (long) (NANOS_PER_SECOND / this.rate);
+            this.permitTaken = true;
+        }
+        if (waitNanos > 0) {
+            sleep(waitNanos);
+        }
+        return true;
+    }
+
+    /**
+     * Adapt the rate to the latency of a completed operation.
+     *
+     * @param latencyNanos time the operation took in nanoseconds
+     */
+    public synchronized void completed(long latencyNanos) {
+        if (latencyNanos > this.latencyThresholdNanos) {
+            this.rate = Math.max(this.minRate, this.rate / 2);
+        } else {
+            this.rate = Math.min(this.maxRate, this.rate + this.maxRate / 10);
+        }
+    }
+
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    protected void sleep(long nanos) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(nanos);
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jdbc;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+final class WriteBehindConnection implements InvocationHandler {
+
+    private static final Pattern DML = Pattern.compile("^\\s*(INSERT|UPDATE|DELETE|MERGE)\\s", Pattern.CASE_INSENSITIVE);
+
+    private static final Set<String> NON_FLUSHING_METHODS = Set.of("isClosed", "getAutoCommit", "isReadOnly",
+            "getTransactionIsolation", "getHoldability", "getWarnings", "clearWarnings", "getMetaData", "getCatalog",
+            "getSchema", "getClientInfo", "getNetworkTimeout", "getTypeMap", "isValid", "isWrapperFor", "unwrap");
+
+    private final Connection delegate;
+    private final ResourceKey resourceKey;
+    private final TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+    private final int maxBatchSize;
+    private final Connection proxy;
+
+    private WriteBehindConnection(Connection delegate, Object dataSource,
+            TransactionSynchronizationRegistry transactionSynchronizationRegistry, int maxBatchSize) {
+        this.delegate = delegate;
+        this.resourceKey = new ResourceKey(dataSource);
+        this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+        this.maxBatchSize = maxBatchSize;
+        this.proxy = (Connection) Proxy.newProxyInstance(WriteBehindConnection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, this);
+    }
+
+    /**
+     * Wrap a connection into a write-behind proxy. Parameterised DML issued within an active transaction is queued and
+     * executed as JDBC batches. The queue is a resource of the transaction shared by all connections of the same data
+     * source, so it is flushed before any other statement of that transaction is prepared or executed on any of them,
+     * when the batch size limit is reached, when a connection is closed or committed and in
+     * {@link Synchronization#beforeCompletion()}. Statements bound to streams or LOBs are executed immediately.
+     *
+     * @param delegate                           the transactional connection
+     * @param dataSource                         the data source the connection belongs to
+     * @param transactionSynchronizationRegistry registry used to detect the transaction and to flush before completion
+     * @param maxBatchSize                       maximum number of queued statements
+     * @return write-behind connection
+     */
+    static Connection wrap(Connection delegate, Object dataSource,
+            TransactionSynchronizationRegistry transactionSynchronizationRegistry, int maxBatchSize) {
+        return new WriteBehindConnection(delegate, dataSource, transactionSynchronizationRegistry, maxBatchSize).proxy;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "WriteBehindConnection[" + this.delegate + "]";
+            case "rollback":
+                if (args == null) {
+                    WriteBehindQueue queue = getQueue(false);
+                    if (queue != null) {
+                        queue.clear();
+                    }
+                } else {
+                    flush();
+                }
+                return invokeOn(this.delegate, method, args);
+            case "prepareStatement":
+                if (args.length == 1 && isDeferrable((String) args[0])) {
+                    return newStatementProxy(PreparedStatement.class, new DeferredStatement((String) args[0]));
+                }
+                break;
+            default:
+                break;
+        }
+        if (!NON_FLUSHING_METHODS.contains(method.getName())) {
+            flush();
+        }
+        Object result = invokeOn(this.delegate, method, args);
+        if (result instanceof Statement statement) {
+            return newStatementProxy(method.getReturnType(), new FlushingStatement(statement));
+        }
+        return result;
+    }
+
+    private boolean isDeferrable(String sql) {
+        return DML.matcher(sql).find() && getQueue(true) != null;
+    }
+
+    /**
+     * Look up the queue of the current transaction, creating and registering it for an active transaction if requested.
+     *
+     * @param create whether to create the queue if the transaction has none yet
+     * @return the queue or {@code null} if there is none
+     */
+    private WriteBehindQueue getQueue(boolean create) {
+        if (this.transactionSynchronizationRegistry.getTransactionKey() == null) {
+            return null;
+        }
+        if (create && this.transactionSynchronizationRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            return null;
+        }
+        WriteBehindQueue queue = (WriteBehindQueue) this.transactionSynchronizationRegistry.getResource(this.resourceKey);
+        if (queue == null && create) {
+            queue = new WriteBehindQueue(this.maxBatchSize);
+            this.transactionSynchronizationRegistry.putResource(this.resourceKey, queue);
+            this.transactionSynchronizationRegistry.registerInterposedSynchronization(queue);
+        }
+        return queue;
+    }
+
+    /**
+     * Execute all statements queued by the current transaction on this connection.
+     *
+     * @throws SQLException if a batch fails
+     */
+    void flush() throws SQLException {
+        WriteBehindQueue queue = getQueue(false);
+        if (queue != null) {
+            queue.flush(this.delegate);
+        }
+    }
+
+    private static boolean isStreamBound(Object[] args) {
+        if (args != null) {
+            for (Object arg : args) {
+                if (arg instanceof InputStream || arg instanceof Reader || arg instanceof Blob || arg instanceof Clob
+                        || arg instanceof SQLXML) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Object newStatementProxy(Class<?> type, InvocationHandler handler) {
+        return Proxy.newProxyInstance(WriteBehindConnection.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private record ResourceKey(Object dataSource) {
+    }
+
+    private record Invocation(Method method, Object[] args) {
+    }
+
+    private record DeferredUpdate(String sql, List<Invocation> invocations) {
+
+        void replay(PreparedStatement statement) throws SQLException {
+            for (Invocation invocation : this.invocations) {
+                try {
+                    invocation.method().invoke(statement, invocation.args());
+                } catch (InvocationTargetException e) {
+                    if (e.getTargetException() instanceof SQLException sqlException) {
+                        throw sqlException;
+                    }
+                    throw new SQLException(e.getTargetException());
+                } catch (IllegalAccessException e) {
+                    throw new SQLException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Statement proxy recording parameters and queueing {@code executeUpdate} calls. Any other operation, including
+     * binding a stream or LOB that could not be read again at flush time, materializes the statement on the underlying
+     * connection.
+     */
+    private final class DeferredStatement implements InvocationHandler {
+
+        private final String sql;
+        private final List<Invocation> invocations = new ArrayList<>();
+        private PreparedStatement target;
+        private boolean closed;
+
+        private DeferredStatement(String sql) {
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("getConnection".equals(name)) {
+                return WriteBehindConnection.this.proxy;
+            }
+            if (this.target != null) {
+                if (name.startsWith("execute")) {
+                    flush();
+                }
+                return invokeOn(this.target, method, args);
+            }
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    this.closed = true;
+                    return null;
+                case "isClosed":
+                    return this.closed;
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                    WriteBehindQueue queue = getQueue(true);
+                    if (args == null && queue != null) {
+                        queue.add(new DeferredUpdate(this.sql, List.copyOf(this.invocations)), WriteBehindConnection.this.delegate);
+                        if (method.getReturnType() == long.class) {
+                            return (long) Statement.SUCCESS_NO_INFO;
+                        }
+                        return Statement.SUCCESS_NO_INFO;
+                    }
+                    break;
+                default:
+                    if ((name.startsWith("set") && !isStreamBound(args)) || "clearParameters".equals(name)) {
+                        this.invocations.add(new Invocation(method, args));
+                        return null;
+                    }
+                    break;
+            }
+            flush();
+            this.target = WriteBehindConnection.this.delegate.prepareStatement(this.sql);
+            new DeferredUpdate(this.sql, this.invocations).replay(this.target);
+            return invokeOn(this.target, method, args);
+        }
+    }
+
+    /**
+     * Statement proxy flushing the queue before every execution.
+     */
+    private final class FlushingStatement implements InvocationHandler {
+
+        private final Statement target;
+
+        private FlushingStatement(Statement target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("getConnection".equals(method.getName())) {
+                return WriteBehindConnection.this.proxy;
+            }
+            if (method.getName().startsWith("execute")) {
+                flush();
+            }
+            return invokeOn(this.target, method, args);
+        }
+    }
+
+    /**
+     * Statements deferred by one transaction on one data source. Registered as a transaction resource and
+     * synchronization so that every connection of the data source sees the same queue.
+     */
+    private static final class WriteBehindQueue implements Synchronization {
+
+        private final int maxBatchSize;
+        private final List<DeferredUpdate> updates = new ArrayList<>();
+        private Connection connection;
+
+        private WriteBehindQueue(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        synchronized void add(DeferredUpdate update, Connection connection) throws SQLException {
+            this.updates.add(update);
+            this.connection = connection;
+            if (this.updates.size() >= this.maxBatchSize) {
+                flush(connection);
+            }
+        }
+
+        synchronized void clear() {
+            this.updates.clear();
+        }
+
+        /**
+         * Execute all queued statements, grouping consecutive statements with the same SQL into one batch.
+         *
+         * @param connection the connection to execute the statements on
+         * @throws SQLException if a batch fails
+         */
+        synchronized void flush(Connection connection) throws SQLException {
+            if (this.updates.isEmpty()) {
+                return;
+            }
+            List<DeferredUpdate> pending = new ArrayList<>(this.updates);
+            this.updates.clear();
+            int index = 0;
+            while (index < pending.size()) {
+                String sql = pending.get(index).sql();
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    do {
+                        pending.get(index).replay(statement);
+                        statement.addBatch();
+                        index++;
+                    } while (index < pending.size() && pending.get(index).sql().equals(sql));
+                    statement.executeBatch();
+                }
+            }
+        }
+
+        @Override
+        public void beforeCompletion() {
+            try {
+                flush(this.connection);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to flush write-behind statements", e);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            clear();
+            this.connection = null;
+        }
+    }
+}
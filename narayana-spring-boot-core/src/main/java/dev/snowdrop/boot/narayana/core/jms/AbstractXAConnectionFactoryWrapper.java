@@ -16,26 +16,34 @@
 
 package dev.snowdrop.boot.narayana.core.jms;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import jakarta.jms.ConnectionFactory;
 import jakarta.jms.XAConnectionFactory;
 
 import com.arjuna.ats.internal.jta.recovery.arjunacore.XARecoveryModule;
 import com.arjuna.ats.jta.recovery.XAResourceRecoveryHelper;
 import dev.snowdrop.boot.narayana.core.properties.RecoveryProperties;
+import org.jboss.logging.Logger;
 import org.jboss.narayana.jta.jms.ConnectionFactoryProxy;
 import org.jboss.narayana.jta.jms.JmsXAResourceRecoveryHelper;
 import org.springframework.boot.jms.XAConnectionFactoryWrapper;
 
 /**
  * {@link XAConnectionFactoryWrapper} implementation that uses {@link ConnectionFactoryProxy} to wrap an
- * {@link XAConnectionFactory}.
+ * {@link XAConnectionFactory}. Resources created while wrapping are released when the wrapper is closed.
  *
  * @author <a href="mailto:gytis@redhat.com">Gytis Trikleris</a>
  */
-public abstract class AbstractXAConnectionFactoryWrapper implements XAConnectionFactoryWrapper {
+public abstract class AbstractXAConnectionFactoryWrapper implements XAConnectionFactoryWrapper, AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(AbstractXAConnectionFactoryWrapper.class);
 
     private final XARecoveryModule xaRecoveryModule;
     private final RecoveryProperties recoveryCredentials;
+    private final List<XAResourceRecoveryHelper> recoveryHelpers = new CopyOnWriteArrayList<>();
+    private final List<AutoCloseable> closeables = new CopyOnWriteArrayList<>();
 
     protected AbstractXAConnectionFactoryWrapper(XARecoveryModule xaRecoveryModule, RecoveryProperties recoveryCredentials) {
         this.xaRecoveryModule = xaRecoveryModule;
@@ -47,13 +55,50 @@ public abstract class AbstractXAConnectionFactoryWrapper implements XAConnection
     @Override
     public ConnectionFactory wrapConnectionFactory(XAConnectionFactory xaConnectionFactory) throws Exception {
         if (this.recoveryCredentials.isEnabled()) {
-            XAResourceRecoveryHelper recoveryHelper = getRecoveryHelper(xaConnectionFactory, this.recoveryCredentials);
-            this.xaRecoveryModule.addXAResourceRecoveryHelper(recoveryHelper);
+            addRecoveryHelper(getRecoveryHelper(xaConnectionFactory, this.recoveryCredentials));
         }
         return wrapConnectionFactoryInternal(xaConnectionFactory);
     }
 
+    /**
+     * Remove the recovery helpers registered by this wrapper and close the resources registered while wrapping
+     * connection factories, including the connections kept open by recovery.
+     */
+    @Override
+    public void close() {
+        for (XAResourceRecoveryHelper recoveryHelper : this.recoveryHelpers) {
+            this.xaRecoveryModule.removeXAResourceRecoveryHelper(recoveryHelper);
+        }
+        this.recoveryHelpers.clear();
+        for (AutoCloseable closeable : this.closeables) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                LOGGER.warnf(e, "Failed to close %s", closeable);
+            }
+        }
+        this.closeables.clear();
+    }
+
+    protected <T extends AutoCloseable> T registerCloseable(T closeable) {
+        this.closeables.add(closeable);
+        return closeable;
+    }
+
+    protected RecoveryProperties getRecoveryCredentials() {
+        return this.recoveryCredentials;
+    }
+
+    protected void addRecoveryHelper(XAResourceRecoveryHelper recoveryHelper) {
+        this.recoveryHelpers.add(recoveryHelper);
+        this.xaRecoveryModule.addXAResourceRecoveryHelper(recoveryHelper);
+    }
+
     protected XAResourceRecoveryHelper getRecoveryHelper(XAConnectionFactory xaConnectionFactory, RecoveryProperties recoveryCredentials) {
+        if (recoveryCredentials.isKeepConnection()) {
+            return new JmsXAResourceRecoveryHelper(registerCloseable(new PersistentConnectionManager(xaConnectionFactory,
+                    recoveryCredentials.getUser(), recoveryCredentials.getPassword())));
+        }
         if (recoveryCredentials.isValid()) {
             return new JmsXAResourceRecoveryHelper(xaConnectionFactory, recoveryCredentials.getUser(),
                 recoveryCredentials.getPassword());
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import jakarta.jms.ExceptionListener;
+import jakarta.jms.JMSException;
+import jakarta.jms.Session;
+import jakarta.jms.XAConnection;
+import jakarta.jms.XAConnectionFactory;
+import jakarta.jms.XAJMSContext;
+import jakarta.jms.XASession;
+
+import org.jboss.logging.Logger;
+
+public class CachingXAConnectionFactory implements XAConnectionFactory, AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(CachingXAConnectionFactory.class);
+
+    private final XAConnectionFactory xaConnectionFactory;
+    private final int maxIdleSessions;
+    private final Deque<XASession> idleSessions = new ArrayDeque<>();
+    private final List<SharedConnection> openConnections = new ArrayList<>();
+    private XAConnection connection;
+
+    /**
+     * Create a new {@link CachingXAConnectionFactory} instance. All connections created without explicit credentials
+     * share one long-lived physical {@link XAConnection}, and closed {@link XASession}s are kept for reuse by
+     * subsequent transactions. Failures of the shared connection are forwarded to the exception listeners of all
+     * connections open at that time.
+     *
+     * @param xaConnectionFactory the XA connection factory
+     * @param maxIdleSessions     maximum number of idle sessions kept open
+     */
+    public CachingXAConnectionFactory(XAConnectionFactory xaConnectionFactory, int maxIdleSessions) {
+        this.xaConnectionFactory = xaConnectionFactory;
+        this.maxIdleSessions = maxIdleSessions;
+    }
+
+    @Override
+    public XAConnection createXAConnection() throws JMSException {
+        return (XAConnection) Proxy.newProxyInstance(CachingXAConnectionFactory.class.getClassLoader(),
+                new Class<?>[]{XAConnection.class}, openConnection());
+    }
+
+    @Override
+    public XAConnection createXAConnection(String userName, String password) throws JMSException {
+        return this.xaConnectionFactory.createXAConnection(userName, password);
+    }
+
+    @Override
+    public XAJMSContext createXAContext() {
+        return this.xaConnectionFactory.createXAContext();
+    }
+
+    @Override
+    public XAJMSContext createXAContext(String userName, String password) {
+        return this.xaConnectionFactory.createXAContext(userName, password);
+    }
+
+    /**
+     * Close the shared connection and all idle sessions.
+     */
+    @Override
+    public synchronized void close() {
+        resetConnection(this.connection);
+    }
+
+    private synchronized SharedConnection openConnection() throws JMSException {
+        if (this.connection == null) {
+            XAConnection newConnection = this.xaConnectionFactory.createXAConnection();
+            newConnection.setExceptionListener(exception -> onConnectionFailure(newConnection, exception));
+            this.connection = newConnection;
+        }
+        SharedConnection sharedConnection = new SharedConnection(this.connection);
+        this.openConnections.add(sharedConnection);
+        return sharedConnection;
+    }
+
+    private void onConnectionFailure(XAConnection failedConnection, JMSException exception) {
+        LOGGER.debugf(exception, "Shared JMS connection failed, discarding it");
+        for (SharedConnection sharedConnection : resetConnection(failedConnection)) {
+            sharedConnection.onException(exception);
+        }
+    }
+
+    private synchronized List<SharedConnection> resetConnection(XAConnection failedConnection) {
+        if (failedConnection == null || this.connection != failedConnection) {
+            return List.of();
+        }
+        this.connection = null;
+        for (XASession session : this.idleSessions) {
+            closeQuietly(session);
+        }
+        this.idleSessions.clear();
+        closeQuietly(failedConnection);
+        List<SharedConnection> failedConnections = new ArrayList<>(this.openConnections);
+        this.openConnections.clear();
+        return failedConnections;
+    }
+
+    private synchronized void closeConnection(SharedConnection sharedConnection) {
+        this.openConnections.remove(sharedConnection);
+    }
+
+    private synchronized XASession borrowSession(XAConnection physicalConnection) throws JMSException {
+        XASession session = this.idleSessions.pollFirst();
+        if (session == null) {
+            session = physicalConnection.createXASession();
+        }
+        return session;
+    }
+
+    private synchronized void returnSession(XAConnection physicalConnection, XASession session) {
+        if (this.connection == physicalConnection && this.idleSessions.size() < this.maxIdleSessions) {
+            this.idleSessions.offerFirst(session);
+        } else {
+            closeQuietly(session);
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            LOGGER.debugf(e, "Failed to close %s", closeable);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * Connection handle to the shared physical connection. Closing it closes only the non-XA sessions created through
+     * it, XA sessions are returned to the cache when they are closed. Stopping the handle is ignored, as other handles
+     * still use the physical connection, while its exception listener is kept per handle.
+     */
+    private final class SharedConnection implements InvocationHandler {
+
+        private final XAConnection physicalConnection;
+        private final List<Session> localSessions = new ArrayList<>();
+        private boolean closed;
+        private volatile ExceptionListener exceptionListener;
+
+        private SharedConnection(XAConnection physicalConnection) {
+            this.physicalConnection = physicalConnection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "SharedConnection[" + this.physicalConnection + "]";
+                case "close":
+                    closeLocalSessions();
+                    closeConnection(this);
+                    return null;
+                case "stop":
+                    return null;
+                case "setExceptionListener":
+                    checkClosed();
+                    this.exceptionListener = (ExceptionListener) args[0];
+                    return null;
+                case "getExceptionListener":
+                    checkClosed();
+                    return this.exceptionListener;
+                case "createXASession":
+                    checkClosed();
+                    XASession session = borrowSession(this.physicalConnection);
+                    return Proxy.newProxyInstance(CachingXAConnectionFactory.class.getClassLoader(),
+                            new Class<?>[]{XASession.class}, new CachedSession(this.physicalConnection, session));
+                default:
+                    checkClosed();
+                    Object result = CachingXAConnectionFactory.invoke(this.physicalConnection, method, args);
+                    if (result instanceof Session localSession) {
+                        synchronized (this) {
+                            this.localSessions.add(localSession);
+                        }
+                    }
+                    return result;
+            }
+        }
+
+        private void onException(JMSException exception) {
+            ExceptionListener listener = this.exceptionListener;
+            if (listener != null) {
+                listener.onException(exception);
+            }
+        }
+
+        private void checkClosed() throws JMSException {
+            if (this.closed) {
+                throw new jakarta.jms.IllegalStateException("Connection is closed");
+            }
+        }
+
+        private synchronized void closeLocalSessions() {
+            this.closed = true;
+            for (Session session : this.localSessions) {
+                closeQuietly(session);
+            }
+            this.localSessions.clear();
+        }
+    }
+
+    /**
+     * Session handle returning the session to the cache on close. Producers, consumers and browsers created by the
+     * handle are closed at the same time.
+     */
+    private final class CachedSession implements InvocationHandler {
+
+        private final XAConnection physicalConnection;
+        private final XASession session;
+        private final List<AutoCloseable> children = new ArrayList<>();
+        private boolean closed;
+
+        private CachedSession(XAConnection physicalConnection, XASession session) {
+            this.physicalConnection = physicalConnection;
+            this.session = session;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedSession[" + this.session + "]";
+                case "getSession":
+                    return proxy;
+                case "close":
+                    release();
+                    return null;
+                default:
+                    if (this.closed) {
+                        throw new jakarta.jms.IllegalStateException("Session is closed");
+                    }
+                    Object result = CachingXAConnectionFactory.invoke(this.session, method, args);
+                    if (result instanceof AutoCloseable child && method.getName().startsWith("create")) {
+                        synchronized (this) {
+                            this.children.add(child);
+                        }
+                    }
+                    return result;
+            }
+        }
+
+        private synchronized void release() {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            for (AutoCloseable child : this.children) {
+                closeQuietly(child);
+            }
+            this.children.clear();
+            try {
+                this.session.setMessageListener(null);
+                returnSession(this.physicalConnection, this.session);
+            } catch (JMSException e) {
+                closeQuietly(this.session);
+            }
+        }
+    }
+}
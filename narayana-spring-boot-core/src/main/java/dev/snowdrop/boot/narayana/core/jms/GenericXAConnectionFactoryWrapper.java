@@ -21,6 +21,7 @@ import jakarta.jms.XAConnectionFactory;
 import jakarta.transaction.TransactionManager;
 
 import com.arjuna.ats.internal.jta.recovery.arjunacore.XARecoveryModule;
+import dev.snowdrop.boot.narayana.core.properties.JmsCacheProperties;
 import dev.snowdrop.boot.narayana.core.properties.RecoveryProperties;
 import org.jboss.narayana.jta.jms.ConnectionFactoryProxy;
 import org.jboss.narayana.jta.jms.TransactionHelperImpl;
@@ -28,6 +29,7 @@ import org.jboss.narayana.jta.jms.TransactionHelperImpl;
 public class GenericXAConnectionFactoryWrapper extends AbstractXAConnectionFactoryWrapper {
 
     private final TransactionManager transactionManager;
+    private final JmsCacheProperties cacheProperties;
 
     /**
      * Create a new {@link GenericXAConnectionFactoryWrapper} instance.
@@ -48,12 +50,31 @@ public class GenericXAConnectionFactoryWrapper extends AbstractXAConnectionFacto
      */
     public GenericXAConnectionFactoryWrapper(TransactionManager transactionManager, XARecoveryModule xaRecoveryModule,
             RecoveryProperties recoveryCredentials) {
+        this(transactionManager, xaRecoveryModule, recoveryCredentials, new JmsCacheProperties());
+    }
+
+    /**
+     * Create a new {@link GenericXAConnectionFactoryWrapper} instance.
+     *
+     * @param transactionManager  underlying transaction manager
+     * @param xaRecoveryModule    recovery module to register data source with.
+     * @param recoveryCredentials Credentials for recovery helper
+     * @param cacheProperties     Connection and session cache properties
+     */
+    public GenericXAConnectionFactoryWrapper(TransactionManager transactionManager, XARecoveryModule xaRecoveryModule,
+            RecoveryProperties recoveryCredentials, JmsCacheProperties cacheProperties) {
         super(xaRecoveryModule, recoveryCredentials);
         this.transactionManager = transactionManager;
+        this.cacheProperties = cacheProperties;
     }
 
     @Override
     protected ConnectionFactory wrapConnectionFactoryInternal(XAConnectionFactory xaConnectionFactory) {
-        return new ConnectionFactoryProxy(xaConnectionFactory, new TransactionHelperImpl(this.transactionManager));
+        XAConnectionFactory targetConnectionFactory = xaConnectionFactory;
+        if (this.cacheProperties.isEnabled()) {
+            targetConnectionFactory = registerCloseable(
+                    new CachingXAConnectionFactory(xaConnectionFactory, this.cacheProperties.getMaxIdleSessions()));
+        }
+        return new ConnectionFactoryProxy(targetConnectionFactory, new TransactionHelperImpl(this.transactionManager));
     }
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms;
+
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.XAConnectionFactory;
+
+import org.springframework.boot.jms.XAConnectionFactoryWrapper;
+
+public interface NamedXAConnectionFactoryWrapper extends XAConnectionFactoryWrapper {
+
+    /**
+     * Wrap the given XA connection factory with the settings of the named factory configured in
+     * {@code narayana.messaginghub.factories.<name>}.
+     *
+     * @param xaConnectionFactory XA connection factory to wrap
+     * @param factoryName         name of the configured factory
+     * @return the wrapped connection factory
+     * @throws Exception if the connection factory cannot be wrapped
+     */
+    ConnectionFactory wrapConnectionFactory(XAConnectionFactory xaConnectionFactory, String factoryName) throws Exception;
+}
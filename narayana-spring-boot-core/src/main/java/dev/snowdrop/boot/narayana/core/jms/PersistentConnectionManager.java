@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms;
+
+import javax.transaction.xa.XAException;
+
+import jakarta.jms.XAConnectionFactory;
+
+import org.jboss.narayana.jta.jms.ConnectionManager;
+import org.jboss.narayana.jta.jms.XAResourceConsumer;
+import org.jboss.narayana.jta.jms.XAResourceFunction;
+
+public class PersistentConnectionManager extends ConnectionManager implements AutoCloseable {
+
+    /**
+     * Create a new {@link PersistentConnectionManager} instance. Unlike {@link ConnectionManager}, the connection is
+     * kept open after a recovery scan and reused by the following scans. It is only replaced if the broker reports a
+     * failure of the resource manager, in which case the operation is retried once with a new connection. The
+     * connection factory wrappers close the connection when they are closed themselves.
+     *
+     * @param xaConnectionFactory connection factory used to connect to the broker
+     * @param user                user name or {@code null} to use the default credentials of the factory
+     * @param pass                password or {@code null} to use the default credentials of the factory
+     */
+    public PersistentConnectionManager(XAConnectionFactory xaConnectionFactory, String user, String pass) {
+        super(xaConnectionFactory, user, pass);
+    }
+
+    @Override
+    public synchronized <T> T connectAndApply(XAResourceFunction<T> function) throws XAException {
+        try {
+            return super.connectAndApply(function);
+        } catch (XAException e) {
+            if (e.errorCode != XAException.XAER_RMFAIL) {
+                throw e;
+            }
+            reconnect();
+            try {
+                return super.connectAndApply(function);
+            } catch (XAException retryException) {
+                close();
+                throw retryException;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void connectAndAccept(XAResourceConsumer consumer) throws XAException {
+        connectAndApply(xaResource -> {
+            consumer.accept(xaResource);
+            return null;
+        });
+    }
+
+    @Override
+    public synchronized void connect() throws XAException {
+        super.connect();
+    }
+
+    /**
+     * Keep the connection open, recovery helpers disconnect at the end of every scan.
+     */
+    @Override
+    public void disconnect() {
+    }
+
+    /**
+     * Close the connection. It is opened again by the next operation.
+     */
+    @Override
+    public synchronized void close() {
+        super.disconnect();
+    }
+
+    private void reconnect() throws XAException {
+        close();
+        connect();
+    }
+}
@@ -22,12 +22,16 @@ import jakarta.transaction.TransactionManager;
 
 import com.arjuna.ats.internal.jta.recovery.arjunacore.XARecoveryModule;
 import com.arjuna.ats.jta.recovery.XAResourceRecoveryHelper;
+import dev.snowdrop.boot.narayana.core.jms.pool.AdaptiveSessionPoolSizer;
 import dev.snowdrop.boot.narayana.core.jms.pool.JmsPoolNarayanaConnectionFactory;
 import dev.snowdrop.boot.narayana.core.jms.pool.NamedJmsXAResourceRecoveryHelper;
 import dev.snowdrop.boot.narayana.core.properties.MessagingHubConnectionFactoryProperties;
+import dev.snowdrop.boot.narayana.core.properties.MessagingHubPoolProperties;
 import dev.snowdrop.boot.narayana.core.properties.RecoveryProperties;
 
-public class PooledXAConnectionFactoryWrapper extends AbstractXAConnectionFactoryWrapper {
+public class PooledXAConnectionFactoryWrapper extends AbstractXAConnectionFactoryWrapper implements NamedXAConnectionFactoryWrapper {
+
+    private static final String DEFAULT_NAME = new MessagingHubPoolProperties().getName();
 
     private final MessagingHubConnectionFactoryProperties properties;
     private final TransactionManager transactionManager;
@@ -59,34 +63,81 @@ public class PooledXAConnectionFactoryWrapper extends AbstractXAConnectionFactor
         this.transactionManager = transactionManager;
     }
 
+    /**
+     * Wrap the given XA connection factory with the settings of the named factory configured in
+     * {@code narayana.messaginghub.factories.<name>}. The factory name is used as XA resource name unless a name is
+     * configured explicitly, and recovery uses the factory's recovery properties if set.
+     *
+     * @param xaConnectionFactory XA connection factory to wrap
+     * @param factoryName         name of the configured factory
+     * @return the pooled connection factory
+     */
+    @Override
+    public ConnectionFactory wrapConnectionFactory(XAConnectionFactory xaConnectionFactory, String factoryName) {
+        MessagingHubPoolProperties factoryProperties = this.properties.getFactories().get(factoryName);
+        if (factoryProperties == null) {
+            throw new IllegalArgumentException("No MessagingHub connection factory named '" + factoryName + "' is configured");
+        }
+        String resourceName = DEFAULT_NAME.equals(factoryProperties.getName()) ? factoryName : factoryProperties.getName();
+        RecoveryProperties recoveryProperties = factoryProperties.getRecovery() != null
+                ? factoryProperties.getRecovery() : getRecoveryCredentials();
+        if (recoveryProperties.isEnabled()) {
+            addRecoveryHelper(getRecoveryHelper(xaConnectionFactory, recoveryProperties, resourceName));
+        }
+        return createConnectionFactory(xaConnectionFactory, factoryProperties, resourceName);
+    }
+
     @Override
     protected ConnectionFactory wrapConnectionFactoryInternal(XAConnectionFactory xaConnectionFactory) {
-        if (this.properties.isFirstResource() && this.properties.isLastResource()) {
+        return createConnectionFactory(xaConnectionFactory, this.properties, this.properties.getName());
+    }
+
+    private ConnectionFactory createConnectionFactory(XAConnectionFactory xaConnectionFactory,
+            MessagingHubPoolProperties properties, String name) {
+        if (properties.isFirstResource() && properties.isLastResource()) {
             throw new IllegalArgumentException("Setting both firstResource and lastResource is not allowed");
         }
         JmsPoolNarayanaConnectionFactory pooledConnectionFactory = new JmsPoolNarayanaConnectionFactory();
-        pooledConnectionFactory.setName(this.properties.getName());
-        pooledConnectionFactory.setFirstResource(this.properties.isFirstResource());
-        pooledConnectionFactory.setLastResource(this.properties.isLastResource());
+        pooledConnectionFactory.setName(name);
+        pooledConnectionFactory.setFirstResource(properties.isFirstResource());
+        pooledConnectionFactory.setLastResource(properties.isLastResource());
+        pooledConnectionFactory.setLazyEnlistment(properties.isLazyEnlistment());
         pooledConnectionFactory.setTransactionManager(this.transactionManager);
         pooledConnectionFactory.setConnectionFactory(xaConnectionFactory);
-        pooledConnectionFactory.setMaxConnections(this.properties.getMaxConnections());
-        pooledConnectionFactory.setConnectionIdleTimeout((int) this.properties.getConnectionIdleTimeout().toMillis());
-        pooledConnectionFactory.setConnectionCheckInterval(this.properties.getConnectionCheckInterval().toMillis());
-        pooledConnectionFactory.setUseProviderJMSContext(this.properties.isUseProviderJMSContext());
-        pooledConnectionFactory.setMaxSessionsPerConnection(this.properties.getMaxSessionsPerConnection());
-        pooledConnectionFactory.setBlockIfSessionPoolIsFull(this.properties.isBlockIfSessionPoolIsFull());
-        pooledConnectionFactory.setBlockIfSessionPoolIsFullTimeout(this.properties.getBlockIfSessionPoolIsFullTimeout().toMillis());
-        pooledConnectionFactory.setUseAnonymousProducers(this.properties.isUseAnonymousProducers());
+        pooledConnectionFactory.setMaxConnections(properties.getMaxConnections());
+        pooledConnectionFactory.setConnectionIdleTimeout((int) properties.getConnectionIdleTimeout().toMillis());
+        pooledConnectionFactory.setConnectionCheckInterval(properties.getConnectionCheckInterval().toMillis());
+        pooledConnectionFactory.setUseProviderJMSContext(properties.isUseProviderJMSContext());
+        pooledConnectionFactory.setMaxSessionsPerConnection(properties.getMaxSessionsPerConnection());
+        pooledConnectionFactory.setBlockIfSessionPoolIsFull(properties.isBlockIfSessionPoolIsFull());
+        pooledConnectionFactory.setBlockIfSessionPoolIsFullTimeout(properties.getBlockIfSessionPoolIsFullTimeout().toMillis());
+        pooledConnectionFactory.setUseAnonymousProducers(properties.isUseAnonymousProducers());
+        MessagingHubPoolProperties.Adaptive adaptive = properties.getAdaptive();
+        if (adaptive.isEnabled()) {
+            AdaptiveSessionPoolSizer sizer = new AdaptiveSessionPoolSizer(pooledConnectionFactory, adaptive.getMinConnections(),
+                    adaptive.getMaxConnections(), adaptive.getMinSessionsPerConnection(), adaptive.getMaxSessionsPerConnection(),
+                    adaptive.getWaitThreshold());
+            pooledConnectionFactory.setAdaptiveSessionPoolSizer(sizer);
+            sizer.start(adaptive.getInterval());
+        }
         return pooledConnectionFactory;
     }
 
     @Override
     protected XAResourceRecoveryHelper getRecoveryHelper(XAConnectionFactory xaConnectionFactory, RecoveryProperties recoveryCredentials) {
+        return getRecoveryHelper(xaConnectionFactory, recoveryCredentials, this.properties.getName());
+    }
+
+    private XAResourceRecoveryHelper getRecoveryHelper(XAConnectionFactory xaConnectionFactory, RecoveryProperties recoveryCredentials,
+            String name) {
+        if (recoveryCredentials.isKeepConnection()) {
+            return new NamedJmsXAResourceRecoveryHelper(registerCloseable(new PersistentConnectionManager(xaConnectionFactory,
+                    recoveryCredentials.getUser(), recoveryCredentials.getPassword())), name);
+        }
         if (recoveryCredentials.isValid()) {
             return new NamedJmsXAResourceRecoveryHelper(xaConnectionFactory, recoveryCredentials.getUser(),
-                recoveryCredentials.getPassword(), this.properties.getName());
+                recoveryCredentials.getPassword(), name);
         }
-        return new NamedJmsXAResourceRecoveryHelper(xaConnectionFactory, this.properties.getName());
+        return new NamedJmsXAResourceRecoveryHelper(xaConnectionFactory, name);
     }
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms.listener;
+
+import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+
+public class BatchJmsListenerContainerFactory extends DefaultJmsListenerContainerFactory {
+
+    private int batchSize = 1;
+    private long batchTimeout = 1000;
+    private boolean skipEmptyPolls = false;
+
+    /**
+     * Set the maximum number of messages received within one transaction.
+     *
+     * @param batchSize maximum number of messages per transaction
+     * @see BatchMessageListenerContainer#setBatchSize(int)
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Set the maximum time in milliseconds spent collecting a batch.
+     *
+     * @param batchTimeout batch collection time in milliseconds
+     * @see BatchMessageListenerContainer#setBatchTimeout(long)
+     */
+    public void setBatchTimeout(long batchTimeout) {
+        this.batchTimeout = batchTimeout;
+    }
+
+    /**
+     * Set whether to skip transactions for empty polls.
+     *
+     * @param skipEmptyPolls whether to skip transactions for empty polls
+     * @see BatchMessageListenerContainer#setSkipEmptyPolls(boolean)
+     */
+    public void setSkipEmptyPolls(boolean skipEmptyPolls) {
+        this.skipEmptyPolls = skipEmptyPolls;
+    }
+
+    @Override
+    protected DefaultMessageListenerContainer createContainerInstance() {
+        BatchMessageListenerContainer container = new BatchMessageListenerContainer();
+        container.setBatchSize(this.batchSize);
+        container.setBatchTimeout(this.batchTimeout);
+        container.setSkipEmptyPolls(this.skipEmptyPolls);
+        return container;
+    }
+}
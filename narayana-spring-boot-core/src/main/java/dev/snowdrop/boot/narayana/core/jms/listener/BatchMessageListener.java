@@ -0,0 +1,38 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms.listener;
+
+import java.util.List;
+
+import jakarta.jms.Message;
+import jakarta.jms.MessageListener;
+
+@FunctionalInterface
+public interface BatchMessageListener extends MessageListener {
+
+    /**
+     * Process a batch of messages received within one transaction.
+     *
+     * @param messages received messages, never empty
+     */
+    void onMessages(List<Message> messages);
+
+    @Override
+    default void onMessage(Message message) {
+        onMessages(List.of(message));
+    }
+}
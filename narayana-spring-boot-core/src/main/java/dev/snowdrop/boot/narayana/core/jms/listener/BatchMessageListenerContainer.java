@@ -0,0 +1,281 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms.listener;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import jakarta.jms.Connection;
+import jakarta.jms.Destination;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+
+import com.arjuna.ats.arjuna.coordinator.TxControl;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+
+public class BatchMessageListenerContainer extends DefaultMessageListenerContainer {
+
+    private final ThreadLocal<List<Message>> currentBatch = new ThreadLocal<>();
+    private int batchSize = 1;
+    private long batchTimeout = 1000;
+    private int transactionTimeout = -1;
+    private boolean skipEmptyPolls = false;
+    private final Set<Object> idleInvokers = ConcurrentHashMap.newKeySet();
+    private final Deque<Session> probeSessions = new ConcurrentLinkedDeque<>();
+    private final Object probeConnectionMonitor = new Object();
+    private Connection probeConnection;
+
+    /**
+     * Set the maximum number of messages received within one transaction.
+     *
+     * @param batchSize maximum number of messages per transaction
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    /**
+     * Set the maximum time in milliseconds spent collecting further messages after the first message of a batch has
+     * been received. Within a transaction the time is additionally limited to half of the transaction timeout of the
+     * container or, if none is set, to half of the default timeout of the transaction manager or of Narayana.
+     *
+     * @param batchTimeout batch collection time in milliseconds
+     */
+    public void setBatchTimeout(long batchTimeout) {
+        this.batchTimeout = batchTimeout;
+    }
+
+    public long getBatchTimeout() {
+        return this.batchTimeout;
+    }
+
+    /**
+     * Set whether to wait for a message with a non-transactional consumer before a transaction is started, once a
+     * transactional receive came back empty. While the queue stays empty, the container polls without starting a
+     * transaction, so idle consumers don't cause empty XA transactions. The probe consumer is created on the shared
+     * connection, or on one probe connection of the container, and its session is reused while no message arrives.
+     * The first message arriving at an idle queue is returned by closing the probe session and may be marked as
+     * redelivered.
+     *
+     * @param skipEmptyPolls whether to skip transactions for empty polls
+     */
+    public void setSkipEmptyPolls(boolean skipEmptyPolls) {
+        this.skipEmptyPolls = skipEmptyPolls;
+    }
+
+    public boolean isSkipEmptyPolls() {
+        return this.skipEmptyPolls;
+    }
+
+    @Override
+    public void setTransactionTimeout(int transactionTimeout) {
+        super.setTransactionTimeout(transactionTimeout);
+        this.transactionTimeout = transactionTimeout;
+    }
+
+    /**
+     * Clear the collected batch after every attempt, including attempts that fail or reject the received messages
+     * before the listener is invoked, so that a pooled consumer thread doesn't keep messages of an earlier attempt.
+     */
+    @Override
+    protected boolean doReceiveAndExecute(Object invoker, Session session, MessageConsumer consumer, TransactionStatus status)
+            throws JMSException {
+        try {
+            return super.doReceiveAndExecute(invoker, session, consumer, status);
+        } finally {
+            this.currentBatch.remove();
+        }
+    }
+
+    @Override
+    protected boolean receiveAndExecute(Object invoker, Session session, MessageConsumer consumer) throws JMSException {
+        if (!this.skipEmptyPolls || getTransactionManager() == null) {
+            return super.receiveAndExecute(invoker, session, consumer);
+        }
+        if (this.idleInvokers.contains(invoker) && !isMessageAvailable()) {
+            noMessageReceived(invoker, session);
+            return false;
+        }
+        boolean received = super.receiveAndExecute(invoker, session, consumer);
+        if (received) {
+            this.idleInvokers.remove(invoker);
+        } else {
+            this.idleInvokers.add(invoker);
+        }
+        return received;
+    }
+
+    /**
+     * Wait up to the receive timeout for a message on the listener queue with a non-transactional consumer. The probe
+     * session is kept for the next probe if no message arrived, otherwise it is closed to return the message to the
+     * queue.
+     *
+     * @return {@code false} if no message arrived at the listener queue, {@code true} otherwise
+     * @throws JMSException if probing fails
+     */
+    protected boolean isMessageAvailable() throws JMSException {
+        Session session = this.probeSessions.poll();
+        Message message;
+        try {
+            if (session == null) {
+                session = getProbeConnection().createSession(false, Session.CLIENT_ACKNOWLEDGE);
+            }
+            Destination destination = getDestination();
+            if (destination == null && getDestinationName() != null) {
+                destination = resolveDestinationName(session, getDestinationName());
+            }
+            if (!(destination instanceof Queue queue)) {
+                this.probeSessions.push(session);
+                return true;
+            }
+            try (MessageConsumer consumer = session.createConsumer(queue, getMessageSelector())) {
+                long receiveTimeout = getReceiveTimeout();
+                message = consumer.receive(receiveTimeout > 0 ? receiveTimeout : DEFAULT_RECEIVE_TIMEOUT);
+            }
+        } catch (JMSException e) {
+            JmsUtils.closeSession(session);
+            if (!sharedConnectionEnabled()) {
+                closeProbeConnection();
+            }
+            throw e;
+        }
+        if (message == null) {
+            this.probeSessions.push(session);
+            return false;
+        }
+        JmsUtils.closeSession(session);
+        return true;
+    }
+
+    private Connection getProbeConnection() throws JMSException {
+        if (sharedConnectionEnabled()) {
+            return getSharedConnection();
+        }
+        synchronized (this.probeConnectionMonitor) {
+            if (this.probeConnection == null) {
+                Connection connection = createConnection();
+                try {
+                    connection.start();
+                } catch (JMSException e) {
+                    JmsUtils.closeConnection(connection);
+                    throw e;
+                }
+                this.probeConnection = connection;
+            }
+            return this.probeConnection;
+        }
+    }
+
+    private void closeProbeConnection() {
+        Session session;
+        while ((session = this.probeSessions.poll()) != null) {
+            JmsUtils.closeSession(session);
+        }
+        synchronized (this.probeConnectionMonitor) {
+            JmsUtils.closeConnection(this.probeConnection);
+            this.probeConnection = null;
+        }
+    }
+
+    @Override
+    protected void doShutdown() throws JMSException {
+        try {
+            super.doShutdown();
+        } finally {
+            closeProbeConnection();
+            this.idleInvokers.clear();
+        }
+    }
+
+    /**
+     * Receive the first message using the configured receive timeout and then up to {@code batchSize - 1} further
+     * messages within the batch timeout. The whole batch is passed on to the listener in the same transaction.
+     */
+    @Override
+    protected Message receiveMessage(MessageConsumer consumer) throws JMSException {
+        Message message = super.receiveMessage(consumer);
+        if (message == null || this.batchSize <= 1) {
+            return message;
+        }
+        List<Message> batch = new ArrayList<>(this.batchSize);
+        batch.add(message);
+        long deadline = System.currentTimeMillis() + getEffectiveBatchTimeout();
+        while (batch.size() < this.batchSize) {
+            long remaining = deadline - System.currentTimeMillis();
+            Message next = remaining > 0 ? consumer.receive(remaining) : consumer.receiveNoWait();
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        this.currentBatch.set(batch);
+        return message;
+    }
+
+    private long getEffectiveBatchTimeout() {
+        int timeout = getEffectiveTransactionTimeout();
+        if (timeout > 0) {
+            return Math.min(this.batchTimeout, timeout * 500L);
+        }
+        return this.batchTimeout;
+    }
+
+    private int getEffectiveTransactionTimeout() {
+        if (this.transactionTimeout > 0) {
+            return this.transactionTimeout;
+        }
+        PlatformTransactionManager transactionManager = getTransactionManager();
+        if (transactionManager == null) {
+            return -1;
+        }
+        if (transactionManager instanceof AbstractPlatformTransactionManager platformTransactionManager
+                && platformTransactionManager.getDefaultTimeout() > 0) {
+            return platformTransactionManager.getDefaultTimeout();
+        }
+        return TxControl.getDefaultTimeout();
+    }
+
+    @Override
+    protected void invokeListener(Session session, Message message) throws JMSException {
+        List<Message> batch = this.currentBatch.get();
+        this.currentBatch.remove();
+        if (batch == null || batch.get(0) != message) {
+            super.invokeListener(session, message);
+        } else if (getMessageListener() instanceof BatchMessageListener batchMessageListener) {
+            batchMessageListener.onMessages(batch);
+        } else {
+            for (Message batchMessage : batch) {
+                super.invokeListener(session, batchMessage);
+            }
+        }
+    }
+}
@@ -0,0 +1,487 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms.outbox;
+
+import java.io.ObjectInputFilter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import jakarta.jms.CompletionListener;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.Destination;
+import jakarta.jms.JMSContext;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.QueueConnection;
+import jakarta.jms.QueueSender;
+import jakarta.jms.QueueSession;
+import jakarta.jms.Session;
+import jakarta.jms.TopicConnection;
+import jakarta.jms.TopicPublisher;
+import jakarta.jms.TopicSession;
+import jakarta.jms.TransactionInProgressException;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import dev.snowdrop.boot.narayana.core.properties.OutboxProperties;
+import org.jboss.logging.Logger;
+
+final class OutboxConnectionFactory implements ConnectionFactory, AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(OutboxConnectionFactory.class);
+
+    private final ConnectionFactory connectionFactory;
+    private final ConnectionFactory relayConnectionFactory;
+    private final Supplier<DataSource> dataSourceSupplier;
+    private final TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+    private final OutboxProperties properties;
+    private final ObjectInputFilter objectMessageFilter;
+    private final ScheduledExecutorService relayExecutor;
+    private final AtomicBoolean relayPending = new AtomicBoolean();
+    private Connection relayConnection;
+
+    /**
+     * Create a new {@link OutboxConnectionFactory} instance. Messages sent within an active JTA transaction are written
+     * to the outbox table through the data source and published with a local broker transaction once the JTA
+     * transaction has committed. Everything else is delegated to the wrapped connection factory.
+     *
+     * @param connectionFactory                  connection factory used outside of transactions and for receiving
+     * @param relayConnectionFactory             non-XA connection factory used to create and publish messages
+     * @param dataSourceSupplier                 supplier of the data source holding the outbox table
+     * @param transactionSynchronizationRegistry transaction synchronization registry
+     * @param properties                         outbox properties
+     */
+    OutboxConnectionFactory(ConnectionFactory connectionFactory, ConnectionFactory relayConnectionFactory,
+            Supplier<DataSource> dataSourceSupplier, TransactionSynchronizationRegistry transactionSynchronizationRegistry,
+            OutboxProperties properties) {
+        this.connectionFactory = connectionFactory;
+        this.relayConnectionFactory = relayConnectionFactory;
+        this.dataSourceSupplier = dataSourceSupplier;
+        this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+        this.properties = properties;
+        this.objectMessageFilter = properties.getObjectMessageFilter() == null || properties.getObjectMessageFilter().isBlank()
+                ? null : ObjectInputFilter.Config.createFilter(properties.getObjectMessageFilter() + ";!*");
+        this.relayExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "narayana-jms-outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getRelayInterval().toMillis();
+        if (interval > 0) {
+            this.relayExecutor.scheduleWithFixedDelay(this::relay, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public Connection createConnection() throws JMSException {
+        if (!isTransactionActive()) {
+            return this.connectionFactory.createConnection();
+        }
+        return (Connection) Proxy.newProxyInstance(OutboxConnectionFactory.class.getClassLoader(),
+                new Class<?>[]{QueueConnection.class, TopicConnection.class}, new OutboxConnection());
+    }
+
+    @Override
+    public Connection createConnection(String userName, String password) throws JMSException {
+        return this.connectionFactory.createConnection(userName, password);
+    }
+
+    @Override
+    public JMSContext createContext() {
+        return this.connectionFactory.createContext();
+    }
+
+    @Override
+    public JMSContext createContext(String userName, String password) {
+        return this.connectionFactory.createContext(userName, password);
+    }
+
+    @Override
+    public JMSContext createContext(String userName, String password, int sessionMode) {
+        return this.connectionFactory.createContext(userName, password, sessionMode);
+    }
+
+    @Override
+    public JMSContext createContext(int sessionMode) {
+        return this.connectionFactory.createContext(sessionMode);
+    }
+
+    @Override
+    public void close() {
+        this.relayExecutor.shutdownNow();
+        resetRelayConnection(getRelayConnectionIfPresent());
+    }
+
+    private boolean isTransactionActive() {
+        return this.transactionSynchronizationRegistry.getTransactionKey() != null
+                && this.transactionSynchronizationRegistry.getTransactionStatus() == Status.STATUS_ACTIVE;
+    }
+
+    private synchronized Connection getRelayConnection() throws JMSException {
+        if (this.relayConnection == null) {
+            Connection connection = this.relayConnectionFactory.createConnection();
+            connection.setExceptionListener(exception -> {
+                LOGGER.debugf(exception, "Outbox relay connection failed, discarding it");
+                resetRelayConnection(connection);
+            });
+            this.relayConnection = connection;
+        }
+        return this.relayConnection;
+    }
+
+    private synchronized Connection getRelayConnectionIfPresent() {
+        return this.relayConnection;
+    }
+
+    private synchronized void resetRelayConnection(Connection failedConnection) {
+        if (failedConnection == null || this.relayConnection != failedConnection) {
+            return;
+        }
+        this.relayConnection = null;
+        closeQuietly(failedConnection);
+    }
+
+    /**
+     * Write the message to the outbox table within the current transaction and publish it once the transaction has
+     * committed.
+     */
+    void write(OutboxMessage message) throws JMSException {
+        if (message.hasObjectBody() && this.objectMessageFilter == null) {
+            throw new JMSException("Object messages are not accepted by the outbox without an object message filter");
+        }
+        String sql = "INSERT INTO " + this.properties.getTableName()
+                + " (ID, CREATED_AT, LEASE_EXPIRES, PAYLOAD) VALUES (?, ?, 0, ?)";
+        try (java.sql.Connection connection = this.dataSourceSupplier.get().getConnection();
+                PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, UUID.randomUUID().toString());
+            statement.setLong(2, System.currentTimeMillis());
+            statement.setBytes(3, message.toBytes());
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            JMSException jmsException = new JMSException("Failed to write message to the outbox");
+            jmsException.setLinkedException(e);
+            jmsException.initCause(e);
+            throw jmsException;
+        }
+        if (this.transactionSynchronizationRegistry.getResource(this) == null) {
+            this.transactionSynchronizationRegistry.putResource(this, Boolean.TRUE);
+            this.transactionSynchronizationRegistry.registerInterposedSynchronization(new RelaySynchronization());
+        }
+    }
+
+    void triggerRelay() {
+        if (this.relayPending.compareAndSet(false, true)) {
+            this.relayExecutor.execute(() -> {
+                this.relayPending.set(false);
+                relay();
+            });
+        }
+    }
+
+    /**
+     * Publish all messages in the outbox table in batches. A batch is published within a local broker transaction
+     * and deleted from the table afterwards, so messages are delivered at least once. Messages are claimed with a
+     * lease first, so that relays of several application instances don't publish the same messages.
+     */
+    void relay() {
+        try {
+            while (publishBatch() >= this.properties.getBatchSize()) {
+                LOGGER.tracef("Outbox batch published, looking for more messages");
+            }
+        } catch (Exception e) {
+            LOGGER.warnf(e, "Failed to publish messages from outbox table %s", this.properties.getTableName());
+            resetRelayConnection(getRelayConnectionIfPresent());
+        }
+    }
+
+    private int publishBatch() throws Exception {
+        Map<String, OutboxMessage> batch = new LinkedHashMap<>();
+        DataSource dataSource = this.dataSourceSupplier.get();
+        String tableName = this.properties.getTableName();
+        String query = "SELECT ID, PAYLOAD FROM " + tableName + " WHERE LEASE_EXPIRES < ? ORDER BY CREATED_AT, ID";
+        String claim = "UPDATE " + tableName + " SET LEASE_EXPIRES = ? WHERE ID = ? AND LEASE_EXPIRES < ?";
+        long now = System.currentTimeMillis();
+        long leaseExpires = now + this.properties.getLeaseTimeout().toMillis();
+        int selected = 0;
+        try (java.sql.Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(query);
+                PreparedStatement claimStatement = connection.prepareStatement(claim)) {
+            statement.setMaxRows(this.properties.getBatchSize());
+            statement.setLong(1, now);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    selected++;
+                    String id = resultSet.getString(1);
+                    claimStatement.setLong(1, leaseExpires);
+                    claimStatement.setString(2, id);
+                    claimStatement.setLong(3, now);
+                    if (claimStatement.executeUpdate() == 1) {
+                        batch.put(id, OutboxMessage.fromBytes(resultSet.getBytes(2)));
+                    }
+                }
+            }
+        }
+        if (batch.isEmpty()) {
+            return selected;
+        }
+        try (Session session = getRelayConnection().createSession(true, Session.SESSION_TRANSACTED);
+                MessageProducer producer = session.createProducer(null)) {
+            for (OutboxMessage message : batch.values()) {
+                producer.setDeliveryDelay(message.getDeliveryDelay());
+                producer.send(message.toDestination(session), message.toMessage(session, this.objectMessageFilter),
+                        message.getDeliveryMode(), message.getPriority(), message.getTimeToLive());
+            }
+            session.commit();
+        }
+        String delete = "DELETE FROM " + tableName + " WHERE ID = ? AND LEASE_EXPIRES = ?";
+        try (java.sql.Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(delete)) {
+            for (String id : batch.keySet()) {
+                statement.setString(1, id);
+                statement.setLong(2, leaseExpires);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        return selected;
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            LOGGER.debugf(e, "Failed to close %s", closeable);
+        }
+    }
+
+    private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private static Object handleObjectMethod(Object proxy, Method method, Object[] args, Object target) {
+        return switch (method.getName()) {
+            case "equals" -> proxy == args[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            default -> "Outbox[" + target + "]";
+        };
+    }
+
+    private static boolean isObjectMethod(Method method) {
+        return method.getDeclaringClass() == Object.class;
+    }
+
+    /**
+     * Publishes the outbox after the transaction has committed.
+     */
+    private final class RelaySynchronization implements Synchronization {
+
+        @Override
+        public void beforeCompletion() {
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status == Status.STATUS_COMMITTED) {
+                triggerRelay();
+            }
+        }
+    }
+
+    /**
+     * Connection handle used within a transaction. Sessions write sent messages to the outbox, any other operation is
+     * delegated to a connection of the wrapped connection factory which is only created when needed.
+     */
+    private final class OutboxConnection implements InvocationHandler {
+
+        private final List<Session> sessions = new ArrayList<>();
+        private Connection connection;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (isObjectMethod(method)) {
+                return handleObjectMethod(proxy, method, args, this.connection);
+            }
+            switch (method.getName()) {
+                case "createSession":
+                case "createQueueSession":
+                case "createTopicSession":
+                    Session session = (Session) Proxy.newProxyInstance(OutboxConnectionFactory.class.getClassLoader(),
+                            new Class<?>[]{QueueSession.class, TopicSession.class},
+                            new OutboxSession(this, getRelayConnection().createSession(false, Session.AUTO_ACKNOWLEDGE)));
+                    synchronized (this) {
+                        this.sessions.add(session);
+                    }
+                    return session;
+                case "close":
+                    close();
+                    return null;
+                default:
+                    return invokeOn(getConnection(), method, args);
+            }
+        }
+
+        private synchronized Connection getConnection() throws JMSException {
+            if (this.connection == null) {
+                this.connection = OutboxConnectionFactory.this.connectionFactory.createConnection();
+            }
+            return this.connection;
+        }
+
+        private synchronized void close() throws JMSException {
+            for (Session session : this.sessions) {
+                closeQuietly(session);
+            }
+            this.sessions.clear();
+            if (this.connection != null) {
+                this.connection.close();
+            }
+        }
+    }
+
+    /**
+     * Session handle used within a transaction. Messages, destinations and producers are created with a session of
+     * the relay connection, consumers and browsers with a session of the wrapped connection factory.
+     */
+    private final class OutboxSession implements InvocationHandler {
+
+        private final OutboxConnection connection;
+        private final Session messageSession;
+        private Session session;
+
+        private OutboxSession(OutboxConnection connection, Session messageSession) {
+            this.connection = connection;
+            this.messageSession = messageSession;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (isObjectMethod(method)) {
+                return handleObjectMethod(proxy, method, args, this.messageSession);
+            }
+            String name = method.getName();
+            switch (name) {
+                case "createProducer":
+                case "createSender":
+                case "createPublisher":
+                    MessageProducer producer = (MessageProducer) invokeOn(this.messageSession, method, args);
+                    return Proxy.newProxyInstance(OutboxConnectionFactory.class.getClassLoader(),
+                            new Class<?>[]{QueueSender.class, TopicPublisher.class}, new OutboxProducer(producer));
+                case "commit":
+                case "rollback":
+                    throw new TransactionInProgressException("Outbox sessions take part in the JTA transaction");
+                case "close":
+                    close();
+                    return null;
+                default:
+                    if (name.startsWith("create") && !name.startsWith("createTemporary") && !name.contains("Consumer")
+                            && !name.contains("Subscriber") && !name.contains("Receiver") && !name.contains("Browser")
+                            || name.equals("getTransacted") || name.equals("getAcknowledgeMode")) {
+                        return invokeOn(this.messageSession, method, args);
+                    }
+                    return invokeOn(getSession(), method, args);
+            }
+        }
+
+        private synchronized Session getSession() throws JMSException {
+            if (this.session == null) {
+                this.session = this.connection.getConnection().createSession();
+            }
+            return this.session;
+        }
+
+        private synchronized void close() throws JMSException {
+            try {
+                this.messageSession.close();
+            } finally {
+                if (this.session != null) {
+                    this.session.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Producer handle writing sent messages to the outbox. Delivery settings, including the delivery delay, are taken
+     * from the relay producer.
+     */
+    private final class OutboxProducer implements InvocationHandler {
+
+        private final MessageProducer producer;
+
+        private OutboxProducer(MessageProducer producer) {
+            this.producer = producer;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (isObjectMethod(method)) {
+                return handleObjectMethod(proxy, method, args, this.producer);
+            }
+            if (!method.getName().equals("send") && !method.getName().equals("publish")) {
+                return invokeOn(this.producer, method, args);
+            }
+            int index = 0;
+            Destination destination = this.producer.getDestination();
+            if (!(args[0] instanceof Message)) {
+                destination = (Destination) args[0];
+                index++;
+            }
+            Message message = (Message) args[index++];
+            int deliveryMode = this.producer.getDeliveryMode();
+            int priority = this.producer.getPriority();
+            long timeToLive = this.producer.getTimeToLive();
+            long deliveryDelay = this.producer.getDeliveryDelay();
+            if (args.length >= index + 3 && args[index] instanceof Integer) {
+                deliveryMode = (Integer) args[index];
+                priority = (Integer) args[index + 1];
+                timeToLive = (Long) args[index + 2];
+            }
+            if (destination == null) {
+                throw new jakarta.jms.InvalidDestinationException("No destination specified");
+            }
+            write(OutboxMessage.of(destination, message, deliveryMode, priority, timeToLive, deliveryDelay));
+            if (args[args.length - 1] instanceof CompletionListener completionListener) {
+                completionListener.onCompletion(message);
+            }
+            return null;
+        }
+    }
+}
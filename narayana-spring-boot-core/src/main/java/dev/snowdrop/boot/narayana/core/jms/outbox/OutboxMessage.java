@@ -0,0 +1,262 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms.outbox;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import jakarta.jms.BytesMessage;
+import jakarta.jms.Destination;
+import jakarta.jms.JMSException;
+import jakarta.jms.MapMessage;
+import jakarta.jms.Message;
+import jakarta.jms.ObjectMessage;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import jakarta.jms.StreamMessage;
+import jakarta.jms.TemporaryQueue;
+import jakarta.jms.TemporaryTopic;
+import jakarta.jms.TextMessage;
+import jakarta.jms.Topic;
+
+final class OutboxMessage implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 6151286934531867016L;
+
+    /**
+     * Only the classes making up an outbox message are accepted, bodies of object messages are serialized separately.
+     */
+    private static final ObjectInputFilter PAYLOAD_FILTER = ObjectInputFilter.Config.createFilter(String.join(";",
+            OutboxMessage.class.getName(), BodyType.class.getName(), Enum.class.getName(), HashMap.class.getName(),
+            Map.Entry.class.getName(), String.class.getName(), Boolean.class.getName(), Byte.class.getName(), Short.class.getName(),
+            Integer.class.getName(), Long.class.getName(), Float.class.getName(), Double.class.getName(),
+            Character.class.getName(), Number.class.getName(), "!*"));
+
+    private final String destinationName;
+    private final boolean topic;
+    private final String replyToName;
+    private final boolean replyToTopic;
+    private final BodyType bodyType;
+    private final Serializable body;
+    private final HashMap<String, Object> properties;
+    private final String correlationId;
+    private final String type;
+    private final int deliveryMode;
+    private final int priority;
+    private final long timeToLive;
+    private final long deliveryDelay;
+
+    private OutboxMessage(Destination destination, Destination replyTo, BodyType bodyType, Serializable body,
+            HashMap<String, Object> properties, String correlationId, String type, int deliveryMode, int priority,
+            long timeToLive, long deliveryDelay) throws JMSException {
+        this.destinationName = getDestinationName(destination);
+        this.topic = destination instanceof Topic;
+        this.replyToName = replyTo == null ? null : getDestinationName(replyTo);
+        this.replyToTopic = replyTo instanceof Topic;
+        this.bodyType = bodyType;
+        this.body = body;
+        this.properties = properties;
+        this.correlationId = correlationId;
+        this.type = type;
+        this.deliveryMode = deliveryMode;
+        this.priority = priority;
+        this.timeToLive = timeToLive;
+        this.deliveryDelay = deliveryDelay;
+    }
+
+    /**
+     * Capture a message sent within a transaction so that it can be published later.
+     *
+     * @param destination   message destination
+     * @param message       message to capture
+     * @param deliveryMode  delivery mode requested by the producer
+     * @param priority      priority requested by the producer
+     * @param timeToLive    time to live requested by the producer
+     * @param deliveryDelay delivery delay requested by the producer
+     * @return the captured message
+     * @throws JMSException if the destination or the message type is not supported
+     */
+    static OutboxMessage of(Destination destination, Message message, int deliveryMode, int priority, long timeToLive,
+            long deliveryDelay) throws JMSException {
+        HashMap<String, Object> properties = new HashMap<>();
+        Enumeration<?> names = message.getPropertyNames();
+        while (names.hasMoreElements()) {
+            String name = (String) names.nextElement();
+            properties.put(name, message.getObjectProperty(name));
+        }
+        BodyType bodyType;
+        Serializable body;
+        if (message instanceof TextMessage textMessage) {
+            bodyType = BodyType.TEXT;
+            body = textMessage.getText();
+        } else if (message instanceof BytesMessage bytesMessage) {
+            bodyType = BodyType.BYTES;
+            bytesMessage.reset();
+            byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+            bytesMessage.readBytes(bytes);
+            bytesMessage.reset();
+            body = bytes;
+        } else if (message instanceof ObjectMessage objectMessage) {
+            bodyType = BodyType.OBJECT;
+            body = serialize(objectMessage.getObject());
+        } else if (message instanceof MapMessage mapMessage) {
+            bodyType = BodyType.MAP;
+            HashMap<String, Object> map = new HashMap<>();
+            Enumeration<?> mapNames = mapMessage.getMapNames();
+            while (mapNames.hasMoreElements()) {
+                String name = (String) mapNames.nextElement();
+                map.put(name, mapMessage.getObject(name));
+            }
+            body = map;
+        } else if (message instanceof StreamMessage) {
+            throw new JMSException("Stream messages are not supported by the outbox");
+        } else {
+            bodyType = BodyType.NONE;
+            body = null;
+        }
+        return new OutboxMessage(destination, message.getJMSReplyTo(), bodyType, body, properties,
+                message.getJMSCorrelationID(), message.getJMSType(), deliveryMode, priority, timeToLive, deliveryDelay);
+    }
+
+    private static String getDestinationName(Destination destination) throws JMSException {
+        if (destination instanceof TemporaryQueue || destination instanceof TemporaryTopic) {
+            throw new JMSException("Temporary destinations are not supported by the outbox");
+        }
+        if (destination instanceof Queue queue) {
+            return queue.getQueueName();
+        }
+        if (destination instanceof Topic topic) {
+            return topic.getTopicName();
+        }
+        throw new JMSException("Unsupported outbox destination " + destination);
+    }
+
+    /**
+     * Recreate the message with the given session.
+     *
+     * @param session          session to create the message with
+     * @param objectBodyFilter filter for the classes of an object message body, object messages are rejected if
+     *                         {@code null}
+     * @return the message
+     * @throws JMSException if the message cannot be created
+     */
+    @SuppressWarnings("unchecked")
+    Message toMessage(Session session, ObjectInputFilter objectBodyFilter) throws JMSException {
+        Message message;
+        switch (this.bodyType) {
+            case TEXT -> message = session.createTextMessage((String) this.body);
+            case BYTES -> {
+                BytesMessage bytesMessage = session.createBytesMessage();
+                bytesMessage.writeBytes((byte[]) this.body);
+                message = bytesMessage;
+            }
+            case OBJECT -> message = session.createObjectMessage(deserialize((byte[]) this.body, objectBodyFilter));
+            case MAP -> {
+                MapMessage mapMessage = session.createMapMessage();
+                for (Map.Entry<String, Object> entry : ((Map<String, Object>) this.body).entrySet()) {
+                    mapMessage.setObject(entry.getKey(), entry.getValue());
+                }
+                message = mapMessage;
+            }
+            default -> message = session.createMessage();
+        }
+        for (Map.Entry<String, Object> entry : this.properties.entrySet()) {
+            message.setObjectProperty(entry.getKey(), entry.getValue());
+        }
+        message.setJMSCorrelationID(this.correlationId);
+        message.setJMSType(this.type);
+        if (this.replyToName != null) {
+            message.setJMSReplyTo(this.replyToTopic ? session.createTopic(this.replyToName) : session.createQueue(this.replyToName));
+        }
+        return message;
+    }
+
+    Destination toDestination(Session session) throws JMSException {
+        return this.topic ? session.createTopic(this.destinationName) : session.createQueue(this.destinationName);
+    }
+
+    boolean hasObjectBody() {
+        return this.bodyType == BodyType.OBJECT;
+    }
+
+    int getDeliveryMode() {
+        return this.deliveryMode;
+    }
+
+    int getPriority() {
+        return this.priority;
+    }
+
+    long getTimeToLive() {
+        return this.timeToLive;
+    }
+
+    long getDeliveryDelay() {
+        return this.deliveryDelay;
+    }
+
+    byte[] toBytes() throws JMSException {
+        return serialize(this);
+    }
+
+    static OutboxMessage fromBytes(byte[] bytes) throws JMSException {
+        return (OutboxMessage) deserialize(bytes, PAYLOAD_FILTER);
+    }
+
+    private static byte[] serialize(Serializable object) throws JMSException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(object);
+        } catch (IOException e) {
+            throw createJMSException("Failed to serialize outbox message", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Serializable deserialize(byte[] bytes, ObjectInputFilter filter) throws JMSException {
+        if (filter == null) {
+            throw new JMSException("Object messages are not accepted by the outbox");
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            input.setObjectInputFilter(filter);
+            return (Serializable) input.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw createJMSException("Failed to deserialize outbox message", e);
+        }
+    }
+
+    private static JMSException createJMSException(String reason, Exception cause) {
+        JMSException jmsException = new JMSException(reason);
+        jmsException.setLinkedException(cause);
+        jmsException.initCause(cause);
+        return jmsException;
+    }
+
+    private enum BodyType {
+        NONE, TEXT, BYTES, OBJECT, MAP
+    }
+}
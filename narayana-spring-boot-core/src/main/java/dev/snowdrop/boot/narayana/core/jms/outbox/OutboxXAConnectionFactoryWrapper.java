@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms.outbox;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.XAConnectionFactory;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import com.arjuna.ats.jta.common.jtaPropertyManager;
+import dev.snowdrop.boot.narayana.core.jms.NamedXAConnectionFactoryWrapper;
+import dev.snowdrop.boot.narayana.core.properties.OutboxProperties;
+import org.jboss.logging.Logger;
+import org.springframework.boot.jms.XAConnectionFactoryWrapper;
+
+public class OutboxXAConnectionFactoryWrapper implements NamedXAConnectionFactoryWrapper, AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(OutboxXAConnectionFactoryWrapper.class);
+
+    private final XAConnectionFactoryWrapper xaConnectionFactoryWrapper;
+    private final Supplier<DataSource> dataSourceSupplier;
+    private final TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+    private final OutboxProperties properties;
+    private final List<OutboxConnectionFactory> connectionFactories = new CopyOnWriteArrayList<>();
+
+    /**
+     * Create a new {@link OutboxXAConnectionFactoryWrapper} instance.
+     *
+     * @param xaConnectionFactoryWrapper wrapper used for connections outside of transactions and for receiving
+     * @param dataSourceSupplier         supplier of the data source holding the outbox table
+     * @param properties                 outbox properties
+     */
+    public OutboxXAConnectionFactoryWrapper(XAConnectionFactoryWrapper xaConnectionFactoryWrapper,
+            Supplier<DataSource> dataSourceSupplier, OutboxProperties properties) {
+        this(xaConnectionFactoryWrapper, dataSourceSupplier,
+                jtaPropertyManager.getJTAEnvironmentBean().getTransactionSynchronizationRegistry(), properties);
+    }
+
+    /**
+     * Create a new {@link OutboxXAConnectionFactoryWrapper} instance.
+     *
+     * @param xaConnectionFactoryWrapper         wrapper used for connections outside of transactions and for receiving
+     * @param dataSourceSupplier                 supplier of the data source holding the outbox table
+     * @param transactionSynchronizationRegistry transaction synchronization registry
+     * @param properties                         outbox properties
+     */
+    public OutboxXAConnectionFactoryWrapper(XAConnectionFactoryWrapper xaConnectionFactoryWrapper,
+            Supplier<DataSource> dataSourceSupplier, TransactionSynchronizationRegistry transactionSynchronizationRegistry,
+            OutboxProperties properties) {
+        this.xaConnectionFactoryWrapper = xaConnectionFactoryWrapper;
+        this.dataSourceSupplier = dataSourceSupplier;
+        this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+        this.properties = properties;
+    }
+
+    @Override
+    public ConnectionFactory wrapConnectionFactory(XAConnectionFactory xaConnectionFactory) throws Exception {
+        ConnectionFactory relayConnectionFactory = getRelayConnectionFactory(xaConnectionFactory);
+        return createConnectionFactory(this.xaConnectionFactoryWrapper.wrapConnectionFactory(xaConnectionFactory),
+                relayConnectionFactory);
+    }
+
+    /**
+     * Wrap the given XA connection factory with the settings of the named factory, which requires the wrapped wrapper
+     * to support named factories.
+     *
+     * @param xaConnectionFactory XA connection factory to wrap
+     * @param factoryName         name of the configured factory
+     * @return the outbox connection factory
+     * @throws Exception if the connection factory cannot be wrapped
+     */
+    @Override
+    public ConnectionFactory wrapConnectionFactory(XAConnectionFactory xaConnectionFactory, String factoryName) throws Exception {
+        if (!(this.xaConnectionFactoryWrapper instanceof NamedXAConnectionFactoryWrapper namedWrapper)) {
+            throw new IllegalStateException(this.xaConnectionFactoryWrapper + " does not support named connection factories");
+        }
+        ConnectionFactory relayConnectionFactory = getRelayConnectionFactory(xaConnectionFactory);
+        return createConnectionFactory(namedWrapper.wrapConnectionFactory(xaConnectionFactory, factoryName),
+                relayConnectionFactory);
+    }
+
+    private static ConnectionFactory getRelayConnectionFactory(XAConnectionFactory xaConnectionFactory) {
+        if (!(xaConnectionFactory instanceof ConnectionFactory relayConnectionFactory)) {
+            throw new IllegalArgumentException("Outbox requires an XAConnectionFactory that also implements ConnectionFactory");
+        }
+        return relayConnectionFactory;
+    }
+
+    private ConnectionFactory createConnectionFactory(ConnectionFactory connectionFactory,
+            ConnectionFactory relayConnectionFactory) {
+        OutboxConnectionFactory outboxConnectionFactory = new OutboxConnectionFactory(connectionFactory,
+                relayConnectionFactory, this.dataSourceSupplier, this.transactionSynchronizationRegistry, this.properties);
+        this.connectionFactories.add(outboxConnectionFactory);
+        return outboxConnectionFactory;
+    }
+
+    /**
+     * Publish messages left in the outbox table right away instead of waiting for the next relay interval.
+     */
+    public void relay() {
+        for (OutboxConnectionFactory connectionFactory : this.connectionFactories) {
+            connectionFactory.triggerRelay();
+        }
+    }
+
+    /**
+     * Stop the relays and close their broker connections, then close the wrapped wrapper.
+     */
+    @Override
+    public void close() {
+        for (OutboxConnectionFactory connectionFactory : this.connectionFactories) {
+            connectionFactory.close();
+        }
+        this.connectionFactories.clear();
+        if (this.xaConnectionFactoryWrapper instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                LOGGER.warnf(e, "Failed to close %s", closeable);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms.pool;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.logging.Logger;
+import org.messaginghub.pooled.jms.pool.PooledConnection;
+
+public class AdaptiveSessionPoolSizer {
+
+    private static final Logger LOGGER = Logger.getLogger(AdaptiveSessionPoolSizer.class);
+
+    private final JmsPoolNarayanaConnectionFactory connectionFactory;
+    private final int minConnections;
+    private final int maxConnections;
+    private final int minSessionsPerConnection;
+    private final int maxSessionsPerConnection;
+    private final long waitThresholdNanos;
+    private ScheduledExecutorService executor;
+    private long lastWaitCount;
+    private long lastWaitNanos;
+    private long lastBlockTimeouts;
+
+    /**
+     * Create a new {@link AdaptiveSessionPoolSizer} instance. The sizer doubles the session limit of each connection,
+     * and adds connections once the session limit is exhausted, whenever borrows time out or the average session wait
+     * time exceeds the threshold while a connection used all its sessions. Slow borrows below the session limit, e.g.
+     * while new sessions are created, don't grow the pool. When less than a quarter of the session limit is used, it
+     * halves the limit and then removes connections.
+     *
+     * @param connectionFactory        pooled connection factory to size
+     * @param minConnections           lower bound of the maximum number of connections
+     * @param maxConnections           upper bound of the maximum number of connections
+     * @param minSessionsPerConnection lower bound of the maximum number of sessions per connection
+     * @param maxSessionsPerConnection upper bound of the maximum number of sessions per connection
+     * @param waitThreshold            average session wait time above which the pool grows
+     */
+    public AdaptiveSessionPoolSizer(JmsPoolNarayanaConnectionFactory connectionFactory, int minConnections, int maxConnections,
+            int minSessionsPerConnection, int maxSessionsPerConnection, Duration waitThreshold) {
+        if (minConnections < 1 || minConnections > maxConnections || minSessionsPerConnection < 1
+                || minSessionsPerConnection > maxSessionsPerConnection) {
+            throw new IllegalArgumentException("Invalid adaptive session pool bounds");
+        }
+        this.connectionFactory = connectionFactory;
+        this.minConnections = minConnections;
+        this.maxConnections = maxConnections;
+        this.minSessionsPerConnection = minSessionsPerConnection;
+        this.maxSessionsPerConnection = maxSessionsPerConnection;
+        this.waitThresholdNanos = waitThreshold.toNanos();
+    }
+
+    /**
+     * Start adjusting the pool in the given interval. Configured pool limits outside the bounds of the sizer are
+     * moved into them first.
+     *
+     * @param interval adjustment interval
+     */
+    public synchronized void start(Duration interval) {
+        if (this.executor != null) {
+            return;
+        }
+        int connections = this.connectionFactory.getMaxConnections();
+        int sessions = this.connectionFactory.getMaxSessionsPerConnection();
+        int clampedConnections = clamp(connections, this.minConnections, this.maxConnections);
+        int clampedSessions = clamp(sessions, this.minSessionsPerConnection, this.maxSessionsPerConnection);
+        if (clampedConnections != connections) {
+            LOGGER.infof("Configured maximum of %d JMS connections of %s is outside the adaptive bounds [%d, %d], using %d",
+                    connections, this.connectionFactory.getName(), this.minConnections, this.maxConnections, clampedConnections);
+        }
+        if (clampedSessions != sessions) {
+            LOGGER.infof("Configured maximum of %d JMS sessions per connection of %s is outside the adaptive bounds [%d, %d], using %d",
+                    sessions, this.connectionFactory.getName(), this.minSessionsPerConnection, this.maxSessionsPerConnection,
+                    clampedSessions);
+        }
+        apply(clampedConnections, clampedSessions);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "narayana-jms-pool-sizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleWithFixedDelay(this::adjust, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+
+    /**
+     * Adjust the pool limits to the load observed since the previous adjustment.
+     */
+    public synchronized void adjust() {
+        JmsPoolStatistics statistics = this.connectionFactory.getStatistics();
+        long waitCount = statistics.getSessionWaitCount();
+        long waitNanos = statistics.getSessionWaitTotalTime().toNanos();
+        long blockTimeouts = statistics.getBlockTimeoutCount();
+        long waits = waitCount - this.lastWaitCount;
+        int peakSessions = statistics.takePeakActiveSessionsPerConnection();
+        int connections = this.connectionFactory.getMaxConnections();
+        int sessions = this.connectionFactory.getMaxSessionsPerConnection();
+        boolean congested = blockTimeouts > this.lastBlockTimeouts || peakSessions >= sessions
+                && waits > 0 && (waitNanos - this.lastWaitNanos) / waits > this.waitThresholdNanos;
+        this.lastWaitCount = waitCount;
+        this.lastWaitNanos = waitNanos;
+        this.lastBlockTimeouts = blockTimeouts;
+
+        if (congested) {
+            if (sessions < this.maxSessionsPerConnection) {
+                sessions = Math.min(this.maxSessionsPerConnection, sessions * 2);
+            } else if (connections < this.maxConnections) {
+                connections++;
+            }
+        } else if (peakSessions * 4 <= sessions) {
+            if (sessions > this.minSessionsPerConnection) {
+                sessions = Math.max(this.minSessionsPerConnection, Math.max(peakSessions * 2, sessions / 2));
+            } else if (connections > this.minConnections) {
+                connections--;
+            }
+        }
+        apply(connections, sessions);
+    }
+
+    private void apply(int connections, int sessions) {
+        if (connections != this.connectionFactory.getMaxConnections()) {
+            LOGGER.debugf("Changing maximum number of JMS connections of %s to %d", this.connectionFactory.getName(), connections);
+            this.connectionFactory.setMaxConnections(connections);
+        }
+        if (sessions != this.connectionFactory.getMaxSessionsPerConnection()) {
+            LOGGER.debugf("Changing maximum number of JMS sessions per connection of %s to %d", this.connectionFactory.getName(),
+                    sessions);
+            this.connectionFactory.setMaxSessionsPerConnection(sessions);
+            this.connectionFactory.setMaxIdleSessionsPerConnection(sessions);
+            for (PooledConnection connection : this.connectionFactory.getStatistics().getConnections()) {
+                connection.setMaxSessionsPerConnection(sessions);
+                connection.setMaxIdleSessionsPerConnection(sessions);
+            }
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms.pool;
+
+import javax.transaction.xa.XAResource;
+
+import jakarta.transaction.HeuristicMixedException;
+import jakarta.transaction.HeuristicRollbackException;
+import jakarta.transaction.InvalidTransactionException;
+import jakarta.transaction.NotSupportedException;
+import jakarta.transaction.RollbackException;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.SystemException;
+import jakarta.transaction.Transaction;
+import jakarta.transaction.TransactionManager;
+
+final class DeferredEnlistmentTransactionManager implements TransactionManager {
+
+    private final TransactionManager transactionManager;
+    private final ThreadLocal<XAResource> deferredResource = new ThreadLocal<>();
+
+    /**
+     * Create a new {@link DeferredEnlistmentTransactionManager} instance. Resources enlisted through transactions
+     * obtained from it are not enlisted immediately but kept per thread until taken with
+     * {@link #takeDeferredResource()}.
+     *
+     * @param transactionManager underlying transaction manager
+     */
+    DeferredEnlistmentTransactionManager(TransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
+    XAResource takeDeferredResource() {
+        XAResource xaResource = this.deferredResource.get();
+        this.deferredResource.remove();
+        return xaResource;
+    }
+
+    @Override
+    public void begin() throws NotSupportedException, SystemException {
+        this.transactionManager.begin();
+    }
+
+    @Override
+    public void commit() throws RollbackException, HeuristicMixedException, HeuristicRollbackException, SystemException {
+        this.transactionManager.commit();
+    }
+
+    @Override
+    public int getStatus() throws SystemException {
+        return this.transactionManager.getStatus();
+    }
+
+    @Override
+    public Transaction getTransaction() throws SystemException {
+        Transaction transaction = this.transactionManager.getTransaction();
+        return transaction == null ? null : new DeferredEnlistmentTransaction(transaction);
+    }
+
+    @Override
+    public void resume(Transaction transaction) throws InvalidTransactionException, SystemException {
+        this.transactionManager.resume(transaction);
+    }
+
+    @Override
+    public void rollback() throws SystemException {
+        this.transactionManager.rollback();
+    }
+
+    @Override
+    public void setRollbackOnly() throws SystemException {
+        this.transactionManager.setRollbackOnly();
+    }
+
+    @Override
+    public void setTransactionTimeout(int seconds) throws SystemException {
+        this.transactionManager.setTransactionTimeout(seconds);
+    }
+
+    @Override
+    public Transaction suspend() throws SystemException {
+        return this.transactionManager.suspend();
+    }
+
+    private final class DeferredEnlistmentTransaction implements Transaction {
+
+        private final Transaction transaction;
+
+        private DeferredEnlistmentTransaction(Transaction transaction) {
+            this.transaction = transaction;
+        }
+
+        @Override
+        public void commit() throws RollbackException, HeuristicMixedException, HeuristicRollbackException, SystemException {
+            this.transaction.commit();
+        }
+
+        @Override
+        public boolean delistResource(XAResource xaResource, int flag) throws SystemException {
+            return this.transaction.delistResource(xaResource, flag);
+        }
+
+        @Override
+        public boolean enlistResource(XAResource xaResource) {
+            DeferredEnlistmentTransactionManager.this.deferredResource.set(xaResource);
+            return true;
+        }
+
+        @Override
+        public int getStatus() throws SystemException {
+            return this.transaction.getStatus();
+        }
+
+        @Override
+        public void registerSynchronization(Synchronization synchronization) throws RollbackException, SystemException {
+            this.transaction.registerSynchronization(synchronization);
+        }
+
+        @Override
+        public void rollback() throws SystemException {
+            this.transaction.rollback();
+        }
+
+        @Override
+        public void setRollbackOnly() throws SystemException {
+            this.transaction.setRollbackOnly();
+        }
+    }
+}
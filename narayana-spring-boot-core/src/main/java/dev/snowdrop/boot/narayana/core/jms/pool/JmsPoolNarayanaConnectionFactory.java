@@ -19,7 +19,9 @@ package dev.snowdrop.boot.narayana.core.jms.pool;
 import java.io.Serial;
 
 import jakarta.jms.Connection;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 
+import com.arjuna.ats.jta.common.jtaPropertyManager;
 import org.messaginghub.pooled.jms.JmsPoolConnection;
 import org.messaginghub.pooled.jms.JmsPoolXAConnectionFactory;
 import org.messaginghub.pooled.jms.JmsPoolXAJMSContext;
@@ -32,6 +34,10 @@ public class JmsPoolNarayanaConnectionFactory extends JmsPoolXAConnectionFactory
     private String name;
     private boolean firstResource;
     private boolean lastResource;
+    private boolean lazyEnlistment;
+    private transient JmsPoolStatistics statistics = new JmsPoolStatistics();
+    private transient AdaptiveSessionPoolSizer adaptiveSessionPoolSizer;
+    private transient TransactionSynchronizationRegistry transactionSynchronizationRegistry;
 
     public String getName() {
         return this.name;
@@ -57,9 +63,70 @@ public class JmsPoolNarayanaConnectionFactory extends JmsPoolXAConnectionFactory
         this.lastResource = lastResource;
     }
 
+    public boolean isLazyEnlistment() {
+        return this.lazyEnlistment;
+    }
+
+    public void setLazyEnlistment(boolean lazyEnlistment) {
+        this.lazyEnlistment = lazyEnlistment;
+    }
+
+    /**
+     * Return the live statistics of this pool, for example to publish them as metrics.
+     *
+     * @return pool statistics
+     */
+    public synchronized JmsPoolStatistics getStatistics() {
+        if (this.statistics == null) {
+            this.statistics = new JmsPoolStatistics();
+        }
+        return this.statistics;
+    }
+
+    public AdaptiveSessionPoolSizer getAdaptiveSessionPoolSizer() {
+        return this.adaptiveSessionPoolSizer;
+    }
+
+    /**
+     * Set the sizer adjusting this pool to the load. It is stopped together with the pool.
+     *
+     * @param adaptiveSessionPoolSizer adaptive session pool sizer
+     */
+    public void setAdaptiveSessionPoolSizer(AdaptiveSessionPoolSizer adaptiveSessionPoolSizer) {
+        this.adaptiveSessionPoolSizer = adaptiveSessionPoolSizer;
+    }
+
+    public TransactionSynchronizationRegistry getTransactionSynchronizationRegistry() {
+        if (this.transactionSynchronizationRegistry == null) {
+            return jtaPropertyManager.getJTAEnvironmentBean().getTransactionSynchronizationRegistry();
+        }
+        return this.transactionSynchronizationRegistry;
+    }
+
+    /**
+     * Set the registry used to bind sessions to transactions. Defaults to the registry of Narayana.
+     *
+     * @param transactionSynchronizationRegistry transaction synchronization registry
+     */
+    public void setTransactionSynchronizationRegistry(TransactionSynchronizationRegistry transactionSynchronizationRegistry) {
+        this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+    }
+
+    @Override
+    public void stop() {
+        if (this.adaptiveSessionPoolSizer != null) {
+            this.adaptiveSessionPoolSizer.stop();
+        }
+        super.stop();
+    }
+
     @Override
     protected PooledNarayanaConnection createPooledConnection(Connection connection) {
-        return new PooledNarayanaConnection(connection, getTransactionManager(), getName(), isFirstResource(), isLastResource());
+        PooledNarayanaConnection pooledConnection = new PooledNarayanaConnection(connection, getTransactionManager(),
+                getTransactionSynchronizationRegistry(), getName(), isFirstResource(),
+                isLastResource(), isLazyEnlistment());
+        pooledConnection.setStatistics(getStatistics());
+        return pooledConnection;
     }
 
     @Override
@@ -16,34 +16,74 @@
 
 package dev.snowdrop.boot.narayana.core.jms.pool;
 
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
 import javax.transaction.xa.XAResource;
 
+import jakarta.jms.JMSException;
+
+import org.jboss.logging.Logger;
 import org.messaginghub.pooled.jms.JmsPoolConnection;
 import org.messaginghub.pooled.jms.JmsPoolXAJMSContext;
 
 public class JmsPoolNarayanaJmsContext extends JmsPoolXAJMSContext {
 
+    private static final Logger LOGGER = Logger.getLogger(JmsPoolNarayanaJmsContext.class);
+
+    private final JmsPoolConnection connection;
     private final String name;
     private final boolean firstResource;
     private final boolean lastResource;
+    private final Lock lock = new ReentrantLock();
+    private XAResource xaResource;
+    private XAResource namedXaResource;
 
     public JmsPoolNarayanaJmsContext(JmsPoolConnection connection, int sessionMode, String name, boolean firstResource, boolean lastResource) {
         super(connection, sessionMode);
+        this.connection = connection;
         this.name = name;
         this.firstResource = firstResource;
         this.lastResource = lastResource;
     }
 
+    /**
+     * Return the context's resource wrapped into a {@link NamedXAResource}. Creating the underlying session may involve
+     * a broker round trip, so a lock is used instead of a monitor to avoid pinning the carrier of a virtual thread.
+     */
     @Override
     public XAResource getXAResource() {
-        XAResource xares = super.getXAResource();
+        this.lock.lock();
+        try {
+            XAResource xares = super.getXAResource();
+            if (xares != this.xaResource) {
+                this.xaResource = xares;
+                this.namedXaResource = wrapXAResource(xares);
+            }
+            return this.namedXaResource;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private XAResource wrapXAResource(XAResource xares) {
+        Object resourceManagerId = getResourceManagerId();
         if (this.firstResource) {
-            xares = new NamedFirstXAResource(xares, this.name);
+            xares = new NamedFirstXAResource(xares, this.name, resourceManagerId);
         } else if (this.lastResource) {
-            xares = new NamedLastXAResource(xares, this.name);
+            xares = new NamedLastXAResource(xares, this.name, resourceManagerId);
         } else {
-            xares = new NamedXAResource(xares, this.name);
+            xares = new NamedXAResource(xares, this.name, resourceManagerId);
         }
         return xares;
     }
+
+    private Object getResourceManagerId() {
+        try {
+            return this.connection.getConnection();
+        } catch (JMSException e) {
+            LOGGER.debugf(e, "Failed to get physical connection of %s", this.connection);
+            return null;
+        }
+    }
 }
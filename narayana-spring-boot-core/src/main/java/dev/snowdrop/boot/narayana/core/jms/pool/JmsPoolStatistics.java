@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms.pool;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.messaginghub.pooled.jms.pool.PooledConnection;
+
+public class JmsPoolStatistics {
+
+    private final Set<PooledConnection> connections = ConcurrentHashMap.newKeySet();
+    private final LongAdder sessionWaits = new LongAdder();
+    private final LongAdder sessionWaitNanos = new LongAdder();
+    private final AtomicLong maxSessionWaitNanos = new AtomicLong();
+    private final LongAdder blockTimeouts = new LongAdder();
+    private final AtomicInteger peakActiveSessionsPerConnection = new AtomicInteger();
+    private volatile SessionWaitListener sessionWaitListener;
+
+    /**
+     * Set a listener notified about every session borrowed from the pool, for example to record the wait times in a
+     * histogram of a metrics library.
+     *
+     * @param sessionWaitListener listener or {@code null}
+     */
+    public void setSessionWaitListener(SessionWaitListener sessionWaitListener) {
+        this.sessionWaitListener = sessionWaitListener;
+    }
+
+    public int getNumConnections() {
+        return this.connections.size();
+    }
+
+    public int getNumActiveSessions() {
+        return this.connections.stream().mapToInt(PooledConnection::getNumActiveSessions).sum();
+    }
+
+    public int getNumIdleSessions() {
+        return this.connections.stream().mapToInt(PooledConnection::getNumIdleSessions).sum();
+    }
+
+    /**
+     * Return the highest number of borrowed sessions of a single connection. Sessions are borrowed per connection, so
+     * this is the value to compare with {@code maxSessionsPerConnection}.
+     *
+     * @return highest number of borrowed sessions of a single connection
+     */
+    public int getMaxActiveSessionsPerConnection() {
+        return this.connections.stream().mapToInt(PooledConnection::getNumActiveSessions).max().orElse(0);
+    }
+
+    public long getSessionWaitCount() {
+        return this.sessionWaits.sum();
+    }
+
+    public Duration getSessionWaitTotalTime() {
+        return Duration.ofNanos(this.sessionWaitNanos.sum());
+    }
+
+    public Duration getSessionWaitMaxTime() {
+        return Duration.ofNanos(this.maxSessionWaitNanos.get());
+    }
+
+    /**
+     * Return the number of session borrows that failed because the session pool stayed full for longer than
+     * {@code blockIfSessionPoolIsFullTimeout}.
+     *
+     * @return number of block timeouts
+     */
+    public long getBlockTimeoutCount() {
+        return this.blockTimeouts.sum();
+    }
+
+    Set<PooledConnection> getConnections() {
+        return this.connections;
+    }
+
+    void recordActiveSessions(int activeSessions) {
+        this.peakActiveSessionsPerConnection.accumulateAndGet(activeSessions, Math::max);
+    }
+
+    int takePeakActiveSessionsPerConnection() {
+        return Math.max(this.peakActiveSessionsPerConnection.getAndSet(0), getMaxActiveSessionsPerConnection());
+    }
+
+    void addConnection(PooledConnection connection) {
+        this.connections.add(connection);
+    }
+
+    void removeConnection(PooledConnection connection) {
+        this.connections.remove(connection);
+    }
+
+    void recordSessionWait(long waitNanos, boolean timedOut) {
+        this.sessionWaits.increment();
+        this.sessionWaitNanos.add(waitNanos);
+        this.maxSessionWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        if (timedOut) {
+            this.blockTimeouts.increment();
+        }
+        SessionWaitListener listener = this.sessionWaitListener;
+        if (listener != null) {
+            listener.sessionBorrowed(Duration.ofNanos(waitNanos), timedOut);
+        }
+    }
+
+    /**
+     * Listener notified about the time spent waiting for a pooled session.
+     */
+    @FunctionalInterface
+    public interface SessionWaitListener {
+
+        /**
+         * Called after a session was borrowed or the borrow timed out.
+         *
+         * @param waitTime time spent waiting for the session
+         * @param timedOut whether the borrow failed because the session pool stayed full
+         */
+        void sessionBorrowed(Duration waitTime, boolean timedOut);
+    }
+}
@@ -25,4 +25,8 @@ public class NamedFirstXAResource extends NamedXAResource implements FirstResour
     public NamedFirstXAResource(XAResource xaResource, String name) {
         super(xaResource, name);
     }
+
+    public NamedFirstXAResource(XAResource xaResource, String name, Object resourceManagerId) {
+        super(xaResource, name, resourceManagerId);
+    }
 }
@@ -20,6 +20,7 @@ import javax.transaction.xa.XAResource;
 
 import jakarta.jms.XAConnectionFactory;
 
+import org.jboss.narayana.jta.jms.ConnectionManager;
 import org.jboss.narayana.jta.jms.JmsXAResourceRecoveryHelper;
 
 public class NamedJmsXAResourceRecoveryHelper extends JmsXAResourceRecoveryHelper {
@@ -35,6 +36,11 @@ public class NamedJmsXAResourceRecoveryHelper extends JmsXAResourceRecoveryHelpe
         this.name = name;
     }
 
+    public NamedJmsXAResourceRecoveryHelper(ConnectionManager connectionManager, String name) {
+        super(connectionManager);
+        this.name = name;
+    }
+
     @Override
     public XAResource[] getXAResources() {
         XAResource[] xaResources = super.getXAResources();
@@ -25,4 +25,8 @@ public class NamedLastXAResource extends NamedXAResource implements LastResource
     public NamedLastXAResource(XAResource xaResource, String name) {
         super(xaResource, name);
     }
+
+    public NamedLastXAResource(XAResource xaResource, String name, Object resourceManagerId) {
+        super(xaResource, name, resourceManagerId);
+    }
 }
@@ -29,10 +29,29 @@ public class NamedXAResource implements XAResourceWrapper {
 
     private final XAResource xaResource;
     private final String name;
+    private final Object resourceManagerId;
 
     public NamedXAResource(XAResource xaResource, String name) {
+        this(xaResource, name, null);
+    }
+
+    /**
+     * Create a new {@link NamedXAResource} instance. Resources reporting the same resource manager id, e.g. the
+     * resources of all sessions created by one physical JMS connection, are treated as belonging to the same resource
+     * manager, so the transaction manager joins them into one transaction branch instead of starting a new one.
+     *
+     * @param xaResource        the XA resource
+     * @param name              the resource name
+     * @param resourceManagerId identity of the resource manager or {@code null} to rely on the wrapped resource only
+     */
+    public NamedXAResource(XAResource xaResource, String name, Object resourceManagerId) {
         this.xaResource = xaResource;
         this.name = name;
+        this.resourceManagerId = resourceManagerId;
+    }
+
+    public Object getResourceManagerId() {
+        return this.resourceManagerId;
     }
 
     @Override
@@ -78,7 +97,10 @@ public class NamedXAResource implements XAResourceWrapper {
     @Override
     public boolean isSameRM(XAResource xaRes) throws XAException {
         if (xaRes instanceof NamedXAResource namedXaResource) {
-            return getResource().isSameRM((namedXaResource).getResource());
+            if (this.resourceManagerId != null && this.resourceManagerId.equals(namedXaResource.getResourceManagerId())) {
+                return true;
+            }
+            return getResource().isSameRM(namedXaResource.getResource());
         }
         return false;
     }
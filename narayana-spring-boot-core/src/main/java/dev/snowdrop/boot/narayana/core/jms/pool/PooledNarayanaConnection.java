@@ -16,13 +16,37 @@
 
 package dev.snowdrop.boot.narayana.core.jms.pool;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
 import javax.transaction.xa.XAResource;
 
 import jakarta.jms.Connection;
 import jakarta.jms.JMSException;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.QueueSender;
+import jakarta.jms.QueueSession;
+import jakarta.jms.Session;
+import jakarta.jms.TopicPublisher;
+import jakarta.jms.TopicSession;
+import jakarta.jms.XASession;
+import jakarta.transaction.RollbackException;
+import jakarta.transaction.Status;
+import jakarta.transaction.SystemException;
+import jakarta.transaction.Transaction;
 import jakarta.transaction.TransactionManager;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 
+import com.arjuna.ats.jta.common.jtaPropertyManager;
 import org.messaginghub.pooled.jms.JmsPoolSession;
+import org.messaginghub.pooled.jms.pool.PooledSessionKey;
 import org.messaginghub.pooled.jms.pool.PooledXAConnection;
 
 public class PooledNarayanaConnection extends PooledXAConnection {
@@ -30,24 +54,333 @@ public class PooledNarayanaConnection extends PooledXAConnection {
     private final String name;
     private final boolean firstResource;
     private final boolean lastResource;
+    private final TransactionManager transactionManager;
+    private final TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+    private final boolean lazyEnlistment;
+    private final DeferredEnlistmentTransactionManager deferredEnlistmentTransactionManager;
+    private JmsPoolStatistics statistics;
 
     public PooledNarayanaConnection(Connection connection, TransactionManager transactionManager, String name, boolean firstResource, boolean lastResource) {
-        super(connection, transactionManager);
+        this(connection, transactionManager, jtaPropertyManager.getJTAEnvironmentBean().getTransactionSynchronizationRegistry(),
+                name, firstResource, lastResource);
+    }
+
+    public PooledNarayanaConnection(Connection connection, TransactionManager transactionManager,
+            TransactionSynchronizationRegistry transactionSynchronizationRegistry, String name, boolean firstResource, boolean lastResource) {
+        this(connection, transactionManager, transactionSynchronizationRegistry, name, firstResource, lastResource, false);
+    }
+
+    public PooledNarayanaConnection(Connection connection, TransactionManager transactionManager,
+            TransactionSynchronizationRegistry transactionSynchronizationRegistry, String name, boolean firstResource, boolean lastResource,
+            boolean lazyEnlistment) {
+        this(connection, transactionManager, transactionSynchronizationRegistry, name, firstResource, lastResource, lazyEnlistment,
+                transactionManager != null ? new DeferredEnlistmentTransactionManager(transactionManager) : null);
+    }
+
+    /**
+     * Sessions are always borrowed through a {@link DeferredEnlistmentTransactionManager}, so that their resource is
+     * enlisted after the borrow and session wait statistics don't include the enlistment.
+     */
+    private PooledNarayanaConnection(Connection connection, TransactionManager transactionManager,
+            TransactionSynchronizationRegistry transactionSynchronizationRegistry, String name, boolean firstResource, boolean lastResource,
+            boolean lazyEnlistment, DeferredEnlistmentTransactionManager deferredEnlistmentTransactionManager) {
+        super(connection, deferredEnlistmentTransactionManager != null ? deferredEnlistmentTransactionManager : transactionManager);
         this.name = name;
         this.firstResource = firstResource;
         this.lastResource = lastResource;
+        this.transactionManager = transactionManager;
+        this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+        this.lazyEnlistment = lazyEnlistment;
+        this.deferredEnlistmentTransactionManager = deferredEnlistmentTransactionManager;
+    }
+
+    /**
+     * Create a session or, within a transaction, return the session already enlisted by this connection. The session
+     * is bound to the transaction through the {@link TransactionSynchronizationRegistry}, so all sessions and
+     * JMS contexts borrowed from this connection within one transaction share a single transaction branch. With lazy
+     * enlistment the session joins the transaction only once a producer or consumer is created from it.
+     */
+    @Override
+    public Session createSession(boolean transacted, int ackMode) throws JMSException {
+        if (!isTransactionActive()) {
+            return createPooledSession(transacted, ackMode, false);
+        }
+        Session session = (Session) this.transactionSynchronizationRegistry.getResource(this);
+        if (session == null) {
+            session = createPooledSession(transacted, ackMode, this.lazyEnlistment);
+            this.transactionSynchronizationRegistry.putResource(this, session);
+        }
+        return session;
+    }
+
+    void setStatistics(JmsPoolStatistics statistics) {
+        this.statistics = statistics;
+        statistics.addConnection(this);
+    }
+
+    @Override
+    public synchronized void close() {
+        super.close();
+        if (this.statistics != null) {
+            this.statistics.removeConnection(this);
+        }
+    }
+
+    private Session borrowSession(boolean transacted, int ackMode) throws JMSException {
+        if (this.statistics == null) {
+            return super.createSession(transacted, ackMode);
+        }
+        long start = System.nanoTime();
+        boolean timedOut = false;
+        try {
+            Session session = super.createSession(transacted, ackMode);
+            this.statistics.recordActiveSessions(getNumActiveSessions());
+            return session;
+        } catch (jakarta.jms.IllegalStateException e) {
+            timedOut = e.getCause() instanceof NoSuchElementException;
+            throw e;
+        } finally {
+            this.statistics.recordSessionWait(System.nanoTime() - start, timedOut);
+        }
+    }
+
+    private Session createPooledSession(boolean transacted, int ackMode, boolean lazy) throws JMSException {
+        if (this.deferredEnlistmentTransactionManager == null) {
+            return borrowSession(transacted, ackMode);
+        }
+        Session session;
+        XAResource xaResource;
+        try {
+            session = borrowSession(transacted, ackMode);
+        } finally {
+            xaResource = this.deferredEnlistmentTransactionManager.takeDeferredResource();
+        }
+        Enlistment enlistment = null;
+        if (xaResource != null) {
+            try {
+                enlistment = new Enlistment(xaResource, this.transactionManager.getTransaction());
+            } catch (SystemException e) {
+                throw toJMSException("Failed to get transaction", e);
+            }
+            if (!lazy) {
+                enlistment.enlist();
+            }
+        }
+        EnlistingSession enlistingSession = this.lazyEnlistment ? getEnlistingSession(session) : null;
+        if (enlistingSession != null) {
+            enlistingSession.setEnlistment(enlistment);
+        } else if (enlistment != null) {
+            enlistment.enlist();
+        }
+        return session;
     }
 
+    private static EnlistingSession getEnlistingSession(Session session) throws JMSException {
+        if (session instanceof JmsPoolSession poolSession) {
+            Session internalSession = poolSession.getInternalSession();
+            if (Proxy.isProxyClass(internalSession.getClass())
+                    && Proxy.getInvocationHandler(internalSession) instanceof EnlistingSession enlistingSession) {
+                return enlistingSession;
+            }
+        }
+        return null;
+    }
+
+    private boolean isTransactionActive() throws JMSException {
+        try {
+            return this.transactionManager != null && this.transactionManager.getStatus() == Status.STATUS_ACTIVE
+                    && this.transactionSynchronizationRegistry.getTransactionKey() != null;
+        } catch (SystemException e) {
+            throw toJMSException("Failed to get transaction status", e);
+        }
+    }
+
+    private static JMSException toJMSException(String message, Exception cause) {
+        JMSException jmsException = new JMSException(message);
+        jmsException.setLinkedException(cause);
+        jmsException.initCause(cause);
+        return jmsException;
+    }
+
+    /**
+     * Wrap the provider session with lazy enlistment, so that the pooled session handed out by pooled-jms enlists its
+     * resource on first use. Producers are cached by pooled-jms across transactions, so they enlist on every send.
+     */
+    @Override
+    protected Session makeSession(PooledSessionKey key) throws JMSException {
+        Session session = super.makeSession(key);
+        if (!this.lazyEnlistment || this.deferredEnlistmentTransactionManager == null) {
+            return session;
+        }
+        return (Session) Proxy.newProxyInstance(PooledNarayanaConnection.class.getClassLoader(), sessionInterfaces(session),
+                new EnlistingSession(session));
+    }
+
+    private static Class<?>[] sessionInterfaces(Object session) {
+        List<Class<?>> interfaces = new ArrayList<>();
+        for (Class<?> type : List.of(XASession.class, QueueSession.class, TopicSession.class)) {
+            if (type.isInstance(session)) {
+                interfaces.add(type);
+            }
+        }
+        return interfaces.toArray(new Class<?>[0]);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * Wrap the session's resource into a {@link NamedXAResource} identified by the physical connection, so that
+     * resources of different sessions of this connection enlisted in one transaction share a transaction branch.
+     */
     @Override
     protected XAResource createXaResource(JmsPoolSession session) throws JMSException {
         XAResource xares = super.createXaResource(session);
+        Connection resourceManagerId = getConnection();
         if (this.firstResource) {
-            xares = new NamedFirstXAResource(xares, this.name);
+            xares = new NamedFirstXAResource(xares, this.name, resourceManagerId);
         } else if (this.lastResource) {
-            xares = new NamedLastXAResource(xares, this.name);
+            xares = new NamedLastXAResource(xares, this.name, resourceManagerId);
         } else {
-            xares = new NamedXAResource(xares, this.name);
+            xares = new NamedXAResource(xares, this.name, resourceManagerId);
         }
         return xares;
     }
+
+    /**
+     * Enlistment of a session's resource captured from pooled-jms. The enlistment is guarded by a lock rather than a
+     * monitor, so a virtual thread waiting for the broker to start the transaction branch doesn't pin its carrier
+     * thread.
+     */
+    private static final class Enlistment {
+
+        private final XAResource xaResource;
+        private final Transaction transaction;
+        private final Lock lock = new ReentrantLock();
+        private boolean enlisted;
+
+        private Enlistment(XAResource xaResource, Transaction transaction) {
+            this.xaResource = xaResource;
+            this.transaction = transaction;
+        }
+
+        private void enlist() throws JMSException {
+            this.lock.lock();
+            try {
+                if (this.enlisted) {
+                    return;
+                }
+                if (!this.transaction.enlistResource(this.xaResource)) {
+                    throw new JMSException("Enlistment of Pooled Session into transaction failed");
+                }
+                this.enlisted = true;
+            } catch (RollbackException | SystemException e) {
+                throw toJMSException("Enlistment of Pooled Session into transaction failed", e);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Provider session enlisting the pending resource of its current loan on the first operation creating a consumer,
+     * registering a message listener or sending a message. Sessions that are never used for messaging stay out of the
+     * transaction. The pending enlistment is replaced whenever the pooled session is lent out again.
+     */
+    private static final class EnlistingSession implements InvocationHandler {
+
+        private final Session session;
+        private volatile Enlistment enlistment;
+
+        private EnlistingSession(Session session) {
+            this.session = session;
+        }
+
+        private void setEnlistment(Enlistment enlistment) {
+            this.enlistment = enlistment;
+        }
+
+        private void enlist() throws JMSException {
+            Enlistment pending = this.enlistment;
+            if (pending != null) {
+                pending.enlist();
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "EnlistingSession[" + this.session + "]";
+                default:
+                    if (requiresEnlistment(method.getName())) {
+                        enlist();
+                    }
+                    Object result = PooledNarayanaConnection.invoke(this.session, method, args);
+                    if (result instanceof MessageProducer producer) {
+                        return Proxy.newProxyInstance(PooledNarayanaConnection.class.getClassLoader(), producerInterfaces(producer),
+                                new EnlistingProducer(this, producer));
+                    }
+                    return result;
+            }
+        }
+
+        private static boolean requiresEnlistment(String methodName) {
+            return methodName.equals("createProducer") || methodName.equals("createSender") || methodName.equals("createPublisher")
+                    || methodName.endsWith("Consumer") || methodName.endsWith("Subscriber") || methodName.equals("createReceiver")
+                    || methodName.equals("setMessageListener") || methodName.equals("run");
+        }
+
+        private static Class<?>[] producerInterfaces(MessageProducer producer) {
+            List<Class<?>> interfaces = new ArrayList<>();
+            for (Class<?> type : List.of(MessageProducer.class, QueueSender.class, TopicPublisher.class)) {
+                if (type.isInstance(producer)) {
+                    interfaces.add(type);
+                }
+            }
+            return interfaces.toArray(new Class<?>[0]);
+        }
+    }
+
+    /**
+     * Provider producer enlisting the pending resource of its session before sending, as pooled-jms keeps producers
+     * open while the session is pooled.
+     */
+    private static final class EnlistingProducer implements InvocationHandler {
+
+        private final EnlistingSession session;
+        private final MessageProducer producer;
+
+        private EnlistingProducer(EnlistingSession session, MessageProducer producer) {
+            this.session = session;
+            this.producer = producer;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "EnlistingProducer[" + this.producer + "]";
+                case "send":
+                case "publish":
+                    this.session.enlist();
+                    return PooledNarayanaConnection.invoke(this.producer, method, args);
+                default:
+                    return PooledNarayanaConnection.invoke(this.producer, method, args);
+            }
+        }
+    }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.properties;
+
+import java.time.Duration;
+
+public class AdaptiveRecoveryProperties {
+
+    /**
+     * Adapt the periodic recovery period to the outcome of the recovery scans instead of using a fixed period.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Period used while recovery work is pending or after the application reported an XA failure.
+     */
+    private Duration minPeriod = Duration.ofSeconds(10);
+
+    /**
+     * Upper limit of the period while recovery scans find nothing.
+     */
+    private Duration maxPeriod = Duration.ofMinutes(30);
+
+    /**
+     * Factor by which the period grows after each recovery scan that found nothing.
+     */
+    private double multiplier = 2.0;
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getMinPeriod() {
+        return this.minPeriod;
+    }
+
+    public void setMinPeriod(Duration minPeriod) {
+        this.minPeriod = minPeriod;
+    }
+
+    public Duration getMaxPeriod() {
+        return this.maxPeriod;
+    }
+
+    public void setMaxPeriod(Duration maxPeriod) {
+        this.maxPeriod = maxPeriod;
+    }
+
+    public double getMultiplier() {
+        return this.multiplier;
+    }
+
+    public void setMultiplier(double multiplier) {
+        this.multiplier = multiplier;
+    }
+}
@@ -16,22 +16,14 @@
 
 package dev.snowdrop.boot.narayana.core.properties;
 
-import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-public class MessagingHubConnectionFactoryProperties {
+public class MessagingHubConnectionFactoryProperties extends MessagingHubPoolProperties {
 
     private boolean enabled = false;
-    private String name = "jms";
-    private boolean firstResource = false;
-    private boolean lastResource = false;
-    private int maxConnections = 1;
-    private Duration connectionIdleTimeout = Duration.ofSeconds(30);
-    private Duration connectionCheckInterval = Duration.ofMillis(-1);
-    private boolean useProviderJMSContext = false;
-    private int maxSessionsPerConnection = 500;
-    private boolean blockIfSessionPoolIsFull = true;
-    private Duration blockIfSessionPoolIsFullTimeout = Duration.ofMillis(-1);
-    private boolean useAnonymousProducers = true;
+    private boolean virtualThreadListeners = true;
+    private final Map<String, MessagingHubPoolProperties> factories = new LinkedHashMap<>();
 
     public boolean isEnabled() {
         return this.enabled;
@@ -41,91 +33,15 @@ public class MessagingHubConnectionFactoryProperties {
         this.enabled = enabled;
     }
 
-    public String getName() {
-        return this.name;
+    public boolean isVirtualThreadListeners() {
+        return this.virtualThreadListeners;
     }
 
-    public void setName(String name) {
-        this.name = name;
+    public void setVirtualThreadListeners(boolean virtualThreadListeners) {
+        this.virtualThreadListeners = virtualThreadListeners;
     }
 
-    public boolean isFirstResource() {
-        return this.firstResource;
-    }
-
-    public void setFirstResource(boolean firstResource) {
-        this.firstResource = firstResource;
-    }
-
-    public boolean isLastResource() {
-        return this.lastResource;
-    }
-
-    public void setLastResource(boolean lastResource) {
-        this.lastResource = lastResource;
-    }
-
-    public int getMaxConnections() {
-        return this.maxConnections;
-    }
-
-    public void setMaxConnections(int maxConnections) {
-        this.maxConnections = maxConnections;
-    }
-
-    public Duration getConnectionIdleTimeout() {
-        return this.connectionIdleTimeout;
-    }
-
-    public void setConnectionIdleTimeout(Duration connectionIdleTimeout) {
-        this.connectionIdleTimeout = connectionIdleTimeout;
-    }
-
-    public Duration getConnectionCheckInterval() {
-        return this.connectionCheckInterval;
-    }
-
-    public void setConnectionCheckInterval(Duration connectionCheckInterval) {
-        this.connectionCheckInterval = connectionCheckInterval;
-    }
-
-    public boolean isUseProviderJMSContext() {
-        return this.useProviderJMSContext;
-    }
-
-    public void setUseProviderJMSContext(boolean useProviderJMSContext) {
-        this.useProviderJMSContext = useProviderJMSContext;
-    }
-
-    public int getMaxSessionsPerConnection() {
-        return this.maxSessionsPerConnection;
-    }
-
-    public void setMaxSessionsPerConnection(int maxSessionsPerConnection) {
-        this.maxSessionsPerConnection = maxSessionsPerConnection;
-    }
-
-    public boolean isBlockIfSessionPoolIsFull() {
-        return this.blockIfSessionPoolIsFull;
-    }
-
-    public void setBlockIfSessionPoolIsFull(boolean blockIfSessionPoolIsFull) {
-        this.blockIfSessionPoolIsFull = blockIfSessionPoolIsFull;
-    }
-
-    public Duration getBlockIfSessionPoolIsFullTimeout() {
-        return this.blockIfSessionPoolIsFullTimeout;
-    }
-
-    public void setBlockIfSessionPoolIsFullTimeout(Duration blockIfSessionPoolIsFullTimeout) {
-        this.blockIfSessionPoolIsFullTimeout = blockIfSessionPoolIsFullTimeout;
-    }
-
-    public boolean isUseAnonymousProducers() {
-        return this.useAnonymousProducers;
-    }
-
-    public void setUseAnonymousProducers(boolean useAnonymousProducers) {
-        this.useAnonymousProducers = useAnonymousProducers;
+    public Map<String, MessagingHubPoolProperties> getFactories() {
+        return this.factories;
     }
 }
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.properties;
+
+import java.time.Duration;
+
+public class MessagingHubPoolProperties {
+
+    private String name = "jms";
+    private boolean firstResource = false;
+    private boolean lastResource = false;
+    private int maxConnections = 1;
+    private Duration connectionIdleTimeout = Duration.ofSeconds(30);
+    private Duration connectionCheckInterval = Duration.ofMillis(-1);
+    private boolean useProviderJMSContext = false;
+    private int maxSessionsPerConnection = 500;
+    private boolean blockIfSessionPoolIsFull = true;
+    private Duration blockIfSessionPoolIsFullTimeout = Duration.ofMillis(-1);
+    private boolean useAnonymousProducers = true;
+    private boolean lazyEnlistment = false;
+    private final Adaptive adaptive = new Adaptive();
+    private RecoveryProperties recovery;
+
+    public String getName() {
+        return this.name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public boolean isFirstResource() {
+        return this.firstResource;
+    }
+
+    public void setFirstResource(boolean firstResource) {
+        this.firstResource = firstResource;
+    }
+
+    public boolean isLastResource() {
+        return this.lastResource;
+    }
+
+    public void setLastResource(boolean lastResource) {
+        this.lastResource = lastResource;
+    }
+
+    public int getMaxConnections() {
+        return this.maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public Duration getConnectionIdleTimeout() {
+        return this.connectionIdleTimeout;
+    }
+
+    public void setConnectionIdleTimeout(Duration connectionIdleTimeout) {
+        this.connectionIdleTimeout = connectionIdleTimeout;
+    }
+
+    public Duration getConnectionCheckInterval() {
+        return this.connectionCheckInterval;
+    }
+
+    public void setConnectionCheckInterval(Duration connectionCheckInterval) {
+        this.connectionCheckInterval = connectionCheckInterval;
+    }
+
+    public boolean isUseProviderJMSContext() {
+        return this.useProviderJMSContext;
+    }
+
+    public void setUseProviderJMSContext(boolean useProviderJMSContext) {
+        this.useProviderJMSContext = useProviderJMSContext;
+    }
+
+    public int getMaxSessionsPerConnection() {
+        return this.maxSessionsPerConnection;
+    }
+
+    public void setMaxSessionsPerConnection(int maxSessionsPerConnection) {
+        this.maxSessionsPerConnection = maxSessionsPerConnection;
+    }
+
+    public boolean isBlockIfSessionPoolIsFull() {
+        return this.blockIfSessionPoolIsFull;
+    }
+
+    public void setBlockIfSessionPoolIsFull(boolean blockIfSessionPoolIsFull) {
+        this.blockIfSessionPoolIsFull = blockIfSessionPoolIsFull;
+    }
+
+    public Duration getBlockIfSessionPoolIsFullTimeout() {
+        return this.blockIfSessionPoolIsFullTimeout;
+    }
+
+    public void setBlockIfSessionPoolIsFullTimeout(Duration blockIfSessionPoolIsFullTimeout) {
+        this.blockIfSessionPoolIsFullTimeout = blockIfSessionPoolIsFullTimeout;
+    }
+
+    public boolean isUseAnonymousProducers() {
+        return this.useAnonymousProducers;
+    }
+
+    public void setUseAnonymousProducers(boolean useAnonymousProducers) {
+        this.useAnonymousProducers = useAnonymousProducers;
+    }
+
+    public boolean isLazyEnlistment() {
+        return this.lazyEnlistment;
+    }
+
+    public void setLazyEnlistment(boolean lazyEnlistment) {
+        this.lazyEnlistment = lazyEnlistment;
+    }
+
+    public Adaptive getAdaptive() {
+        return this.adaptive;
+    }
+
+    public RecoveryProperties getRecovery() {
+        return this.recovery;
+    }
+
+    public void setRecovery(RecoveryProperties recovery) {
+        this.recovery = recovery;
+    }
+
+    public static class Adaptive {
+
+        /**
+         * Adjust maxConnections and maxSessionsPerConnection to the load within the configured bounds.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Lower bound of maxConnections.
+         */
+        private int minConnections = 1;
+
+        /**
+         * Upper bound of maxConnections.
+         */
+        private int maxConnections = 4;
+
+        /**
+         * Lower bound of maxSessionsPerConnection.
+         */
+        private int minSessionsPerConnection = 10;
+
+        /**
+         * Upper bound of maxSessionsPerConnection.
+         */
+        private int maxSessionsPerConnection = 500;
+
+        /**
+         * Average session wait time above which the pool grows.
+         */
+        private Duration waitThreshold = Duration.ofMillis(10);
+
+        /**
+         * Interval in which the pool limits are adjusted.
+         */
+        private Duration interval = Duration.ofSeconds(10);
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMinConnections() {
+            return this.minConnections;
+        }
+
+        public void setMinConnections(int minConnections) {
+            this.minConnections = minConnections;
+        }
+
+        public int getMaxConnections() {
+            return this.maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getMinSessionsPerConnection() {
+            return this.minSessionsPerConnection;
+        }
+
+        public void setMinSessionsPerConnection(int minSessionsPerConnection) {
+            this.minSessionsPerConnection = minSessionsPerConnection;
+        }
+
+        public int getMaxSessionsPerConnection() {
+            return this.maxSessionsPerConnection;
+        }
+
+        public void setMaxSessionsPerConnection(int maxSessionsPerConnection) {
+            this.maxSessionsPerConnection = maxSessionsPerConnection;
+        }
+
+        public Duration getWaitThreshold() {
+            return this.waitThreshold;
+        }
+
+        public void setWaitThreshold(Duration waitThreshold) {
+            this.waitThreshold = waitThreshold;
+        }
+
+        public Duration getInterval() {
+            return this.interval;
+        }
+
+        public void setInterval(Duration interval) {
+            this.interval = interval;
+        }
+    }
+}
@@ -70,6 +70,17 @@ public class NarayanaProperties {
      */
     private int recoveryBackoffPeriod = 10;
 
+    /**
+     * Shorten the back off period to one second when the object store contains no transaction logs and the previous
+     * recovery scan left no work to do.
+     */
+    private boolean shortenIdleRecoveryBackoff = true;
+
+    /**
+     * Register a recovery scanner bean to run recovery scans on demand and report their results per resource.
+     */
+    private boolean onDemandRecovery = false;
+
     /**
      * Interval on which the ObjectStore will be scanned for expired items, in hours.
      */
@@ -136,6 +147,30 @@ public class NarayanaProperties {
     @NestedConfigurationProperty
     private final MessagingHubConnectionFactoryProperties messaginghub = new MessagingHubConnectionFactoryProperties();
 
+    /**
+     * Connection and session cache properties used if generic connection factory wrapper is enabled.
+     */
+    @NestedConfigurationProperty
+    private final JmsCacheProperties jmsCache = new JmsCacheProperties();
+
+    /**
+     * Transactional outbox properties used for JMS messages sent within a JTA transaction.
+     */
+    @NestedConfigurationProperty
+    private final OutboxProperties outbox = new OutboxProperties();
+
+    /**
+     * Parallel recovery properties used to scan the resources of all recovery helpers concurrently.
+     */
+    @NestedConfigurationProperty
+    private final ParallelRecoveryProperties parallelRecovery = new ParallelRecoveryProperties();
+
+    /**
+     * Adaptive recovery properties used to adjust the periodic recovery period to the outcome of recovery scans.
+     */
+    @NestedConfigurationProperty
+    private final AdaptiveRecoveryProperties adaptiveRecovery = new AdaptiveRecoveryProperties();
+
     /**
      * XA recovery nodes.
      */
@@ -197,6 +232,22 @@ public class NarayanaProperties {
         this.recoveryBackoffPeriod = recoveryBackoffPeriod;
     }
 
+    public boolean isShortenIdleRecoveryBackoff() {
+        return this.shortenIdleRecoveryBackoff;
+    }
+
+    public void setShortenIdleRecoveryBackoff(boolean shortenIdleRecoveryBackoff) {
+        this.shortenIdleRecoveryBackoff = shortenIdleRecoveryBackoff;
+    }
+
+    public boolean isOnDemandRecovery() {
+        return this.onDemandRecovery;
+    }
+
+    public void setOnDemandRecovery(boolean onDemandRecovery) {
+        this.onDemandRecovery = onDemandRecovery;
+    }
+
     public int getExpiryScanInterval() {
         return this.expiryScanInterval;
     }
@@ -297,6 +348,22 @@ public class NarayanaProperties {
         return this.messaginghub;
     }
 
+    public JmsCacheProperties getJmsCache() {
+        return this.jmsCache;
+    }
+
+    public OutboxProperties getOutbox() {
+        return this.outbox;
+    }
+
+    public ParallelRecoveryProperties getParallelRecovery() {
+        return this.parallelRecovery;
+    }
+
+    public AdaptiveRecoveryProperties getAdaptiveRecovery() {
+        return this.adaptiveRecovery;
+    }
+
     public List<String> getXaRecoveryNodes() {
         return this.xaRecoveryNodes;
     }
@@ -22,15 +22,19 @@ import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import com.arjuna.ats.arjuna.common.CoordinatorEnvironmentBean;
 import com.arjuna.ats.arjuna.common.CoreEnvironmentBean;
 import com.arjuna.ats.arjuna.common.CoreEnvironmentBeanException;
 import com.arjuna.ats.arjuna.common.ObjectStoreEnvironmentBean;
 import com.arjuna.ats.arjuna.common.RecoveryEnvironmentBean;
+import com.arjuna.ats.internal.jta.recovery.arjunacore.XARecoveryModule;
 import com.arjuna.ats.jdbc.common.JDBCEnvironmentBean;
 import com.arjuna.ats.jta.common.JTAEnvironmentBean;
 import com.arjuna.common.internal.util.propertyservice.BeanPopulator;
+import dev.snowdrop.boot.narayana.core.recovery.ObservableXARecoveryModule;
+import dev.snowdrop.boot.narayana.core.recovery.ParallelXARecoveryModule;
 import org.springframework.beans.factory.InitializingBean;
 
 /**
@@ -62,7 +66,8 @@ public class NarayanaPropertiesInitializer implements InitializingBean {
         setXAResourceRecordWrappingPlugin(this.properties.getXaResourceRecordWrappingPlugin());
         setLastResourceOptimisationInterface(this.properties.getLastResourceOptimisationInterface());
         setCommitMarkableResourceJNDINames(this.properties.getCommitMarkableResourceJNDINames());
-        setRecoveryModules(this.properties.getRecoveryModules());
+        setRecoveryModules(this.properties.getRecoveryModules(), this.properties.getParallelRecovery().isEnabled(),
+                this.properties.isOnDemandRecovery());
         setExpiryScanners(this.properties.getExpiryScanners());
         setDefaultIsolationLevel(this.properties.getTransactionalDriver().getDefaultIsolationLevel().getLevel());
         setDefaultIsSameRMOverride(this.properties.getTransactionalDriver().isDefaultIsSameRMOverride());
@@ -142,7 +147,13 @@ public class NarayanaPropertiesInitializer implements InitializingBean {
         getPopulator(JTAEnvironmentBean.class).setCommitMarkableResourceJNDINames(commitMarkableResourceJNDINames);
     }
 
-    private void setRecoveryModules(List<String> recoveryModules) {
+    private void setRecoveryModules(List<String> recoveryModules, boolean parallelRecovery, boolean onDemandRecovery) {
+        if (parallelRecovery || onDemandRecovery) {
+            String xaRecoveryModule = parallelRecovery ? ParallelXARecoveryModule.class.getName() : ObservableXARecoveryModule.class.getName();
+            recoveryModules = recoveryModules.stream()
+                    .map(module -> XARecoveryModule.class.getName().equals(module) ? xaRecoveryModule : module)
+                    .collect(Collectors.toList());
+        }
         getPopulator(RecoveryEnvironmentBean.class).setRecoveryModuleClassNames(recoveryModules);
     }
 
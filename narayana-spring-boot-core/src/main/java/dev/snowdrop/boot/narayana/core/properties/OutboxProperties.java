@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.properties;
+
+import java.time.Duration;
+
+public class OutboxProperties {
+
+    /**
+     * Write JMS messages sent within a JTA transaction to an outbox table instead of enlisting the broker.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Name of the outbox table.
+     */
+    private String tableName = "NARAYANA_JMS_OUTBOX";
+
+    /**
+     * Maximum number of messages published by the relay in one broker transaction.
+     */
+    private int batchSize = 100;
+
+    /**
+     * Interval in which the relay publishes messages left over, for example after a restart.
+     */
+    private Duration relayInterval = Duration.ofSeconds(10);
+
+    /**
+     * Time for which the relay of one application instance claims messages of the outbox table. Claimed messages
+     * that are still in the table afterwards are published again.
+     */
+    private Duration leaseTimeout = Duration.ofMinutes(1);
+
+    /**
+     * Name of the data source bean holding the outbox table. Defaults to the primary or only data source.
+     */
+    private String dataSourceName;
+
+    /**
+     * Serialization filter pattern, in the format of java.io.ObjectInputFilter.Config#createFilter, for the classes of
+     * object message bodies, e.g. "com.example.**;java.util.*". Classes not matching are rejected. Object messages
+     * are not accepted by the outbox unless set.
+     */
+    private String objectMessageFilter;
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getTableName() {
+        return this.tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getRelayInterval() {
+        return this.relayInterval;
+    }
+
+    public void setRelayInterval(Duration relayInterval) {
+        this.relayInterval = relayInterval;
+    }
+
+    public Duration getLeaseTimeout() {
+        return this.leaseTimeout;
+    }
+
+    public void setLeaseTimeout(Duration leaseTimeout) {
+        this.leaseTimeout = leaseTimeout;
+    }
+
+    public String getDataSourceName() {
+        return this.dataSourceName;
+    }
+
+    public void setDataSourceName(String dataSourceName) {
+        this.dataSourceName = dataSourceName;
+    }
+
+    public String getObjectMessageFilter() {
+        return this.objectMessageFilter;
+    }
+
+    public void setObjectMessageFilter(String objectMessageFilter) {
+        this.objectMessageFilter = objectMessageFilter;
+    }
+}
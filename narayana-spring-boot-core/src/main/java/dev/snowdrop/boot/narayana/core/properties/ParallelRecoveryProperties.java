@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.properties;
+
+import java.time.Duration;
+
+public class ParallelRecoveryProperties {
+
+    /**
+     * Scan the resources of all recovery helpers concurrently before each recovery pass.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Maximum number of recovery helpers scanned at the same time.
+     */
+    private int parallelism = 4;
+
+    /**
+     * Maximum time a recovery helper may take to scan its resources before it is skipped in a recovery pass.
+     */
+    private Duration helperTimeout = Duration.ofSeconds(30);
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public Duration getHelperTimeout() {
+        return this.helperTimeout;
+    }
+
+    public void setHelperTimeout(Duration helperTimeout) {
+        this.helperTimeout = helperTimeout;
+    }
+}
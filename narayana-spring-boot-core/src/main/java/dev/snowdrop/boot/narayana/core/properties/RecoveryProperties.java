@@ -16,6 +16,8 @@
 
 package dev.snowdrop.boot.narayana.core.properties;
 
+import java.time.Duration;
+
 public class RecoveryProperties {
 
     /**
@@ -26,6 +28,48 @@ public class RecoveryProperties {
     private boolean enabled;
     private String user;
     private String password;
+    /**
+     * Keep the recovery connection open between recovery scans instead of reconnecting on every scan.
+     */
+    private boolean keepConnection;
+    /**
+     * Maximum number of database connections used concurrently to commit or roll back recovered branches. With a
+     * single connection, all recovery operations of a data source are serialized.
+     */
+    private int maxConnections = 1;
+    /**
+     * Maximum number of recovered branches committed or rolled back per second and data source. Zero disables the
+     * rate limit.
+     */
+    private double maxXidsPerSecond;
+    /**
+     * Completion latency above which the database is considered busy and the recovery rate is halved. The rate
+     * recovers gradually with every faster completion.
+     */
+    private Duration latencyThreshold = Duration.ofMillis(500);
+    /**
+     * Number of consecutive connection failures after which a data source is skipped by recovery scans and probed in
+     * the background instead. Zero disables the circuit breaker.
+     */
+    private int circuitBreakerThreshold;
+    /**
+     * Time a data source is skipped after its circuit breaker opened. Doubles with every failed probe.
+     */
+    private Duration circuitBreakerCooldown = Duration.ofSeconds(30);
+    /**
+     * Upper limit of the time a data source is skipped.
+     */
+    private Duration circuitBreakerMaxCooldown = Duration.ofMinutes(10);
+    /**
+     * Maximum number of in-doubt branches of a data source handled by one recovery scan. Remaining branches are
+     * handled by the following scans, branches staying unresolved over several scans last. Zero disables the limit.
+     */
+    private int maxXidsPerScan;
+    /**
+     * Fetch in-doubt branches from the driver in chunks, continuing a recovery scan until enough branches are found
+     * or the driver returns no further branches. Only useful for drivers returning the branches in batches.
+     */
+    private boolean pagedScan;
 
     static {
         DEFAULT = new RecoveryProperties();
@@ -72,4 +116,76 @@ public class RecoveryProperties {
     public void setPassword(String password) {
         this.password = password;
     }
+
+    public boolean isKeepConnection() {
+        return this.keepConnection;
+    }
+
+    public void setKeepConnection(boolean keepConnection) {
+        this.keepConnection = keepConnection;
+    }
+
+    public int getMaxConnections() {
+        return this.maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public double getMaxXidsPerSecond() {
+        return this.maxXidsPerSecond;
+    }
+
+    public void setMaxXidsPerSecond(double maxXidsPerSecond) {
+        this.maxXidsPerSecond = maxXidsPerSecond;
+    }
+
+    public Duration getLatencyThreshold() {
+        return this.latencyThreshold;
+    }
+
+    public void setLatencyThreshold(Duration latencyThreshold) {
+        this.latencyThreshold = latencyThreshold;
+    }
+
+    public int getCircuitBreakerThreshold() {
+        return this.circuitBreakerThreshold;
+    }
+
+    public void setCircuitBreakerThreshold(int circuitBreakerThreshold) {
+        this.circuitBreakerThreshold = circuitBreakerThreshold;
+    }
+
+    public Duration getCircuitBreakerCooldown() {
+        return this.circuitBreakerCooldown;
+    }
+
+    public void setCircuitBreakerCooldown(Duration circuitBreakerCooldown) {
+        this.circuitBreakerCooldown = circuitBreakerCooldown;
+    }
+
+    public Duration getCircuitBreakerMaxCooldown() {
+        return this.circuitBreakerMaxCooldown;
+    }
+
+    public void setCircuitBreakerMaxCooldown(Duration circuitBreakerMaxCooldown) {
+        this.circuitBreakerMaxCooldown = circuitBreakerMaxCooldown;
+    }
+
+    public int getMaxXidsPerScan() {
+        return this.maxXidsPerScan;
+    }
+
+    public void setMaxXidsPerScan(int maxXidsPerScan) {
+        this.maxXidsPerScan = maxXidsPerScan;
+    }
+
+    public boolean isPagedScan() {
+        return this.pagedScan;
+    }
+
+    public void setPagedScan(boolean pagedScan) {
+        this.pagedScan = pagedScan;
+    }
 }
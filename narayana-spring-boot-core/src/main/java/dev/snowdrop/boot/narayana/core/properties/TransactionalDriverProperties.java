@@ -17,6 +17,11 @@
 package dev.snowdrop.boot.narayana.core.properties;
 
 import java.sql.Connection;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.springframework.boot.jdbc.DatabaseDriver;
 
 public class TransactionalDriverProperties {
 
@@ -25,6 +30,8 @@ public class TransactionalDriverProperties {
     private IsolationLevel defaultIsolationLevel = IsolationLevel.TRANSACTION_SERIALIZABLE;
     private boolean defaultIsSameRMOverride = false;
     private Pool pool = new Pool();
+    private WriteBehind writeBehind = new WriteBehind();
+    private Multiplexing multiplexing = new Multiplexing();
 
     public String getName() {
         return this.name;
@@ -66,6 +73,22 @@ public class TransactionalDriverProperties {
         this.pool = pool;
     }
 
+    public WriteBehind getWriteBehind() {
+        return this.writeBehind;
+    }
+
+    public void setWriteBehind(WriteBehind writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    public Multiplexing getMultiplexing() {
+        return this.multiplexing;
+    }
+
+    public void setMultiplexing(Multiplexing multiplexing) {
+        this.multiplexing = multiplexing;
+    }
+
     public enum Modifier {
         /**
          * Register {@link com.arjuna.ats.internal.jdbc.drivers.modifiers.IsSameRMModifier} for used JDBC driver.
@@ -136,4 +159,89 @@ public class TransactionalDriverProperties {
             this.maxConnections = maxConnections;
         }
     }
+
+    public static class WriteBehind {
+
+        /**
+         * Queue parameterised DML issued within a transaction and execute it as JDBC batches before completion.
+         * Deferred updates report {@link java.sql.Statement#SUCCESS_NO_INFO} as their update count.
+         */
+        private boolean enabled = false;
+        /**
+         * Maximum number of queued statements before the queue is flushed.
+         */
+        private int maxBatchSize = 500;
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxBatchSize() {
+            return this.maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+    }
+
+    public static class Multiplexing {
+
+        /**
+         * Multiplex transaction branches of concurrent transactions over shared physical XA connections by suspending
+         * ({@code TMSUSPEND}) and resuming ({@code TMRESUME}) them. Only applies to the drivers listed in
+         * {@code drivers}. Connections used outside a transaction hold their physical connection until closed.
+         * Connections with explicit user credentials are not supported.
+         */
+        private boolean enabled = false;
+        /**
+         * Drivers whose XA data sources are multiplexed. Only drivers known to support suspending and resuming several
+         * transaction branches on one physical connection, DB2 and Oracle, can be listed.
+         */
+        private Set<DatabaseDriver> drivers = EnumSet.noneOf(DatabaseDriver.class);
+        /**
+         * Number of shared physical XA connections.
+         */
+        private int physicalConnections = 1;
+        /**
+         * Maximum time to wait for a shared physical XA connection leased by another transaction.
+         */
+        private Duration leaseTimeout = Duration.ofSeconds(30);
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Set<DatabaseDriver> getDrivers() {
+            return this.drivers;
+        }
+
+        public void setDrivers(Set<DatabaseDriver> drivers) {
+            this.drivers = drivers;
+        }
+
+        public int getPhysicalConnections() {
+            return this.physicalConnections;
+        }
+
+        public void setPhysicalConnections(int physicalConnections) {
+            this.physicalConnections = physicalConnections;
+        }
+
+        public Duration getLeaseTimeout() {
+            return this.leaseTimeout;
+        }
+
+        public void setLeaseTimeout(Duration leaseTimeout) {
+            this.leaseTimeout = leaseTimeout;
+        }
+    }
 }
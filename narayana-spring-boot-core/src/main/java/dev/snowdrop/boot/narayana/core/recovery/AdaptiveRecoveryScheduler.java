@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.recovery;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.arjuna.ats.arjuna.common.recoveryPropertyManager;
+import com.arjuna.ats.arjuna.exceptions.ObjectStoreException;
+import com.arjuna.ats.arjuna.recovery.RecoveryManager;
+import com.arjuna.ats.arjuna.recovery.RecoveryModule;
+import com.arjuna.ats.internal.jta.recovery.arjunacore.XARecoveryModule;
+import org.jboss.logging.Logger;
+
+public class AdaptiveRecoveryScheduler implements RecoveryModule {
+
+    private static final Logger LOGGER = Logger.getLogger(AdaptiveRecoveryScheduler.class);
+
+    private final Duration minPeriod;
+    private final Duration maxPeriod;
+    private final double multiplier;
+    private final AtomicBoolean failureReported = new AtomicBoolean();
+    private volatile Duration period;
+
+    /**
+     * Create a new {@link AdaptiveRecoveryScheduler} instance. The scheduler has to be registered as the last module
+     * of the {@link RecoveryManager}, so that it sees the outcome of the other modules after each recovery scan. It
+     * then adjusts the periodic recovery period, which the recovery manager reads before it waits for the next scan.
+     *
+     * @param minPeriod  period used while recovery work is pending
+     * @param maxPeriod  upper limit of the period while scans find nothing
+     * @param multiplier factor by which the period grows after each scan that found nothing
+     */
+    public AdaptiveRecoveryScheduler(Duration minPeriod, Duration maxPeriod, double multiplier) {
+        if (minPeriod.compareTo(maxPeriod) > 0) {
+            throw new IllegalArgumentException("minPeriod must not be greater than maxPeriod");
+        }
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("multiplier must be at least 1");
+        }
+        this.minPeriod = minPeriod;
+        this.maxPeriod = maxPeriod;
+        this.multiplier = multiplier;
+        setPeriod(minPeriod);
+    }
+
+    public Duration getPeriod() {
+        return this.period;
+    }
+
+    /**
+     * Report that the application observed an XA failure, e.g. a heuristic outcome or a resource manager that failed
+     * during commit. The period drops to the minimum and, unless it already was at the minimum, a recovery scan is
+     * requested immediately.
+     */
+    public synchronized void recoveryRequired() {
+        this.failureReported.set(true);
+        if (this.period.compareTo(this.minPeriod) > 0) {
+            setPeriod(this.minPeriod);
+            requestScan();
+        }
+    }
+
+    @Override
+    public void periodicWorkFirstPass() {
+    }
+
+    @Override
+    public synchronized void periodicWorkSecondPass() {
+        boolean pending = this.failureReported.getAndSet(false) | isRecoveryPending();
+        if (pending) {
+            setPeriod(this.minPeriod);
+        } else {
+            long nextPeriod = (long) Math.min(this.period.toMillis() * this.multiplier, this.maxPeriod.toMillis());
+            setPeriod(Duration.ofMillis(nextPeriod));
+        }
+        LOGGER.debugf("Recovery work pending: %s, next recovery scan in %s", pending, this.period);
+    }
+
+    /**
+     * Check whether the last recovery scan left work to do. This is the case if the XA recovery module found in-doubt
+     * Xids it could not resolve yet or ran into problems, or if the object store still contains transaction logs,
+     * including those of transactions with heuristic outcomes.
+     *
+     * @return {@code true} if recovery work is pending
+     */
+    protected boolean isRecoveryPending() {
+        XARecoveryModule xaRecoveryModule = XARecoveryModule.getRegisteredXARecoveryModule();
+        if (xaRecoveryModule != null && xaRecoveryModule.hasWorkLeftToDo()) {
+            return true;
+        }
+        try {
+            return TransactionLogs.exist();
+        } catch (ObjectStoreException | IOException e) {
+            LOGGER.debugf(e, "Failed to read transaction logs, assuming recovery work is pending");
+            return true;
+        }
+    }
+
+    /**
+     * Request a recovery scan without waiting for its completion.
+     */
+    protected void requestScan() {
+        RecoveryManager.manager().scan(() -> LOGGER.debug("Requested recovery scan completed"));
+    }
+
+    private void setPeriod(Duration period) {
+        this.period = period;
+        int seconds = (int) Math.max(1, Math.min(Integer.MAX_VALUE, period.toSeconds()));
+        recoveryPropertyManager.getRecoveryEnvironmentBean().setPeriodicRecoveryPeriod(seconds);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.recovery;
+
+import java.io.IOException;
+
+import com.arjuna.ats.arjuna.common.RecoveryEnvironmentBean;
+import com.arjuna.ats.arjuna.common.recoveryPropertyManager;
+import com.arjuna.ats.arjuna.exceptions.ObjectStoreException;
+import com.arjuna.ats.arjuna.recovery.RecoveryManager;
+import com.arjuna.ats.arjuna.recovery.RecoveryModule;
+import org.jboss.logging.Logger;
+
+public class IdleRecoveryBackoffModule implements RecoveryModule {
+
+    private static final Logger LOGGER = Logger.getLogger(IdleRecoveryBackoffModule.class);
+
+    private static final int IDLE_BACKOFF_PERIOD = 1;
+
+    private boolean workLeft = true;
+    private int backoffPeriod = -1;
+
+    /**
+     * Create a new {@link IdleRecoveryBackoffModule} instance. The module has to be registered as the last module of
+     * the {@link RecoveryManager}. If the object store contains no transaction logs after the first pass and no
+     * module had work left after the previous scan, the back off period of the current scan is shortened to one
+     * second. In-doubt Xids seen for the first time can't be recovered in the same scan anyway, as they are only
+     * treated as orphans after the orphan safety interval.
+     */
+    public IdleRecoveryBackoffModule() {
+    }
+
+    @Override
+    public synchronized void periodicWorkFirstPass() {
+        if (this.workLeft || hasTransactionLogs()) {
+            return;
+        }
+        RecoveryEnvironmentBean recoveryEnvironmentBean = recoveryPropertyManager.getRecoveryEnvironmentBean();
+        this.backoffPeriod = recoveryEnvironmentBean.getRecoveryBackoffPeriod();
+        if (this.backoffPeriod > IDLE_BACKOFF_PERIOD) {
+            LOGGER.debugf("Nothing to recover, shortening recovery back off period to %d second", IDLE_BACKOFF_PERIOD);
+            recoveryEnvironmentBean.setRecoveryBackoffPeriod(IDLE_BACKOFF_PERIOD);
+        }
+    }
+
+    @Override
+    public synchronized void periodicWorkSecondPass() {
+        if (this.backoffPeriod >= 0) {
+            recoveryPropertyManager.getRecoveryEnvironmentBean().setRecoveryBackoffPeriod(this.backoffPeriod);
+            this.backoffPeriod = -1;
+        }
+        this.workLeft = isWorkLeft();
+    }
+
+    /**
+     * Check whether any other recovery module has work left to do after its second pass.
+     *
+     * @return {@code true} if recovery work is left
+     */
+    protected boolean isWorkLeft() {
+        for (RecoveryModule recoveryModule : RecoveryManager.manager().getModules()) {
+            if (recoveryModule != this && recoveryModule.hasWorkLeftToDo()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether the object store contains transaction logs.
+     *
+     * @return {@code true} if transaction logs exist or the object store cannot be read
+     */
+    protected boolean hasTransactionLogs() {
+        try {
+            return TransactionLogs.exist();
+        } catch (ObjectStoreException | IOException e) {
+            LOGGER.debugf(e, "Failed to read transaction logs, keeping recovery back off period");
+            return true;
+        }
+    }
+}
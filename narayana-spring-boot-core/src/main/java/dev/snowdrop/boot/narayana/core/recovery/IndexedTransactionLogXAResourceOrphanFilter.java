@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.recovery;
+
+import java.io.IOException;
+
+import javax.transaction.xa.Xid;
+
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.exceptions.ObjectStoreException;
+import com.arjuna.ats.arjuna.recovery.RecoveryModule;
+import com.arjuna.ats.internal.jta.recovery.arjunacore.JTATransactionLogXAResourceOrphanFilter;
+import com.arjuna.ats.jta.recovery.XAResourceOrphanFilter;
+import com.arjuna.ats.jta.xa.XATxConverter;
+import com.arjuna.ats.jta.xa.XidImple;
+import org.jboss.logging.Logger;
+
+public class IndexedTransactionLogXAResourceOrphanFilter implements XAResourceOrphanFilter, RecoveryModule {
+
+    private static final Logger LOGGER = Logger.getLogger(IndexedTransactionLogXAResourceOrphanFilter.class);
+
+    private final XAResourceOrphanFilter transactionLogFilter = new JTATransactionLogXAResourceOrphanFilter();
+    private volatile Indexes indexes;
+
+    /**
+     * Create a new {@link IndexedTransactionLogXAResourceOrphanFilter} instance. The filter replaces the
+     * {@link JTATransactionLogXAResourceOrphanFilter}, which reads the recovery store for every in-doubt {@link Xid}.
+     * Instead, the identifiers of all transaction logs are read into an index on the first check of a recovery scan,
+     * so that Xids with a transaction log are left alone and Xids without one are abstained from without accessing
+     * the store. Only Xids of transactions with commit markable resource records are passed on to the
+     * {@link JTATransactionLogXAResourceOrphanFilter}, which has to read these records to decide. If the index can't
+     * be built, every Xid is passed on. The filter has to be registered as a recovery module as well, which drops the
+     * index after every scan.
+     */
+    public IndexedTransactionLogXAResourceOrphanFilter() {
+    }
+
+    @Override
+    public Vote checkXid(Xid xid) {
+        if (xid.getFormatId() != XATxConverter.FORMAT_ID) {
+            return Vote.ABSTAIN;
+        }
+        Uid uid = new XidImple(xid).getTransactionUid();
+        if (uid.equals(Uid.nullUid())) {
+            return Vote.ABSTAIN;
+        }
+        Indexes currentIndexes = getIndexes();
+        if (currentIndexes == Indexes.UNAVAILABLE || currentIndexes.commitMarkableLogs().contains(uid)) {
+            return checkTransactionLog(xid);
+        }
+        return currentIndexes.transactionLogs().contains(uid) ? Vote.LEAVE_ALONE : Vote.ABSTAIN;
+    }
+
+    @Override
+    public void periodicWorkFirstPass() {
+        this.indexes = null;
+    }
+
+    @Override
+    public void periodicWorkSecondPass() {
+        this.indexes = null;
+    }
+
+    /**
+     * Build the index of transaction log identifiers.
+     *
+     * @return the index
+     * @throws ObjectStoreException if the recovery store cannot be read
+     * @throws IOException          if the transaction log identifiers cannot be unpacked
+     */
+    UidIndex createIndex() throws ObjectStoreException, IOException {
+        UidIndex uidIndex = new UidIndex();
+        TransactionLogs.forEach(uidIndex::add);
+        return uidIndex;
+    }
+
+    /**
+     * Build the index of identifiers of transaction logs with commit markable resource records.
+     *
+     * @return the index
+     * @throws ObjectStoreException if the recovery store cannot be read
+     * @throws IOException          if the transaction log identifiers cannot be unpacked
+     */
+    UidIndex createCommitMarkableIndex() throws ObjectStoreException, IOException {
+        UidIndex uidIndex = new UidIndex();
+        TransactionLogs.forEachCommitMarkable(uidIndex::add);
+        return uidIndex;
+    }
+
+    /**
+     * Check the recovery store for the transaction log of an {@link Xid} the index can't decide on.
+     *
+     * @param xid the in-doubt Xid
+     * @return the vote of the {@link JTATransactionLogXAResourceOrphanFilter}
+     */
+    protected Vote checkTransactionLog(Xid xid) {
+        return this.transactionLogFilter.checkXid(xid);
+    }
+
+    private Indexes getIndexes() {
+        Indexes currentIndexes = this.indexes;
+        if (currentIndexes == null) {
+            synchronized (this) {
+                currentIndexes = this.indexes;
+                if (currentIndexes == null) {
+                    try {
+                        currentIndexes = new Indexes(createIndex(), createCommitMarkableIndex());
+                        LOGGER.debugf("Indexed %d transaction logs for orphan detection", currentIndexes.transactionLogs().size());
+                    } catch (ObjectStoreException | IOException e) {
+                        LOGGER.warn("Failed to index transaction logs, checking in-doubt Xids one by one", e);
+                        currentIndexes = Indexes.UNAVAILABLE;
+                    }
+                    this.indexes = currentIndexes;
+                }
+            }
+        }
+        return currentIndexes;
+    }
+
+    private record Indexes(UidIndex transactionLogs, UidIndex commitMarkableLogs) {
+
+        private static final Indexes UNAVAILABLE = new Indexes(new UidIndex(), new UidIndex());
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.recovery;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import com.arjuna.ats.internal.jta.recovery.arjunacore.XARecoveryModule;
+import com.arjuna.ats.jta.recovery.XAResourceRecoveryHelper;
+import org.jboss.tm.XAResourceWrapper;
+
+public class ObservableXARecoveryModule extends XARecoveryModule {
+
+    private static final XAResource[] NO_RESOURCES = {};
+
+    private final Map<XAResourceRecoveryHelper, ObservedRecoveryHelper> helpers = new ConcurrentHashMap<>();
+    private final ReentrantLock scanLock = new ReentrantLock();
+    private volatile RecoveryScanResult.Recorder recorder;
+
+    /**
+     * Create a new {@link ObservableXARecoveryModule} instance. The resources of all registered
+     * {@link XAResourceRecoveryHelper}s are wrapped, so that the Xids found, committed and rolled back during an
+     * on-demand scan can be reported per resource.
+     */
+    public ObservableXARecoveryModule() {
+        super();
+    }
+
+    @Override
+    public void addXAResourceRecoveryHelper(XAResourceRecoveryHelper xaResourceRecoveryHelper) {
+        ObservedRecoveryHelper helper = new ObservedRecoveryHelper(xaResourceRecoveryHelper);
+        if (this.helpers.putIfAbsent(xaResourceRecoveryHelper, helper) == null) {
+            super.addXAResourceRecoveryHelper(helper);
+        }
+    }
+
+    @Override
+    public void removeXAResourceRecoveryHelper(XAResourceRecoveryHelper xaResourceRecoveryHelper) {
+        ObservedRecoveryHelper helper = this.helpers.remove(xaResourceRecoveryHelper);
+        if (helper != null) {
+            super.removeXAResourceRecoveryHelper(helper);
+        }
+    }
+
+    /**
+     * Run a recovery scan and record what happens to the resources of the registered helpers meanwhile. Only one
+     * scan is observed at a time, concurrent callers wait for the running scan to complete.
+     *
+     * @param resourceNames names of the resources to scan, all resources are scanned if empty or {@code null}
+     * @param scan          the scan to run, usually a blocking scan of the recovery manager
+     * @return the results of the scan
+     */
+    RecoveryScanResult observe(Collection<String> resourceNames, Runnable scan) {
+        this.scanLock.lock();
+        try {
+            RecoveryScanResult.Recorder scanRecorder = new RecoveryScanResult.Recorder(resourceNames);
+            this.recorder = scanRecorder;
+            try {
+                scan.run();
+            } finally {
+                this.recorder = null;
+            }
+            return scanRecorder.finish();
+        } finally {
+            this.scanLock.unlock();
+        }
+    }
+
+    private static String getName(XAResource xaResource) {
+        if (xaResource instanceof XAResourceWrapper wrapper && wrapper.getJndiName() != null) {
+            return wrapper.getJndiName();
+        }
+        return String.valueOf(xaResource);
+    }
+
+    /**
+     * Helper wrapping the resources of its delegate. While an on-demand scan is limited to named resources, the
+     * other resources are left out.
+     */
+    private final class ObservedRecoveryHelper implements XAResourceRecoveryHelper {
+
+        private final XAResourceRecoveryHelper delegate;
+
+        private ObservedRecoveryHelper(XAResourceRecoveryHelper delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean initialise(String p) throws Exception {
+            return this.delegate.initialise(p);
+        }
+
+        @Override
+        public XAResource[] getXAResources() throws Exception {
+            RecoveryScanResult.Recorder scanRecorder = ObservableXARecoveryModule.this.recorder;
+            XAResource[] xaResources = this.delegate.getXAResources();
+            List<XAResource> resources = new ArrayList<>(xaResources.length);
+            for (XAResource xaResource : xaResources) {
+                String name = getName(xaResource);
+                if (scanRecorder == null || scanRecorder.includes(name)) {
+                    resources.add(new ObservedXAResource(xaResource, name));
+                }
+            }
+            return resources.toArray(NO_RESOURCES);
+        }
+
+        @Override
+        public String toString() {
+            return this.delegate.toString();
+        }
+    }
+
+    /**
+     * Resource recording scans and completions in the results of the running on-demand scan, if any.
+     */
+    private final class ObservedXAResource implements XAResourceWrapper {
+
+        private final XAResource xaResource;
+        private final String name;
+
+        private ObservedXAResource(XAResource xaResource, String name) {
+            this.xaResource = xaResource;
+            this.name = name;
+        }
+
+        private ResourceScanResult result() {
+            RecoveryScanResult.Recorder scanRecorder = ObservableXARecoveryModule.this.recorder;
+            return scanRecorder != null && scanRecorder.includes(this.name) ? scanRecorder.resource(this.name) : null;
+        }
+
+        @Override
+        public XAResource getResource() {
+            return this.xaResource instanceof XAResourceWrapper wrapper ? wrapper.getResource() : this.xaResource;
+        }
+
+        @Override
+        public String getProductName() {
+            return this.xaResource instanceof XAResourceWrapper wrapper ? wrapper.getProductName() : null;
+        }
+
+        @Override
+        public String getProductVersion() {
+            return this.xaResource instanceof XAResourceWrapper wrapper ? wrapper.getProductVersion() : null;
+        }
+
+        @Override
+        public String getJndiName() {
+            return this.xaResource instanceof XAResourceWrapper wrapper ? wrapper.getJndiName() : null;
+        }
+
+        @Override
+        public Xid[] recover(int flag) throws XAException {
+            long startTime = System.nanoTime();
+            Xid[] xids = this.xaResource.recover(flag);
+            ResourceScanResult result = result();
+            if (result != null) {
+                result.recovered(xids, System.nanoTime() - startTime);
+            }
+            return xids;
+        }
+
+        @Override
+        public void commit(Xid xid, boolean onePhase) throws XAException {
+            long startTime = System.nanoTime();
+            this.xaResource.commit(xid, onePhase);
+            ResourceScanResult result = result();
+            if (result != null) {
+                result.committed(xid, System.nanoTime() - startTime);
+            }
+        }
+
+        @Override
+        public void rollback(Xid xid) throws XAException {
+            long startTime = System.nanoTime();
+            this.xaResource.rollback(xid);
+            ResourceScanResult result = result();
+            if (result != null) {
+                result.rolledBack(xid, System.nanoTime() - startTime);
+            }
+        }
+
+        @Override
+        public void end(Xid xid, int flags) throws XAException {
+            this.xaResource.end(xid, flags);
+        }
+
+        @Override
+        public void forget(Xid xid) throws XAException {
+            this.xaResource.forget(xid);
+        }
+
+        @Override
+        public int getTransactionTimeout() throws XAException {
+            return this.xaResource.getTransactionTimeout();
+        }
+
+        @Override
+        public boolean isSameRM(XAResource xaRes) throws XAException {
+            return this.xaResource.isSameRM(xaRes instanceof ObservedXAResource observed ? observed.xaResource : xaRes);
+        }
+
+        @Override
+        public int prepare(Xid xid) throws XAException {
+            return this.xaResource.prepare(xid);
+        }
+
+        @Override
+        public boolean setTransactionTimeout(int seconds) throws XAException {
+            return this.xaResource.setTransactionTimeout(seconds);
+        }
+
+        @Override
+        public void start(Xid xid, int flags) throws XAException {
+            this.xaResource.start(xid, flags);
+        }
+    }
+}
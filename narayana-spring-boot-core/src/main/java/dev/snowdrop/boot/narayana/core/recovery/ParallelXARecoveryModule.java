@@ -0,0 +1,187 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.recovery;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.arjuna.ats.jta.recovery.XAResourceRecoveryHelper;
+import org.jboss.logging.Logger;
+
+public class ParallelXARecoveryModule extends ObservableXARecoveryModule {
+
+    private static final Logger LOGGER = Logger.getLogger(ParallelXARecoveryModule.class);
+
+    private final Map<XAResourceRecoveryHelper, PrefetchingRecoveryHelper> helpers = new ConcurrentHashMap<>();
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private volatile int parallelism = 4;
+    private volatile Duration helperTimeout = Duration.ofSeconds(30);
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Create a new {@link ParallelXARecoveryModule} instance. Before each first recovery pass, the resources of all
+     * registered {@link XAResourceRecoveryHelper}s are scanned concurrently on a bounded executor. The recovery module
+     * then processes the prefetched Xids one helper after another as usual, so a pass takes about as long as the
+     * slowest resource instead of the sum of all resources. Helpers whose scan exceeds the timeout are skipped in
+     * that pass. The executor threads are stopped by {@link #shutdown()}.
+     */
+    public ParallelXARecoveryModule() {
+        super();
+    }
+
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Set the maximum number of helpers scanned at the same time.
+     *
+     * @param parallelism maximum number of concurrent scans
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        if (this.executor != null) {
+            this.executor.setMaximumPoolSize(Math.max(parallelism, this.executor.getCorePoolSize()));
+            this.executor.setCorePoolSize(parallelism);
+            this.executor.setMaximumPoolSize(parallelism);
+        }
+    }
+
+    public Duration getHelperTimeout() {
+        return this.helperTimeout;
+    }
+
+    /**
+     * Set the time a helper may take to return its resources and scan them.
+     *
+     * @param helperTimeout maximum scan time per helper
+     */
+    public void setHelperTimeout(Duration helperTimeout) {
+        this.helperTimeout = helperTimeout;
+    }
+
+    @Override
+    public void addXAResourceRecoveryHelper(XAResourceRecoveryHelper xaResourceRecoveryHelper) {
+        PrefetchingRecoveryHelper helper = new PrefetchingRecoveryHelper(xaResourceRecoveryHelper);
+        if (this.helpers.putIfAbsent(xaResourceRecoveryHelper, helper) == null) {
+            super.addXAResourceRecoveryHelper(helper);
+        }
+    }
+
+    @Override
+    public void removeXAResourceRecoveryHelper(XAResourceRecoveryHelper xaResourceRecoveryHelper) {
+        PrefetchingRecoveryHelper helper = this.helpers.remove(xaResourceRecoveryHelper);
+        if (helper != null) {
+            super.removeXAResourceRecoveryHelper(helper);
+        }
+    }
+
+    @Override
+    public void periodicWorkFirstPass() {
+        prefetch();
+        super.periodicWorkFirstPass();
+    }
+
+    /**
+     * Scan the resources of all helpers concurrently. Scans still running when the time budget of the pass is
+     * exhausted are cancelled and their helpers are skipped in the following first pass. Helpers whose scan failed
+     * are scanned again by the recovery pass itself, so that the failure is reported as usual.
+     */
+    void prefetch() {
+        List<PrefetchingRecoveryHelper> pending = new ArrayList<>();
+        for (PrefetchingRecoveryHelper helper : this.helpers.values()) {
+            if (helper.isScanning()) {
+                LOGGER.warnf("Recovery scan of %s is still running, skipping it", helper.getDelegate());
+                helper.skip();
+            } else {
+                pending.add(helper);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(pending.size());
+        for (PrefetchingRecoveryHelper helper : pending) {
+            tasks.add(() -> {
+                helper.prefetch();
+                return null;
+            });
+        }
+        int rounds = (pending.size() + this.parallelism - 1) / this.parallelism;
+        List<Future<Void>> futures;
+        try {
+            futures = getExecutor().invokeAll(tasks, this.helperTimeout.toMillis() * rounds, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.forEach(PrefetchingRecoveryHelper::skip);
+            return;
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            PrefetchingRecoveryHelper helper = pending.get(i);
+            try {
+                futures.get(i).get();
+            } catch (CancellationException e) {
+                LOGGER.warnf("Recovery scan of %s timed out after %s, skipping it", helper.getDelegate(), this.helperTimeout);
+                helper.skip();
+            } catch (ExecutionException e) {
+                LOGGER.debugf(e.getCause(), "Recovery scan of %s failed, leaving it to the recovery pass", helper.getDelegate());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                helper.skip();
+            }
+        }
+    }
+
+    /**
+     * Stop the scan threads. The application context calls this method when the recovery module bean is destroyed,
+     * a later pass starts new threads if the module is still used.
+     */
+    public synchronized void shutdown() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (this.executor == null) {
+            this.executor = new ThreadPoolExecutor(this.parallelism, this.parallelism, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "narayana-recovery-scan-" + this.threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+        return this.executor;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.recovery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import com.arjuna.ats.jta.recovery.XAResourceRecoveryHelper;
+import org.jboss.tm.XAResourceWrapper;
+
+class PrefetchingRecoveryHelper implements XAResourceRecoveryHelper {
+
+    private static final XAResource[] NO_RESOURCES = {};
+
+    private static final Xid[] NO_XIDS = {};
+
+    private final XAResourceRecoveryHelper delegate;
+    private volatile XAResource[] prefetchedResources;
+    private volatile boolean skipped;
+    private volatile boolean scanning;
+
+    /**
+     * Create a new {@link PrefetchingRecoveryHelper} instance.
+     *
+     * @param delegate the recovery helper whose resources are scanned ahead of the recovery pass
+     */
+    PrefetchingRecoveryHelper(XAResourceRecoveryHelper delegate) {
+        this.delegate = delegate;
+    }
+
+    XAResourceRecoveryHelper getDelegate() {
+        return this.delegate;
+    }
+
+    boolean isScanning() {
+        return this.scanning;
+    }
+
+    /**
+     * Get the resources of the delegate and run a complete recovery scan on each of them. The in-doubt Xids are kept
+     * until the recovery module asks for them.
+     *
+     * @throws Exception if getting the resources or scanning them failed
+     */
+    void prefetch() throws Exception {
+        this.scanning = true;
+        this.skipped = false;
+        try {
+            XAResource[] xaResources = this.delegate.getXAResources();
+            List<XAResource> resources = new ArrayList<>(xaResources.length);
+            for (XAResource xaResource : xaResources) {
+                resources.add(new PrefetchedXAResource(xaResource, scan(xaResource)));
+            }
+            this.prefetchedResources = resources.toArray(NO_RESOURCES);
+        } finally {
+            this.scanning = false;
+        }
+    }
+
+    /**
+     * Skip the delegate in the next recovery pass, because its scan didn't complete in time.
+     */
+    void skip() {
+        this.prefetchedResources = null;
+        this.skipped = true;
+    }
+
+    @Override
+    public boolean initialise(String properties) throws Exception {
+        return this.delegate.initialise(properties);
+    }
+
+    @Override
+    public XAResource[] getXAResources() throws Exception {
+        XAResource[] resources = this.prefetchedResources;
+        this.prefetchedResources = null;
+        if (resources != null) {
+            return resources;
+        }
+        if (this.skipped) {
+            this.skipped = false;
+            return NO_RESOURCES;
+        }
+        return this.delegate.getXAResources();
+    }
+
+    private static Xid[] scan(XAResource xaResource) throws XAException {
+        List<Xid> xids = new ArrayList<>();
+        try {
+            addAll(xids, xaResource.recover(XAResource.TMSTARTRSCAN));
+        } finally {
+            addAll(xids, xaResource.recover(XAResource.TMENDRSCAN));
+        }
+        return xids.toArray(NO_XIDS);
+    }
+
+    private static void addAll(List<Xid> xids, Xid[] scanned) {
+        if (scanned != null) {
+            xids.addAll(List.of(scanned));
+        }
+    }
+
+    /**
+     * Resource returning the prefetched Xids to the first scan of the recovery module. All other operations are passed
+     * on to the scanned resource.
+     */
+    private static final class PrefetchedXAResource implements XAResourceWrapper {
+
+        private final XAResource xaResource;
+        private Xid[] xids;
+
+        private PrefetchedXAResource(XAResource xaResource, Xid[] xids) {
+            this.xaResource = xaResource;
+            this.xids = xids;
+        }
+
+        @Override
+        public XAResource getResource() {
+            return this.xaResource instanceof XAResourceWrapper wrapper ? wrapper.getResource() : this.xaResource;
+        }
+
+        @Override
+        public String getProductName() {
+            return this.xaResource instanceof XAResourceWrapper wrapper ? wrapper.getProductName() : null;
+        }
+
+        @Override
+        public String getProductVersion() {
+            return this.xaResource instanceof XAResourceWrapper wrapper ? wrapper.getProductVersion() : null;
+        }
+
+        @Override
+        public String getJndiName() {
+            return this.xaResource instanceof XAResourceWrapper wrapper ? wrapper.getJndiName() : null;
+        }
+
+        @Override
+        public synchronized Xid[] recover(int flag) throws XAException {
+            if (this.xids == null) {
+                return this.xaResource.recover(flag);
+            }
+            Xid[] result = (flag & XAResource.TMSTARTRSCAN) != 0 ? this.xids : NO_XIDS;
+            this.xids = (flag & XAResource.TMENDRSCAN) != 0 ? null : NO_XIDS;
+            return result;
+        }
+
+        @Override
+        public void commit(Xid xid, boolean onePhase) throws XAException {
+            this.xaResource.commit(xid, onePhase);
+        }
+
+        @Override
+        public void end(Xid xid, int flags) throws XAException {
+            this.xaResource.end(xid, flags);
+        }
+
+        @Override
+        public void forget(Xid xid) throws XAException {
+            this.xaResource.forget(xid);
+        }
+
+        @Override
+        public int getTransactionTimeout() throws XAException {
+            return this.xaResource.getTransactionTimeout();
+        }
+
+        @Override
+        public boolean isSameRM(XAResource xaRes) throws XAException {
+            return this.xaResource.isSameRM(xaRes instanceof PrefetchedXAResource prefetched ? prefetched.xaResource : xaRes);
+        }
+
+        @Override
+        public int prepare(Xid xid) throws XAException {
+            return this.xaResource.prepare(xid);
+        }
+
+        @Override
+        public void rollback(Xid xid) throws XAException {
+            this.xaResource.rollback(xid);
+        }
+
+        @Override
+        public boolean setTransactionTimeout(int seconds) throws XAException {
+            return this.xaResource.setTransactionTimeout(seconds);
+        }
+
+        @Override
+        public void start(Xid xid, int flags) throws XAException {
+            this.xaResource.start(xid, flags);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.recovery;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class RecoveryScanResult {
+
+    private final Duration duration;
+    private final List<ResourceScanResult> resources;
+
+    RecoveryScanResult(Duration duration, Collection<ResourceScanResult> resources) {
+        this.duration = duration;
+        this.resources = List.copyOf(resources);
+    }
+
+    public Duration getDuration() {
+        return this.duration;
+    }
+
+    public List<ResourceScanResult> getResources() {
+        return this.resources;
+    }
+
+    @Override
+    public String toString() {
+        return "RecoveryScanResult[duration=" + this.duration + ", resources=" + this.resources + "]";
+    }
+
+    /**
+     * Collector of the results of one scan. Resources not matching the requested names are excluded from the scan.
+     */
+    static final class Recorder {
+
+        private final Set<String> resourceNames;
+        private final Map<String, ResourceScanResult> results = new ConcurrentSkipListMap<>();
+        private final long startTime = System.nanoTime();
+
+        Recorder(Collection<String> resourceNames) {
+            this.resourceNames = resourceNames == null ? Set.of() : Set.copyOf(resourceNames);
+        }
+
+        boolean includes(String name) {
+            return this.resourceNames.isEmpty() || this.resourceNames.contains(name);
+        }
+
+        ResourceScanResult resource(String name) {
+            return this.results.computeIfAbsent(name, ResourceScanResult::new);
+        }
+
+        RecoveryScanResult finish() {
+            return new RecoveryScanResult(Duration.ofNanos(System.nanoTime() - this.startTime), this.results.values());
+        }
+    }
+}
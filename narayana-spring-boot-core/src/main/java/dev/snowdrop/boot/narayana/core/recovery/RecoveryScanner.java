@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.recovery;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.arjuna.ats.arjuna.recovery.RecoveryManager;
+
+public class RecoveryScanner {
+
+    private final ObservableXARecoveryModule xaRecoveryModule;
+
+    /**
+     * Create a new {@link RecoveryScanner} instance.
+     *
+     * @param xaRecoveryModule the XA recovery module registered with the recovery manager
+     */
+    public RecoveryScanner(ObservableXARecoveryModule xaRecoveryModule) {
+        this.xaRecoveryModule = xaRecoveryModule;
+    }
+
+    /**
+     * Run a recovery scan of all resources and wait for its completion.
+     *
+     * @return the Xids found, committed, rolled back and left in doubt per resource
+     */
+    public RecoveryScanResult scan() {
+        return scan(List.of());
+    }
+
+    /**
+     * Run a recovery scan limited to the named resources and wait for its completion. Transaction logs are processed
+     * as in every recovery scan, but only resources whose JNDI name is given are asked for in-doubt Xids.
+     *
+     * @param resourceNames names of the resources to scan, all resources are scanned if empty
+     * @return the Xids found, committed, rolled back and left in doubt per resource
+     */
+    public RecoveryScanResult scan(Collection<String> resourceNames) {
+        return this.xaRecoveryModule.observe(resourceNames, this::runScan);
+    }
+
+    /**
+     * Run a blocking scan of the recovery manager.
+     */
+    protected void runScan() {
+        RecoveryManager.manager().scan();
+    }
+}
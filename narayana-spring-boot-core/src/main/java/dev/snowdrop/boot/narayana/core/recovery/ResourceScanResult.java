@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.recovery;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.transaction.xa.Xid;
+
+import com.arjuna.ats.jta.xa.XidImple;
+
+public class ResourceScanResult {
+
+    private final String name;
+    private final Set<Xid> found = new LinkedHashSet<>();
+    private final Set<Xid> committed = new LinkedHashSet<>();
+    private final Set<Xid> rolledBack = new LinkedHashSet<>();
+    private long scanNanos;
+    private long completionNanos;
+
+    ResourceScanResult(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Get the Xids returned by the recovery scans of the resource.
+     *
+     * @return the in-doubt Xids found
+     */
+    public synchronized Set<Xid> getFound() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(this.found));
+    }
+
+    public synchronized Set<Xid> getCommitted() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(this.committed));
+    }
+
+    public synchronized Set<Xid> getRolledBack() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(this.rolledBack));
+    }
+
+    /**
+     * Get the Xids found but neither committed nor rolled back, e.g. because they are not old enough yet to be treated
+     * as orphans or because their completion failed.
+     *
+     * @return the Xids left in doubt
+     */
+    public synchronized Set<Xid> getInDoubt() {
+        Set<Xid> inDoubt = new LinkedHashSet<>(this.found);
+        inDoubt.removeAll(this.committed);
+        inDoubt.removeAll(this.rolledBack);
+        return Collections.unmodifiableSet(inDoubt);
+    }
+
+    /**
+     * Get the time spent scanning the resource for in-doubt Xids.
+     *
+     * @return the scan time
+     */
+    public synchronized Duration getScanTime() {
+        return Duration.ofNanos(this.scanNanos);
+    }
+
+    /**
+     * Get the time spent committing and rolling back Xids of the resource.
+     *
+     * @return the completion time
+     */
+    public synchronized Duration getCompletionTime() {
+        return Duration.ofNanos(this.completionNanos);
+    }
+
+    synchronized void recovered(Xid[] xids, long nanos) {
+        if (xids != null) {
+            for (Xid xid : xids) {
+                this.found.add(new XidImple(xid));
+            }
+        }
+        this.scanNanos += nanos;
+    }
+
+    synchronized void committed(Xid xid, long nanos) {
+        this.committed.add(new XidImple(xid));
+        this.completionNanos += nanos;
+    }
+
+    synchronized void rolledBack(Xid xid, long nanos) {
+        this.rolledBack.add(new XidImple(xid));
+        this.completionNanos += nanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ResourceScanResult[name=" + this.name + ", found=" + this.found.size() + ", committed=" + this.committed.size()
+                + ", rolledBack=" + this.rolledBack.size() + ", inDoubt=" + getInDoubt().size() + ", scanTime="
+                + getScanTime() + ", completionTime=" + getCompletionTime() + "]";
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.recovery;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.exceptions.ObjectStoreException;
+import com.arjuna.ats.arjuna.objectstore.StoreManager;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.internal.arjuna.common.UidHelper;
+import com.arjuna.ats.internal.jta.recovery.arjunacore.RecoverConnectableAtomicAction;
+
+final class TransactionLogs {
+
+    private static final String ATOMIC_ACTION_TYPE = "/StateManager/BasicAction/TwoPhaseCoordinator/AtomicAction";
+
+    private TransactionLogs() {
+    }
+
+    /**
+     * Check whether the recovery store contains transaction logs, including those of transactions with heuristic
+     * outcomes.
+     *
+     * @return {@code true} if at least one transaction log exists
+     * @throws ObjectStoreException if the recovery store cannot be read
+     * @throws IOException          if the transaction log identifiers cannot be unpacked
+     */
+    static boolean exist() throws ObjectStoreException, IOException {
+        InputObjectState uids = new InputObjectState();
+        return StoreManager.getRecoveryStore().allObjUids(ATOMIC_ACTION_TYPE, uids)
+                && UidHelper.unpackFrom(uids).notEquals(Uid.nullUid());
+    }
+
+    /**
+     * Pass the identifiers of all transaction logs in the recovery store to the given consumer.
+     *
+     * @param consumer the consumer of the transaction log identifiers
+     * @throws ObjectStoreException if the recovery store cannot be read
+     * @throws IOException          if the transaction log identifiers cannot be unpacked
+     */
+    static void forEach(Consumer<Uid> consumer) throws ObjectStoreException, IOException {
+        forEach(ATOMIC_ACTION_TYPE, consumer);
+    }
+
+    /**
+     * Pass the identifiers of all transaction logs with commit markable resource records to the given consumer.
+     *
+     * @param consumer the consumer of the transaction log identifiers
+     * @throws ObjectStoreException if the recovery store cannot be read
+     * @throws IOException          if the transaction log identifiers cannot be unpacked
+     */
+    static void forEachCommitMarkable(Consumer<Uid> consumer) throws ObjectStoreException, IOException {
+        forEach(RecoverConnectableAtomicAction.CONNECTABLE_ATOMIC_ACTION_TYPE, consumer);
+    }
+
+    private static void forEach(String type, Consumer<Uid> consumer) throws ObjectStoreException, IOException {
+        InputObjectState uids = new InputObjectState();
+        if (!StoreManager.getRecoveryStore().allObjUids(type, uids)) {
+            return;
+        }
+        for (Uid uid = UidHelper.unpackFrom(uids); uid.notEquals(Uid.nullUid()); uid = UidHelper.unpackFrom(uids)) {
+            consumer.accept(uid);
+        }
+    }
+}
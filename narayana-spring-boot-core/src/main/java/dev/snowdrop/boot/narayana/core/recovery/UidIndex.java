@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.recovery;
+
+import java.util.Arrays;
+
+import com.arjuna.ats.arjuna.common.Uid;
+
+final class UidIndex {
+
+    private static final int KEY_SIZE = Uid.UID_SIZE;
+
+    private byte[] keys;
+    private boolean[] used;
+    private int mask;
+    private int size;
+
+    /**
+     * Create a new {@link UidIndex} instance. The index is an open addressing hash table storing the byte form of
+     * the {@link Uid}s in a single array, so that large numbers of identifiers don't cause an object per entry.
+     */
+    UidIndex() {
+        allocate(16);
+    }
+
+    /**
+     * Add an identifier to the index. Identifiers without the standard binary form are ignored.
+     *
+     * @param uid the identifier
+     * @return {@code true} if the identifier was added
+     */
+    boolean add(Uid uid) {
+        byte[] key = uid.getBytes();
+        if (key.length != KEY_SIZE) {
+            return false;
+        }
+        int slot = find(key);
+        if (this.used[slot]) {
+            return false;
+        }
+        System.arraycopy(key, 0, this.keys, slot * KEY_SIZE, KEY_SIZE);
+        this.used[slot] = true;
+        if (++this.size > (this.mask + 1) / 2) {
+            resize();
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the index contains the given identifier.
+     *
+     * @param uid the identifier
+     * @return {@code true} if the identifier was added before
+     */
+    boolean contains(Uid uid) {
+        byte[] key = uid.getBytes();
+        return key.length == KEY_SIZE && this.used[find(key)];
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new byte[capacity * KEY_SIZE];
+        this.used = new boolean[capacity];
+        this.mask = capacity - 1;
+    }
+
+    private void resize() {
+        byte[] oldKeys = this.keys;
+        boolean[] oldUsed = this.used;
+        allocate(oldUsed.length * 2);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                int slot = find(oldKeys, i * KEY_SIZE);
+                System.arraycopy(oldKeys, i * KEY_SIZE, this.keys, slot * KEY_SIZE, KEY_SIZE);
+                this.used[slot] = true;
+            }
+        }
+    }
+
+    private int find(byte[] key) {
+        return find(key, 0);
+    }
+
+    private int find(byte[] key, int offset) {
+        int slot = hash(key, offset) & this.mask;
+        while (this.used[slot]
+                && !Arrays.equals(this.keys, slot * KEY_SIZE, (slot + 1) * KEY_SIZE, key, offset, offset + KEY_SIZE)) {
+            slot = (slot + 1) & this.mask;
+        }
+        return slot;
+    }
+
+    private static int hash(byte[] key, int offset) {
+        int hash = 1;
+        for (int i = offset; i < offset + KEY_SIZE; i++) {
+            hash = 31 * hash + key[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
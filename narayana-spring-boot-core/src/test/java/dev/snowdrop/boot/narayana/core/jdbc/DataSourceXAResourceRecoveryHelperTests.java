@@ -17,12 +17,18 @@
 package dev.snowdrop.boot.narayana.core.jdbc;
 
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.sql.XAConnection;
 import javax.sql.XADataSource;
 import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
 
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.jta.xa.XidImple;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -30,6 +36,8 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.times;
@@ -89,6 +97,34 @@ class DataSourceXAResourceRecoveryHelperTests {
         verify(this.mockXaConnection, times(0)).getXAResource();
     }
 
+    @Test
+    void shouldSkipDataSourceWhileCircuitBreakerIsOpen() throws SQLException {
+        given(this.mockXaDataSource.getXAConnection()).willThrow(new SQLException("Test exception"));
+        RecoveryCircuitBreaker circuitBreaker = new RecoveryCircuitBreaker("db", 1, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        this.recoveryHelper = new DataSourceXAResourceRecoveryHelper(new ConnectionManager(this.mockXaDataSource, null, null), null,
+                null, circuitBreaker);
+
+        assertThat(this.recoveryHelper.getXAResources()).isEmpty();
+        assertThat(circuitBreaker.isOpen()).isTrue();
+        assertThat(this.recoveryHelper.getXAResources()).isEmpty();
+        verify(this.mockXaDataSource, times(1)).getXAConnection();
+    }
+
+    @Test
+    void shouldFailFastWhileCircuitBreakerIsOpen() throws XAException, SQLException {
+        RecoveryCircuitBreaker circuitBreaker = new RecoveryCircuitBreaker("db", 1, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        this.recoveryHelper = new DataSourceXAResourceRecoveryHelper(new ConnectionManager(this.mockXaDataSource, null, null), null,
+                null, circuitBreaker);
+        circuitBreaker.failure();
+
+        assertThatThrownBy(() -> this.recoveryHelper.commit(null, true)).isInstanceOf(XAException.class)
+                .extracting("errorCode").isEqualTo(XAException.XAER_RMFAIL);
+        assertThatThrownBy(() -> this.recoveryHelper.start(null, XAResource.TMNOFLAGS)).isInstanceOf(XAException.class)
+                .extracting("errorCode").isEqualTo(XAException.XAER_RMFAIL);
+        verify(this.mockXaDataSource, times(0)).getXAConnection();
+        verify(this.mockXaResource, times(0)).commit(null, true);
+    }
+
     @Test
     void shouldDelegateRecoverCall() throws XAException {
         this.recoveryHelper.getXAResources();
@@ -96,6 +132,65 @@ class DataSourceXAResourceRecoveryHelperTests {
         verify(this.mockXaResource).recover(XAResource.TMSTARTRSCAN);
     }
 
+    @Test
+    void shouldPageRecoverCalls() throws XAException {
+        Xid xid1 = new XidImple(new Uid());
+        Xid xid2 = new XidImple(new Uid());
+        Xid xid3 = new XidImple(new Uid());
+        given(this.mockXaResource.recover(XAResource.TMSTARTRSCAN)).willReturn(new Xid[]{xid1, xid2});
+        given(this.mockXaResource.recover(XAResource.TMNOFLAGS)).willReturn(new Xid[]{xid3}, new Xid[0]);
+        this.recoveryHelper = new DataSourceXAResourceRecoveryHelper(new ConnectionManager(this.mockXaDataSource, null, null), null,
+                null, null, 0, true);
+
+        this.recoveryHelper.getXAResources();
+
+        assertThat(this.recoveryHelper.recover(XAResource.TMSTARTRSCAN)).containsExactly(xid1, xid2, xid3);
+        verify(this.mockXaResource, times(2)).recover(XAResource.TMNOFLAGS);
+    }
+
+    @Test
+    void shouldStopPagingWhenDriverRepeatsRecoverResult() throws XAException {
+        Xid[] xids = {new XidImple(new Uid()), new XidImple(new Uid())};
+        given(this.mockXaResource.recover(anyInt())).willReturn(xids);
+        this.recoveryHelper = new DataSourceXAResourceRecoveryHelper(new ConnectionManager(this.mockXaDataSource, null, null), null,
+                null, null, 0, true);
+
+        this.recoveryHelper.getXAResources();
+
+        assertThat(this.recoveryHelper.recover(XAResource.TMSTARTRSCAN)).containsExactly(xids);
+        verify(this.mockXaResource, times(1)).recover(XAResource.TMNOFLAGS);
+    }
+
+    @Test
+    void shouldLimitRecoveredXids() throws XAException {
+        Xid xid1 = new XidImple(new Uid());
+        Xid xid2 = new XidImple(new Uid());
+        given(this.mockXaResource.recover(XAResource.TMSTARTRSCAN)).willReturn(new Xid[]{xid1, xid2, new XidImple(new Uid())});
+        this.recoveryHelper = new DataSourceXAResourceRecoveryHelper(new ConnectionManager(this.mockXaDataSource, null, null), null,
+                null, null, 2, true);
+
+        this.recoveryHelper.getXAResources();
+
+        assertThat(this.recoveryHelper.recover(XAResource.TMSTARTRSCAN)).containsExactly(xid1, xid2);
+        verify(this.mockXaResource, times(0)).recover(XAResource.TMNOFLAGS);
+    }
+
+    @Test
+    void shouldReturnUnresolvedXidsAfterOtherXids() throws XAException {
+        Xid unresolved = new XidImple(new Uid());
+        Xid xid = new XidImple(new Uid());
+        given(this.mockXaResource.recover(XAResource.TMSTARTRSCAN)).willReturn(new Xid[]{unresolved, xid});
+        this.recoveryHelper = new DataSourceXAResourceRecoveryHelper(new ConnectionManager(this.mockXaDataSource, null, null), null,
+                null, null, 1, false);
+
+        this.recoveryHelper.getXAResources();
+
+        assertThat(this.recoveryHelper.recover(XAResource.TMSTARTRSCAN)).containsExactly(unresolved);
+        assertThat(this.recoveryHelper.recover(XAResource.TMSTARTRSCAN)).containsExactly(unresolved);
+        assertThat(this.recoveryHelper.recover(XAResource.TMSTARTRSCAN)).containsExactly(unresolved);
+        assertThat(this.recoveryHelper.recover(XAResource.TMSTARTRSCAN)).containsExactly(xid);
+    }
+
     @Test
     void shouldDelegateRecoverCallAndCloseConnection() throws XAException, SQLException {
         this.recoveryHelper.getXAResources();
@@ -132,6 +227,50 @@ class DataSourceXAResourceRecoveryHelperTests {
         verify(this.mockXaResource).commit(null, true);
     }
 
+    @Test
+    void shouldPaceCommitCalls() throws XAException {
+        int xidsPerSecond = 50;
+        int xids = 10;
+        List<Long> latencies = new ArrayList<>();
+        RecoveryRateLimiter rateLimiter = new RecoveryRateLimiter(xidsPerSecond, Duration.ofSeconds(1)) {
+            @Override
+            public synchronized void completed(long latencyNanos) {
+                latencies.add(latencyNanos);
+            }
+        };
+        this.recoveryHelper = new DataSourceXAResourceRecoveryHelper(new ConnectionManager(this.mockXaDataSource, null, null), null,
+                rateLimiter);
+        this.recoveryHelper.getXAResources();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < xids; i++) {
+            this.recoveryHelper.commit(null, true);
+        }
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo((xids - 1) * 1000L / xidsPerSecond)
+                .isLessThan(xids * 1000L / xidsPerSecond + 2000);
+        verify(this.mockXaResource, times(xids)).commit(null, true);
+        assertThat(latencies).hasSize(xids);
+    }
+
+    @Test
+    void shouldRetryCommitCallWhenInterrupted() throws XAException {
+        this.recoveryHelper = new DataSourceXAResourceRecoveryHelper(new ConnectionManager(this.mockXaDataSource, null, null), null,
+                new RecoveryRateLimiter(1, Duration.ofSeconds(1)));
+        this.recoveryHelper.getXAResources();
+        this.recoveryHelper.commit(null, true);
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThatThrownBy(() -> this.recoveryHelper.rollback(null)).isInstanceOf(XAException.class)
+                    .extracting("errorCode").isEqualTo(XAException.XA_RETRY);
+        } finally {
+            assertThat(Thread.interrupted()).isTrue();
+        }
+        verify(this.mockXaResource, times(0)).rollback(null);
+    }
+
     @Test
     void shouldDelegateRollbackCall() throws XAException {
         this.recoveryHelper.getXAResources();
@@ -106,4 +106,16 @@ class GenericXADataSourceWrapperTests {
         verify(this.mockXaRecoveryModule, times(0)).addXAResourceRecoveryHelper(any(DataSourceXAResourceRecoveryHelper.class));
         verify(this.mockRecoveryProperties, times(0)).isValid();
     }
+
+    @Test
+    void wrapDataSourcesOfSameResourceManager() throws Exception {
+        given(this.mockDatabaseMetaData.getURL()).willReturn("jdbc:h2:mem:test");
+        given(this.mockDatabaseMetaData.getUserName()).willReturn("sa", "sa", "other");
+        this.wrapper.wrapDataSource(this.mockXaDataSource);
+        this.wrapper.wrapDataSource(this.mockXaDataSource);
+        verify(this.mockXaRecoveryModule, times(1)).addXAResourceRecoveryHelper(any(DataSourceXAResourceRecoveryHelper.class));
+
+        this.wrapper.wrapDataSource(this.mockXaDataSource);
+        verify(this.mockXaRecoveryModule, times(2)).addXAResourceRecoveryHelper(any(DataSourceXAResourceRecoveryHelper.class));
+    }
 }
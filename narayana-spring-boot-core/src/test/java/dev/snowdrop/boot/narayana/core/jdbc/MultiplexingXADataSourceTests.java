@@ -0,0 +1,239 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import javax.sql.XAConnection;
+import javax.sql.XADataSource;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class MultiplexingXADataSourceTests {
+
+    @Mock
+    private XADataSource mockXaDataSource;
+
+    @Mock
+    private XAConnection mockXaConnection;
+
+    @Mock
+    private Connection mockConnection;
+
+    @Mock
+    private XAResource mockXaResource;
+
+    @Mock
+    private PreparedStatement mockStatement;
+
+    @Mock
+    private Xid mockXid1;
+
+    @Mock
+    private Xid mockXid2;
+
+    private MultiplexingXADataSource dataSource;
+
+    @BeforeEach
+    void before() throws Exception {
+        lenient().when(this.mockXaDataSource.getXAConnection()).thenReturn(this.mockXaConnection);
+        lenient().when(this.mockXaConnection.getConnection()).thenReturn(this.mockConnection);
+        lenient().when(this.mockXaConnection.getXAResource()).thenReturn(this.mockXaResource);
+        this.dataSource = new MultiplexingXADataSource(this.mockXaDataSource, 1, Duration.ofMillis(100));
+    }
+
+    @Test
+    void shouldShareOnePhysicalConnection() throws Exception {
+        XAConnection logical1 = this.dataSource.getXAConnection();
+        XAConnection logical2 = this.dataSource.getXAConnection();
+        logical1.getXAResource().start(this.mockXid1, XAResource.TMNOFLAGS);
+        logical2.getXAResource().start(this.mockXid2, XAResource.TMNOFLAGS);
+
+        verify(this.mockXaDataSource, times(1)).getXAConnection();
+        InOrder inOrder = inOrder(this.mockXaResource);
+        inOrder.verify(this.mockXaResource).start(this.mockXid1, XAResource.TMNOFLAGS);
+        inOrder.verify(this.mockXaResource).end(this.mockXid1, XAResource.TMSUSPEND);
+        inOrder.verify(this.mockXaResource).start(this.mockXid2, XAResource.TMNOFLAGS);
+        verify(this.mockXaResource, never()).end(this.mockXid2, XAResource.TMSUSPEND);
+    }
+
+    @Test
+    void shouldKeepBranchAssociatedWithoutOtherTransactions() throws Exception {
+        given(this.mockConnection.prepareStatement("SELECT 1")).willReturn(this.mockStatement);
+        XAConnection logical = this.dataSource.getXAConnection();
+        logical.getXAResource().start(this.mockXid1, XAResource.TMNOFLAGS);
+
+        PreparedStatement statement = logical.getConnection().prepareStatement("SELECT 1");
+        statement.executeQuery();
+        statement.close();
+        logical.getXAResource().end(this.mockXid1, XAResource.TMSUCCESS);
+
+        InOrder inOrder = inOrder(this.mockXaResource, this.mockStatement);
+        inOrder.verify(this.mockXaResource).start(this.mockXid1, XAResource.TMNOFLAGS);
+        inOrder.verify(this.mockStatement).executeQuery();
+        inOrder.verify(this.mockStatement).close();
+        inOrder.verify(this.mockXaResource).end(this.mockXid1, XAResource.TMSUCCESS);
+        verify(this.mockXaResource, never()).start(this.mockXid1, XAResource.TMRESUME);
+        verify(this.mockXaResource, never()).end(this.mockXid1, XAResource.TMSUSPEND);
+    }
+
+    @Test
+    void shouldResumeBranchSuspendedByOtherTransaction() throws Exception {
+        given(this.mockConnection.prepareStatement("SELECT 1")).willReturn(this.mockStatement);
+        XAConnection logical1 = this.dataSource.getXAConnection();
+        XAConnection logical2 = this.dataSource.getXAConnection();
+        logical1.getXAResource().start(this.mockXid1, XAResource.TMNOFLAGS);
+        logical2.getXAResource().start(this.mockXid2, XAResource.TMNOFLAGS);
+
+        logical1.getConnection().prepareStatement("SELECT 1").close();
+
+        InOrder inOrder = inOrder(this.mockXaResource, this.mockConnection);
+        inOrder.verify(this.mockXaResource).end(this.mockXid1, XAResource.TMSUSPEND);
+        inOrder.verify(this.mockXaResource).start(this.mockXid2, XAResource.TMNOFLAGS);
+        inOrder.verify(this.mockXaResource).end(this.mockXid2, XAResource.TMSUSPEND);
+        inOrder.verify(this.mockXaResource).start(this.mockXid1, XAResource.TMRESUME);
+        inOrder.verify(this.mockConnection).prepareStatement("SELECT 1");
+    }
+
+    @Test
+    void shouldTimeOutWaitingForLease() throws Exception {
+        given(this.mockConnection.prepareStatement("SELECT 1")).willReturn(this.mockStatement);
+        XAConnection logical1 = this.dataSource.getXAConnection();
+        XAConnection logical2 = this.dataSource.getXAConnection();
+        PreparedStatement statement = CompletableFuture.supplyAsync(() -> {
+            try {
+                logical1.getXAResource().start(this.mockXid1, XAResource.TMNOFLAGS);
+                return logical1.getConnection().prepareStatement("SELECT 1");
+            } catch (XAException | SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }).get();
+
+        assertThatThrownBy(() -> logical2.getConnection().prepareStatement("SELECT 1")).isInstanceOf(SQLException.class)
+                .hasMessageContaining("Timed out");
+        statement.close();
+        logical2.getConnection().prepareStatement("SELECT 1");
+    }
+
+    @Test
+    void shouldResetSessionStateForOtherTransaction() throws Exception {
+        XAConnection logical1 = this.dataSource.getXAConnection();
+        XAConnection logical2 = this.dataSource.getXAConnection();
+        logical1.getXAResource().start(this.mockXid1, XAResource.TMNOFLAGS);
+        logical1.getConnection().setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+
+        logical2.getXAResource().start(this.mockXid2, XAResource.TMNOFLAGS);
+
+        InOrder inOrder = inOrder(this.mockXaResource, this.mockConnection);
+        inOrder.verify(this.mockConnection).setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        inOrder.verify(this.mockXaResource).end(this.mockXid1, XAResource.TMSUSPEND);
+        inOrder.verify(this.mockConnection).setTransactionIsolation(0);
+        inOrder.verify(this.mockXaResource).start(this.mockXid2, XAResource.TMNOFLAGS);
+    }
+
+    @Test
+    void shouldOnlySupportKnownDrivers() {
+        assertThat(MultiplexingXADataSource.getSupportedDriver(this.mockXaDataSource)).isNull();
+    }
+
+    @Test
+    void shouldCommitOnPhysicalResource() throws Exception {
+        XAConnection logical = this.dataSource.getXAConnection();
+        logical.getXAResource().commit(this.mockXid1, true);
+
+        verify(this.mockXaResource, times(1)).commit(this.mockXid1, true);
+        assertThat(logical.getXAResource().isSameRM(this.dataSource.getXAConnection().getXAResource())).isFalse();
+    }
+
+    @Test
+    void shouldReleasePhysicalConnectionWhenResumeFails() throws Exception {
+        XAConnection logical1 = this.dataSource.getXAConnection();
+        XAConnection logical2 = this.dataSource.getXAConnection();
+        logical1.getXAResource().start(this.mockXid1, XAResource.TMNOFLAGS);
+        logical2.getXAResource().start(this.mockXid2, XAResource.TMNOFLAGS);
+        willThrow(new XAException(XAException.XAER_RMFAIL)).given(this.mockXaResource).start(this.mockXid1, XAResource.TMRESUME);
+
+        assertThatThrownBy(() -> logical1.getXAResource().end(this.mockXid1, XAResource.TMSUCCESS)).isInstanceOf(XAException.class);
+        logical2.getXAResource().end(this.mockXid2, XAResource.TMSUCCESS);
+
+        verify(this.mockXaResource).end(this.mockXid2, XAResource.TMSUCCESS);
+    }
+
+    @Test
+    void shouldUseDedicatedPhysicalConnectionWhenLeasedByCurrentThread() throws Exception {
+        given(this.mockConnection.prepareStatement("SELECT 1")).willReturn(this.mockStatement);
+        XAConnection logical1 = this.dataSource.getXAConnection();
+        XAConnection logical2 = this.dataSource.getXAConnection();
+        logical1.getConnection().prepareStatement("SELECT 1");
+
+        logical2.getXAResource().start(this.mockXid2, XAResource.TMNOFLAGS);
+        logical2.getXAResource().end(this.mockXid2, XAResource.TMSUCCESS);
+        logical2.getXAResource().commit(this.mockXid2, true);
+        logical2.close();
+
+        verify(this.mockXaDataSource, times(2)).getXAConnection();
+        verify(this.mockXaResource).commit(this.mockXid2, true);
+        verify(this.mockXaConnection).close();
+    }
+
+    @Test
+    void shouldReleaseLeaseOnClose() throws Exception {
+        given(this.mockConnection.prepareStatement("SELECT 1")).willReturn(this.mockStatement);
+        XAConnection logical1 = this.dataSource.getXAConnection();
+        XAConnection logical2 = this.dataSource.getXAConnection();
+        logical1.getXAResource().start(this.mockXid1, XAResource.TMNOFLAGS);
+        logical1.getConnection().prepareStatement("SELECT 1");
+
+        logical1.close();
+        logical2.getXAResource().start(this.mockXid2, XAResource.TMNOFLAGS);
+
+        verify(this.mockXaDataSource, times(1)).getXAConnection();
+        InOrder inOrder = inOrder(this.mockXaResource);
+        inOrder.verify(this.mockXaResource).start(this.mockXid1, XAResource.TMNOFLAGS);
+        inOrder.verify(this.mockXaResource).end(this.mockXid1, XAResource.TMSUSPEND);
+        inOrder.verify(this.mockXaResource).start(this.mockXid2, XAResource.TMNOFLAGS);
+    }
+
+    @Test
+    void shouldRejectPerUserConnections() {
+        assertThatThrownBy(() -> this.dataSource.getXAConnection("user", "password")).isInstanceOf(SQLFeatureNotSupportedException.class);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.XAConnection;
+import javax.sql.XADataSource;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class PooledConnectionManagerTests {
+
+    private static final int MAX_CONNECTIONS = 3;
+
+    private static final int THREADS = 8;
+
+    private static final int OPERATIONS = 200;
+
+    @Mock
+    private XADataSource mockXaDataSource;
+
+    @Test
+    void shouldCompleteBranchesConcurrentlyWithinPoolBounds() throws Exception {
+        AtomicInteger inUse = new AtomicInteger();
+        AtomicInteger maxInUse = new AtomicInteger();
+        AtomicInteger sharedUse = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        Queue<XAConnection> connections = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < MAX_CONNECTIONS; i++) {
+            AtomicInteger connectionUse = new AtomicInteger();
+            XAResource xaResource = mock(XAResource.class);
+            willAnswer(invocation -> {
+                if (connectionUse.incrementAndGet() > 1) {
+                    sharedUse.incrementAndGet();
+                }
+                maxInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+                Thread.sleep(1);
+                inUse.decrementAndGet();
+                connectionUse.decrementAndGet();
+                completed.incrementAndGet();
+                return null;
+            }).given(xaResource).commit(any(), anyBoolean());
+            XAConnection xaConnection = mock(XAConnection.class);
+            given(xaConnection.getXAResource()).willReturn(xaResource);
+            connections.add(xaConnection);
+        }
+        given(this.mockXaDataSource.getXAConnection()).willAnswer(invocation -> connections.remove());
+        PooledConnectionManager connectionManager = new PooledConnectionManager(this.mockXaDataSource, null, null, MAX_CONNECTIONS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < OPERATIONS; j++) {
+                        Xid xid = mock(Xid.class);
+                        connectionManager.connectAndAccept(xaResource -> xaResource.commit(xid, false));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(completed).hasValue(THREADS * OPERATIONS);
+        assertThat(sharedUse).hasValue(0);
+        assertThat(maxInUse.get()).isBetween(1, MAX_CONNECTIONS);
+        verify(this.mockXaDataSource, atMost(MAX_CONNECTIONS)).getXAConnection();
+        assertThat(connectionManager.getIdleConnections()).isBetween(1, MAX_CONNECTIONS);
+
+        connectionManager.disconnect();
+        assertThat(connectionManager.getIdleConnections()).isZero();
+    }
+
+    @Test
+    void shouldDiscardFailedConnection() throws Exception {
+        XAConnection mockXaConnection = mock(XAConnection.class);
+        XAResource mockXaResource = mock(XAResource.class);
+        given(this.mockXaDataSource.getXAConnection()).willReturn(mockXaConnection);
+        given(mockXaConnection.getXAResource()).willReturn(mockXaResource);
+        XAException failure = new XAException(XAException.XAER_RMFAIL);
+        willThrow(failure).given(mockXaResource).rollback(any());
+        PooledConnectionManager connectionManager = new PooledConnectionManager(this.mockXaDataSource, null, null, MAX_CONNECTIONS);
+
+        assertThatThrownBy(() -> connectionManager.connectAndAccept(xaResource -> xaResource.rollback(null))).isSameAs(failure);
+
+        verify(mockXaConnection, times(1)).close();
+        assertThat(connectionManager.getIdleConnections()).isZero();
+    }
+
+    @Test
+    void shouldScanWithSingleConnection() throws Exception {
+        XAConnection mockXaConnection = mock(XAConnection.class);
+        XAResource mockXaResource = mock(XAResource.class);
+        given(this.mockXaDataSource.getXAConnection()).willReturn(mockXaConnection);
+        given(mockXaConnection.getXAResource()).willReturn(mockXaResource);
+        PooledConnectionManager connectionManager = new PooledConnectionManager(this.mockXaDataSource, null, null, MAX_CONNECTIONS);
+
+        connectionManager.connect();
+        connectionManager.connectAndScan(xaResource -> xaResource.recover(XAResource.TMSTARTRSCAN));
+        connectionManager.connectAndScan(xaResource -> xaResource.recover(XAResource.TMENDRSCAN));
+        connectionManager.disconnect();
+
+        verify(this.mockXaDataSource, times(1)).getXAConnection();
+        verify(mockXaConnection, times(1)).close();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class ReadOnlyRoutingDataSourceTests {
+
+    @Mock
+    private DataSource mockPrimaryDataSource;
+
+    @Mock
+    private DataSource mockReplicaDataSource;
+
+    @Mock
+    private Connection mockPrimaryConnection;
+
+    @Mock
+    private Connection mockReplicaConnection;
+
+    @Mock
+    private TransactionSynchronizationRegistry mockRegistry;
+
+    private ReadOnlyRoutingDataSource dataSource;
+
+    @BeforeEach
+    void before() {
+        this.dataSource = new ReadOnlyRoutingDataSource(this.mockPrimaryDataSource, this.mockReplicaDataSource, this.mockRegistry);
+    }
+
+    @AfterEach
+    void after() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void shouldUseReplicaWithoutTransaction() throws SQLException {
+        given(this.mockReplicaDataSource.getConnection()).willReturn(this.mockReplicaConnection);
+        assertThat(this.dataSource.getConnection()).isSameAs(this.mockReplicaConnection);
+    }
+
+    @Test
+    void shouldUseReplicaForReadOnlyTransaction() throws SQLException {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        given(this.mockReplicaDataSource.getConnection()).willReturn(this.mockReplicaConnection);
+        assertThat(this.dataSource.getConnection()).isSameAs(this.mockReplicaConnection);
+    }
+
+    @Test
+    void shouldUsePrimaryForWritableTransaction() throws SQLException {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        given(this.mockPrimaryDataSource.getConnection()).willReturn(this.mockPrimaryConnection);
+        assertThat(this.dataSource.getConnection()).isSameAs(this.mockPrimaryConnection);
+    }
+
+    @Test
+    void shouldUsePrimaryForJtaTransaction() throws SQLException {
+        given(this.mockRegistry.getTransactionKey()).willReturn(new Object());
+        given(this.mockPrimaryDataSource.getConnection()).willReturn(this.mockPrimaryConnection);
+        assertThat(this.dataSource.getConnection()).isSameAs(this.mockPrimaryConnection);
+    }
+}
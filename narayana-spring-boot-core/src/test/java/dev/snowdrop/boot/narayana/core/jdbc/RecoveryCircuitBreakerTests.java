@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jdbc;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecoveryCircuitBreakerTests {
+
+    private final List<Runnable> probes = new ArrayList<>();
+
+    private final AtomicInteger connects = new AtomicInteger();
+
+    private long now;
+
+    private RecoveryCircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void before() {
+        this.circuitBreaker = new RecoveryCircuitBreaker("db", 2, Duration.ofSeconds(10), Duration.ofSeconds(30)) {
+            @Override
+            protected long nanoTime() {
+                return RecoveryCircuitBreakerTests.this.now;
+            }
+
+            @Override
+            protected void startProbe(Runnable probe) {
+                RecoveryCircuitBreakerTests.this.probes.add(probe);
+            }
+        };
+    }
+
+    @Test
+    void shouldOpenAfterConsecutiveFailures() {
+        this.circuitBreaker.failure();
+        assertThat(this.circuitBreaker.tryAcquire(this::connect)).isTrue();
+        this.circuitBreaker.failure();
+        assertThat(this.circuitBreaker.isOpen()).isTrue();
+        assertThat(this.circuitBreaker.tryAcquire(this::connect)).isFalse();
+        assertThat(this.probes).isEmpty();
+    }
+
+    @Test
+    void shouldResetFailuresOnSuccess() {
+        this.circuitBreaker.failure();
+        this.circuitBreaker.success();
+        this.circuitBreaker.failure();
+        assertThat(this.circuitBreaker.isOpen()).isFalse();
+    }
+
+    @Test
+    void shouldCloseAfterSuccessfulProbe() {
+        this.circuitBreaker.failure();
+        this.circuitBreaker.failure();
+        this.now += Duration.ofSeconds(10).toNanos();
+
+        assertThat(this.circuitBreaker.tryAcquire(this::connect)).isFalse();
+        assertThat(this.circuitBreaker.tryAcquire(this::connect)).isFalse();
+        assertThat(this.probes).hasSize(1);
+        this.probes.get(0).run();
+
+        assertThat(this.connects).hasValue(1);
+        assertThat(this.circuitBreaker.isOpen()).isFalse();
+        assertThat(this.circuitBreaker.tryAcquire(this::connect)).isTrue();
+    }
+
+    @Test
+    void shouldDoubleCooldownAfterFailedProbe() {
+        this.circuitBreaker.failure();
+        this.circuitBreaker.failure();
+        this.now += Duration.ofSeconds(10).toNanos();
+        this.circuitBreaker.tryAcquire(() -> {
+            throw new IllegalStateException("unreachable");
+        });
+        this.probes.get(0).run();
+
+        this.now += Duration.ofSeconds(19).toNanos();
+        assertThat(this.circuitBreaker.tryAcquire(this::connect)).isFalse();
+        assertThat(this.probes).hasSize(1);
+        this.now += Duration.ofSeconds(1).toNanos();
+        assertThat(this.circuitBreaker.tryAcquire(this::connect)).isFalse();
+        assertThat(this.probes).hasSize(2);
+    }
+
+    private Void connect() {
+        this.connects.incrementAndGet();
+        return null;
+    }
+}
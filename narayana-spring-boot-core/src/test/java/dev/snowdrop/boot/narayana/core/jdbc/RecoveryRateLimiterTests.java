@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jdbc;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecoveryRateLimiterTests {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final List<Long> sleeps = new ArrayList<>();
+
+    private long now;
+
+    private boolean advanceOnSleep = true;
+
+    private RecoveryRateLimiter rateLimiter;
+
+    @BeforeEach
+    void before() {
+        this.rateLimiter = new RecoveryRateLimiter(10, Duration.ofMillis(100)) {
+            @Override
+            protected long nanoTime() {
+                return RecoveryRateLimiterTests.this.now;
+            }
+
+            @Override
+            protected void sleep(long nanos) {
+                RecoveryRateLimiterTests.this.sleeps.add(nanos);
+                if (RecoveryRateLimiterTests.this.advanceOnSleep) {
+                    RecoveryRateLimiterTests.this.now += nanos;
+                }
+            }
+        };
+    }
+
+    @Test
+    void shouldSpacePermitsEvenly() throws InterruptedException {
+        assertThat(this.rateLimiter.acquire()).isTrue();
+        this.now += 40 * MILLIS;
+        assertThat(this.rateLimiter.acquire()).isTrue();
+        assertThat(this.rateLimiter.acquire()).isTrue();
+        assertThat(this.sleeps).containsExactly(60 * MILLIS, 100 * MILLIS);
+    }
+
+    @Test
+    void shouldNotAccumulatePermitsWhileIdle() throws InterruptedException {
+        assertThat(this.rateLimiter.acquire()).isTrue();
+        this.now += 10_000 * MILLIS;
+        assertThat(this.rateLimiter.acquire()).isTrue();
+        assertThat(this.rateLimiter.acquire()).isTrue();
+        assertThat(this.sleeps).containsExactly(100 * MILLIS);
+    }
+
+    @Test
+    void shouldRejectPermitsBeyondMaximumWait() throws InterruptedException {
+        this.advanceOnSleep = false;
+        for (int i = 0; i <= 10; i++) {
+            assertThat(this.rateLimiter.acquire()).isTrue();
+        }
+        assertThat(this.rateLimiter.acquire()).isFalse();
+        assertThat(this.sleeps).hasSize(10).last().isEqualTo(1000 * MILLIS);
+    }
+
+    @Test
+    void shouldBackOffWhileLatencyIsHigh() {
+        this.rateLimiter.completed(200 * MILLIS);
+        assertThat(this.rateLimiter.getRate()).isEqualTo(5);
+        for (int i = 0; i < 10; i++) {
+            this.rateLimiter.completed(200 * MILLIS);
+        }
+        assertThat(this.rateLimiter.getRate()).isEqualTo(1);
+
+        this.rateLimiter.completed(10 * MILLIS);
+        assertThat(this.rateLimiter.getRate()).isEqualTo(2);
+        for (int i = 0; i < 10; i++) {
+            this.rateLimiter.completed(10 * MILLIS);
+        }
+        assertThat(this.rateLimiter.getRate()).isEqualTo(10);
+    }
+}
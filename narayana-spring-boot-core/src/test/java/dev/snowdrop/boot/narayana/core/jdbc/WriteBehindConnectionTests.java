@@ -0,0 +1,217 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jdbc;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class WriteBehindConnectionTests {
+
+    private static final String INSERT = "INSERT INTO test VALUES (?)";
+
+    @Mock
+    private Connection mockConnection;
+
+    @Mock
+    private PreparedStatement mockStatement;
+
+    @Mock
+    private TransactionSynchronizationRegistry mockRegistry;
+
+    private final Object dataSource = new Object();
+
+    private final Map<Object, Object> resources = new HashMap<>();
+
+    private Connection connection;
+
+    @BeforeEach
+    void before() {
+        this.connection = WriteBehindConnection.wrap(this.mockConnection, this.dataSource, this.mockRegistry, 3);
+    }
+
+    private void beginTransaction() {
+        given(this.mockRegistry.getTransactionKey()).willReturn(new Object());
+        lenient().when(this.mockRegistry.getTransactionStatus()).thenReturn(Status.STATUS_ACTIVE);
+        lenient().when(this.mockRegistry.getResource(any())).thenAnswer(invocation -> this.resources.get(invocation.getArgument(0)));
+        willAnswer(invocation -> this.resources.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .given(this.mockRegistry).putResource(any(), any());
+    }
+
+    private void update(int value) throws SQLException {
+        try (PreparedStatement statement = this.connection.prepareStatement(INSERT)) {
+            statement.setInt(1, value);
+            assertThat(statement.executeUpdate()).isEqualTo(Statement.SUCCESS_NO_INFO);
+        }
+    }
+
+    @Test
+    void shouldExecuteImmediatelyWithoutTransaction() throws SQLException {
+        given(this.mockConnection.prepareStatement(INSERT)).willReturn(this.mockStatement);
+        given(this.mockStatement.executeUpdate()).willReturn(1);
+
+        try (PreparedStatement statement = this.connection.prepareStatement(INSERT)) {
+            statement.setInt(1, 1);
+            assertThat(statement.executeUpdate()).isEqualTo(1);
+        }
+
+        verify(this.mockStatement, times(1)).setInt(1, 1);
+        verify(this.mockStatement, never()).addBatch();
+    }
+
+    @Test
+    void shouldFlushBatchBeforeCompletion() throws SQLException {
+        beginTransaction();
+        given(this.mockConnection.prepareStatement(INSERT)).willReturn(this.mockStatement);
+        update(1);
+        update(2);
+        verify(this.mockConnection, never()).prepareStatement(INSERT);
+
+        ArgumentCaptor<Synchronization> synchronization = ArgumentCaptor.forClass(Synchronization.class);
+        verify(this.mockRegistry, times(1)).registerInterposedSynchronization(synchronization.capture());
+        synchronization.getValue().beforeCompletion();
+
+        InOrder inOrder = inOrder(this.mockStatement);
+        inOrder.verify(this.mockStatement).setInt(1, 1);
+        inOrder.verify(this.mockStatement).addBatch();
+        inOrder.verify(this.mockStatement).setInt(1, 2);
+        inOrder.verify(this.mockStatement).addBatch();
+        inOrder.verify(this.mockStatement).executeBatch();
+        verify(this.mockConnection, times(1)).prepareStatement(INSERT);
+    }
+
+    @Test
+    void shouldFlushWhenBatchSizeIsReached() throws SQLException {
+        beginTransaction();
+        given(this.mockConnection.prepareStatement(INSERT)).willReturn(this.mockStatement);
+        update(1);
+        update(2);
+        update(3);
+
+        verify(this.mockStatement, times(3)).addBatch();
+        verify(this.mockStatement, times(1)).executeBatch();
+    }
+
+    @Test
+    void shouldFlushBeforeRead() throws SQLException {
+        beginTransaction();
+        String select = "SELECT * FROM test";
+        PreparedStatement mockQuery = mock(PreparedStatement.class);
+        given(this.mockConnection.prepareStatement(INSERT)).willReturn(this.mockStatement);
+        given(this.mockConnection.prepareStatement(select)).willReturn(mockQuery);
+        update(1);
+
+        this.connection.prepareStatement(select).executeQuery();
+
+        InOrder inOrder = inOrder(this.mockStatement, mockQuery);
+        inOrder.verify(this.mockStatement).executeBatch();
+        inOrder.verify(mockQuery).executeQuery();
+    }
+
+    @Test
+    void shouldDiscardQueueOnRollback() throws SQLException {
+        beginTransaction();
+        update(1);
+
+        this.connection.rollback();
+        this.connection.close();
+
+        verify(this.mockConnection, never()).prepareStatement(any());
+        verify(this.mockConnection, times(1)).rollback();
+        verify(this.mockConnection, times(1)).close();
+    }
+
+    @Test
+    void shouldFlushOnClose() throws SQLException {
+        beginTransaction();
+        given(this.mockConnection.prepareStatement(INSERT)).willReturn(this.mockStatement);
+        update(1);
+
+        this.connection.close();
+
+        InOrder inOrder = inOrder(this.mockStatement, this.mockConnection);
+        inOrder.verify(this.mockStatement).executeBatch();
+        inOrder.verify(this.mockConnection).close();
+    }
+
+    @Test
+    void shouldShareQueueWithOtherConnectionsOfTransaction() throws SQLException {
+        beginTransaction();
+        String select = "SELECT * FROM test";
+        Connection otherMockConnection = mock(Connection.class);
+        PreparedStatement mockQuery = mock(PreparedStatement.class);
+        given(otherMockConnection.prepareStatement(INSERT)).willReturn(this.mockStatement);
+        given(otherMockConnection.prepareStatement(select)).willReturn(mockQuery);
+        update(1);
+
+        Connection otherConnection = WriteBehindConnection.wrap(otherMockConnection, this.dataSource, this.mockRegistry, 3);
+        otherConnection.prepareStatement(select).executeQuery();
+
+        InOrder inOrder = inOrder(this.mockStatement, mockQuery);
+        inOrder.verify(this.mockStatement).executeBatch();
+        inOrder.verify(mockQuery).executeQuery();
+        verify(this.mockRegistry, times(1)).registerInterposedSynchronization(any());
+    }
+
+    @Test
+    void shouldExecuteImmediatelyWhenStreamIsBound() throws SQLException {
+        beginTransaction();
+        InputStream stream = new ByteArrayInputStream(new byte[]{1});
+        given(this.mockConnection.prepareStatement(INSERT)).willReturn(this.mockStatement);
+        given(this.mockStatement.executeUpdate()).willReturn(1);
+        update(1);
+
+        try (PreparedStatement statement = this.connection.prepareStatement(INSERT)) {
+            statement.setBinaryStream(1, stream);
+            assertThat(statement.executeUpdate()).isEqualTo(1);
+        }
+
+        InOrder inOrder = inOrder(this.mockStatement);
+        inOrder.verify(this.mockStatement).executeBatch();
+        inOrder.verify(this.mockStatement).setBinaryStream(1, stream);
+        inOrder.verify(this.mockStatement).executeUpdate();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms;
+
+import jakarta.jms.ExceptionListener;
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Queue;
+import jakarta.jms.XAConnection;
+import jakarta.jms.XAConnectionFactory;
+import jakarta.jms.XASession;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class CachingXAConnectionFactoryTests {
+
+    @Mock
+    private XAConnectionFactory mockXaConnectionFactory;
+
+    @Mock
+    private XAConnection mockXaConnection;
+
+    @Mock
+    private XASession mockXaSession;
+
+    private CachingXAConnectionFactory connectionFactory;
+
+    @BeforeEach
+    void before() throws JMSException {
+        given(this.mockXaConnectionFactory.createXAConnection()).willReturn(this.mockXaConnection);
+        this.connectionFactory = new CachingXAConnectionFactory(this.mockXaConnectionFactory, 1);
+    }
+
+    @Test
+    void shouldShareConnection() throws JMSException {
+        XAConnection connection1 = this.connectionFactory.createXAConnection();
+        connection1.close();
+        XAConnection connection2 = this.connectionFactory.createXAConnection();
+        connection2.close();
+
+        assertThat(connection1).isNotSameAs(connection2);
+        verify(this.mockXaConnectionFactory, times(1)).createXAConnection();
+        verify(this.mockXaConnection, never()).close();
+    }
+
+    @Test
+    void shouldReuseSession() throws JMSException {
+        Queue mockQueue = mock(Queue.class);
+        MessageProducer mockProducer = mock(MessageProducer.class);
+        given(this.mockXaConnection.createXASession()).willReturn(this.mockXaSession);
+        given(this.mockXaSession.createProducer(mockQueue)).willReturn(mockProducer);
+
+        XAConnection connection = this.connectionFactory.createXAConnection();
+        XASession session1 = connection.createXASession();
+        session1.createProducer(mockQueue);
+        session1.close();
+        XASession session2 = connection.createXASession();
+        session2.close();
+
+        verify(this.mockXaConnection, times(1)).createXASession();
+        verify(mockProducer, times(1)).close();
+        verify(this.mockXaSession, never()).close();
+    }
+
+    @Test
+    void shouldCloseSessionsAboveLimit() throws JMSException {
+        XASession mockXaSession2 = mock(XASession.class);
+        given(this.mockXaConnection.createXASession()).willReturn(this.mockXaSession, mockXaSession2);
+
+        XAConnection connection = this.connectionFactory.createXAConnection();
+        XASession session1 = connection.createXASession();
+        XASession session2 = connection.createXASession();
+        session1.close();
+        session2.close();
+
+        verify(this.mockXaSession, never()).close();
+        verify(mockXaSession2, times(1)).close();
+    }
+
+    @Test
+    void shouldDiscardFailedConnection() throws JMSException {
+        ArgumentCaptor<ExceptionListener> listener = ArgumentCaptor.forClass(ExceptionListener.class);
+        this.connectionFactory.createXAConnection();
+        verify(this.mockXaConnection).setExceptionListener(listener.capture());
+
+        listener.getValue().onException(new JMSException("failure"));
+        this.connectionFactory.createXAConnection();
+
+        verify(this.mockXaConnection, times(1)).close();
+        verify(this.mockXaConnectionFactory, times(2)).createXAConnection();
+    }
+
+    @Test
+    void shouldForwardConnectionFailureToOpenConnections() throws JMSException {
+        ArgumentCaptor<ExceptionListener> listener = ArgumentCaptor.forClass(ExceptionListener.class);
+        ExceptionListener mockListener1 = mock(ExceptionListener.class);
+        ExceptionListener mockListener2 = mock(ExceptionListener.class);
+        XAConnection connection1 = this.connectionFactory.createXAConnection();
+        connection1.setExceptionListener(mockListener1);
+        XAConnection connection2 = this.connectionFactory.createXAConnection();
+        connection2.setExceptionListener(mockListener2);
+        connection2.close();
+        verify(this.mockXaConnection).setExceptionListener(listener.capture());
+
+        JMSException exception = new JMSException("failure");
+        listener.getValue().onException(exception);
+
+        assertThat(connection1.getExceptionListener()).isSameAs(mockListener1);
+        verify(mockListener1).onException(exception);
+        verify(mockListener2, never()).onException(any());
+        verify(this.mockXaConnection, times(1)).setExceptionListener(any());
+    }
+
+    @Test
+    void shouldCloseSharedConnectionAndIdleSessions() throws JMSException {
+        given(this.mockXaConnection.createXASession()).willReturn(this.mockXaSession);
+        XAConnection connection = this.connectionFactory.createXAConnection();
+        connection.createXASession().close();
+        connection.close();
+
+        this.connectionFactory.close();
+
+        verify(this.mockXaSession, times(1)).close();
+        verify(this.mockXaConnection, times(1)).close();
+    }
+}
@@ -16,23 +16,32 @@
 
 package dev.snowdrop.boot.narayana.core.jms;
 
+import jakarta.jms.Connection;
 import jakarta.jms.ConnectionFactory;
+import jakarta.jms.XAConnection;
 import jakarta.jms.XAConnectionFactory;
+import jakarta.jms.XASession;
+import jakarta.transaction.Status;
 import jakarta.transaction.TransactionManager;
 
 import com.arjuna.ats.internal.jta.recovery.arjunacore.XARecoveryModule;
+import com.arjuna.ats.jta.recovery.XAResourceRecoveryHelper;
+import dev.snowdrop.boot.narayana.core.properties.JmsCacheProperties;
 import dev.snowdrop.boot.narayana.core.properties.RecoveryProperties;
 import org.jboss.narayana.jta.jms.ConnectionFactoryProxy;
 import org.jboss.narayana.jta.jms.JmsXAResourceRecoveryHelper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -95,4 +104,41 @@ class GenericXAConnectionFactoryWrapperTests {
         verify(this.mockXaRecoveryModule, times(0)).addXAResourceRecoveryHelper(any(JmsXAResourceRecoveryHelper.class));
         verify(this.mockRecoveryProperties, times(0)).isValid();
     }
+
+    @Test
+    void closeCachedConnection() throws Exception {
+        XAConnection mockXaConnection = mock(XAConnection.class);
+        given(this.mockRecoveryProperties.isEnabled()).willReturn(false);
+        given(this.mockXaConnectionFactory.createXAConnection()).willReturn(mockXaConnection);
+        given(this.mockTransactionManager.getStatus()).willReturn(Status.STATUS_NO_TRANSACTION);
+        JmsCacheProperties cacheProperties = new JmsCacheProperties();
+        cacheProperties.setEnabled(true);
+        this.wrapper = new GenericXAConnectionFactoryWrapper(this.mockTransactionManager, this.mockXaRecoveryModule,
+                this.mockRecoveryProperties, cacheProperties);
+        ConnectionFactory wrapped = this.wrapper.wrapConnectionFactory(this.mockXaConnectionFactory);
+        Connection connection = wrapped.createConnection();
+        connection.close();
+        verify(mockXaConnection, never()).close();
+
+        this.wrapper.close();
+        verify(mockXaConnection).close();
+    }
+
+    @Test
+    void closeRecoveryConnection() throws Exception {
+        XAConnection mockXaConnection = mock(XAConnection.class);
+        XASession mockXaSession = mock(XASession.class);
+        given(this.mockRecoveryProperties.isKeepConnection()).willReturn(true);
+        given(this.mockXaConnectionFactory.createXAConnection()).willReturn(mockXaConnection);
+        given(mockXaConnection.createXASession()).willReturn(mockXaSession);
+        this.wrapper.wrapConnectionFactory(this.mockXaConnectionFactory);
+        ArgumentCaptor<XAResourceRecoveryHelper> recoveryHelper = ArgumentCaptor.forClass(XAResourceRecoveryHelper.class);
+        verify(this.mockXaRecoveryModule).addXAResourceRecoveryHelper(recoveryHelper.capture());
+        recoveryHelper.getValue().getXAResources();
+        verify(mockXaConnection, never()).close();
+
+        this.wrapper.close();
+        verify(this.mockXaRecoveryModule).removeXAResourceRecoveryHelper(recoveryHelper.getValue());
+        verify(mockXaConnection).close();
+    }
 }
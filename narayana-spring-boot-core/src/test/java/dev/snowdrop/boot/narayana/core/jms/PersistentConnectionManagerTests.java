@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import jakarta.jms.XAConnection;
+import jakarta.jms.XAConnectionFactory;
+import jakarta.jms.XASession;
+
+import org.jboss.narayana.jta.jms.JmsXAResourceRecoveryHelper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class PersistentConnectionManagerTests {
+
+    @Mock
+    private XAConnectionFactory mockXaConnectionFactory;
+
+    @Mock
+    private XAConnection mockXaConnection;
+
+    @Mock
+    private XASession mockXaSession;
+
+    @Mock
+    private XAResource mockXaResource;
+
+    private JmsXAResourceRecoveryHelper recoveryHelper;
+
+    @BeforeEach
+    void before() throws Exception {
+        given(this.mockXaConnectionFactory.createXAConnection()).willReturn(this.mockXaConnection);
+        given(this.mockXaConnection.createXASession()).willReturn(this.mockXaSession);
+        given(this.mockXaSession.getXAResource()).willReturn(this.mockXaResource);
+        this.recoveryHelper = new JmsXAResourceRecoveryHelper(new PersistentConnectionManager(this.mockXaConnectionFactory, null, null));
+    }
+
+    @Test
+    void shouldKeepConnectionBetweenScans() throws Exception {
+        given(this.mockXaResource.recover(XAResource.TMSTARTRSCAN)).willReturn(new Xid[0]);
+        given(this.mockXaResource.recover(XAResource.TMENDRSCAN)).willReturn(new Xid[0]);
+
+        scan();
+        scan();
+
+        verify(this.mockXaConnectionFactory, times(1)).createXAConnection();
+        verify(this.mockXaConnection, never()).close();
+    }
+
+    @Test
+    void shouldReconnectAfterResourceManagerFailure() throws Exception {
+        given(this.mockXaResource.recover(XAResource.TMSTARTRSCAN)).willThrow(new XAException(XAException.XAER_RMFAIL))
+                .willReturn(new Xid[0]);
+
+        assertThat(this.recoveryHelper.getXAResources()).hasSize(1);
+        assertThat(this.recoveryHelper.recover(XAResource.TMSTARTRSCAN)).isEmpty();
+
+        verify(this.mockXaConnectionFactory, times(2)).createXAConnection();
+        verify(this.mockXaConnection, times(1)).close();
+    }
+
+    private void scan() throws XAException {
+        assertThat(this.recoveryHelper.getXAResources()).hasSize(1);
+        this.recoveryHelper.recover(XAResource.TMSTARTRSCAN);
+        this.recoveryHelper.recover(XAResource.TMENDRSCAN);
+    }
+}
@@ -28,7 +28,9 @@ import jakarta.transaction.Transaction;
 import jakarta.transaction.TransactionManager;
 
 import com.arjuna.ats.internal.jta.recovery.arjunacore.XARecoveryModule;
+import dev.snowdrop.boot.narayana.core.jms.pool.JmsPoolNarayanaConnectionFactory;
 import dev.snowdrop.boot.narayana.core.properties.MessagingHubConnectionFactoryProperties;
+import dev.snowdrop.boot.narayana.core.properties.MessagingHubPoolProperties;
 import dev.snowdrop.boot.narayana.core.properties.RecoveryProperties;
 import org.jboss.narayana.jta.jms.JmsXAResourceRecoveryHelper;
 import org.jboss.tm.FirstResource;
@@ -46,6 +48,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -67,7 +70,7 @@ class PooledXAConnectionFactoryWrapperTest {
 
     @BeforeEach
     void before() {
-        given(this.mockRecoveryProperties.isEnabled()).willReturn(true);
+        lenient().when(this.mockRecoveryProperties.isEnabled()).thenReturn(true);
         this.wrapper = new PooledXAConnectionFactoryWrapper(this.mockTransactionManager, this.mockXaRecoveryModule,
                 this.spyMessagingHubConnectionFactoryProperties, this.mockRecoveryProperties);
     }
@@ -158,4 +161,42 @@ class PooledXAConnectionFactoryWrapperTest {
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessage("Setting both firstResource and lastResource is not allowed");
     }
+
+    @Test
+    void wrapNamedFactory() throws Exception {
+        MessagingHubPoolProperties ordersProperties = new MessagingHubPoolProperties();
+        ordersProperties.setMaxConnections(4);
+        ordersProperties.setMaxSessionsPerConnection(50);
+        ordersProperties.setLastResource(true);
+        this.spyMessagingHubConnectionFactoryProperties.getFactories().put("orders", ordersProperties);
+        given(this.mockRecoveryProperties.isValid()).willReturn(false);
+
+        ConnectionFactory connectionFactory = this.wrapper.wrapConnectionFactory(this.mockXaConnectionFactory, "orders");
+
+        assertThat(connectionFactory).isInstanceOf(JmsPoolNarayanaConnectionFactory.class);
+        JmsPoolNarayanaConnectionFactory pooledConnectionFactory = (JmsPoolNarayanaConnectionFactory) connectionFactory;
+        assertThat(pooledConnectionFactory.getName()).isEqualTo("orders");
+        assertThat(pooledConnectionFactory.getMaxConnections()).isEqualTo(4);
+        assertThat(pooledConnectionFactory.getMaxSessionsPerConnection()).isEqualTo(50);
+        assertThat(pooledConnectionFactory.isLastResource()).isTrue();
+        verify(this.mockXaRecoveryModule).addXAResourceRecoveryHelper(any(JmsXAResourceRecoveryHelper.class));
+    }
+
+    @Test
+    void wrapNamedFactoryWithOwnRecovery() throws Exception {
+        MessagingHubPoolProperties auditProperties = new MessagingHubPoolProperties();
+        auditProperties.setRecovery(new RecoveryProperties(false));
+        this.spyMessagingHubConnectionFactoryProperties.getFactories().put("audit", auditProperties);
+
+        this.wrapper.wrapConnectionFactory(this.mockXaConnectionFactory, "audit");
+
+        verify(this.mockXaRecoveryModule, times(0)).addXAResourceRecoveryHelper(any(JmsXAResourceRecoveryHelper.class));
+    }
+
+    @Test
+    void wrapUnknownNamedFactory() {
+        assertThatThrownBy(() -> this.wrapper.wrapConnectionFactory(this.mockXaConnectionFactory, "unknown"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("No MessagingHub connection factory named 'unknown' is configured");
+    }
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms.listener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageListener;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+
+import com.arjuna.ats.arjuna.coordinator.TxControl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class BatchMessageListenerContainerTests {
+
+    @Mock
+    private MessageConsumer mockConsumer;
+
+    @Mock
+    private Session mockSession;
+
+    @Mock
+    private Message mockMessage1;
+
+    @Mock
+    private Message mockMessage2;
+
+    private BatchMessageListenerContainer container;
+
+    @BeforeEach
+    void before() {
+        this.container = new BatchMessageListenerContainer();
+        this.container.setBatchSize(3);
+        this.container.setBatchTimeout(100);
+    }
+
+    @Test
+    void shouldPassBatchToBatchListener() throws JMSException {
+        List<Message> received = new ArrayList<>();
+        this.container.setMessageListener((BatchMessageListener) received::addAll);
+        given(this.mockConsumer.receive(anyLong())).willReturn(this.mockMessage1, this.mockMessage2, null);
+
+        Message message = this.container.receiveMessage(this.mockConsumer);
+        this.container.invokeListener(this.mockSession, message);
+
+        assertThat(received).containsExactly(this.mockMessage1, this.mockMessage2);
+    }
+
+    @Test
+    void shouldStopAtBatchSize() throws JMSException {
+        List<Message> received = new ArrayList<>();
+        this.container.setMessageListener((BatchMessageListener) received::addAll);
+        given(this.mockConsumer.receive(anyLong())).willReturn(this.mockMessage1, this.mockMessage2, this.mockMessage2, this.mockMessage2);
+
+        Message message = this.container.receiveMessage(this.mockConsumer);
+        this.container.invokeListener(this.mockSession, message);
+
+        assertThat(received).hasSize(3);
+        verify(this.mockConsumer, times(3)).receive(anyLong());
+    }
+
+    @Test
+    void shouldInvokeMessageListenerForEachMessage() throws JMSException {
+        MessageListener mockListener = mock(MessageListener.class);
+        this.container.setMessageListener(mockListener);
+        given(this.mockConsumer.receive(anyLong())).willReturn(this.mockMessage1, this.mockMessage2, null);
+
+        Message message = this.container.receiveMessage(this.mockConsumer);
+        this.container.invokeListener(this.mockSession, message);
+
+        verify(mockListener).onMessage(this.mockMessage1);
+        verify(mockListener).onMessage(this.mockMessage2);
+    }
+
+    @Test
+    void shouldLimitBatchTimeoutToDefaultTransactionTimeout() throws JMSException {
+        this.container.setBatchTimeout(Long.MAX_VALUE);
+        this.container.setTransactionManager(mock(PlatformTransactionManager.class));
+        given(this.mockConsumer.receive(anyLong())).willReturn(this.mockMessage1, (Message) null);
+
+        this.container.receiveMessage(this.mockConsumer);
+
+        verify(this.mockConsumer).receive(longThat(timeout -> timeout > DefaultMessageListenerContainer.DEFAULT_RECEIVE_TIMEOUT
+                && timeout <= TxControl.getDefaultTimeout() * 500L));
+    }
+
+    @Test
+    void shouldClearBatchWhenListenerIsNotInvoked() throws JMSException {
+        MessageListener mockListener = mock(MessageListener.class);
+        this.container.setMessageListener(mockListener);
+        given(this.mockConsumer.receive(anyLong())).willReturn(this.mockMessage1, this.mockMessage2, null);
+
+        assertThatThrownBy(() -> this.container.doReceiveAndExecute(new Object(), this.mockSession, this.mockConsumer, null))
+                .isInstanceOf(RuntimeException.class);
+        this.container.invokeListener(this.mockSession, this.mockMessage1);
+
+        verify(mockListener).onMessage(this.mockMessage1);
+        verify(mockListener, never()).onMessage(this.mockMessage2);
+    }
+
+    @Test
+    void shouldProbeQueueForAvailableMessages() throws JMSException {
+        ConnectionFactory mockConnectionFactory = mock(ConnectionFactory.class);
+        Connection mockConnection = mock(Connection.class);
+        Queue mockQueue = mock(Queue.class);
+        given(mockConnectionFactory.createConnection()).willReturn(mockConnection);
+        given(mockConnection.createSession(false, Session.CLIENT_ACKNOWLEDGE)).willReturn(this.mockSession);
+        given(this.mockSession.createConsumer(mockQueue, null)).willReturn(this.mockConsumer);
+        given(this.mockConsumer.receive(1000)).willReturn(null, this.mockMessage1);
+        this.container.setConnectionFactory(mockConnectionFactory);
+        this.container.setDestination(mockQueue);
+        this.container.setCacheLevel(DefaultMessageListenerContainer.CACHE_NONE);
+
+        assertThat(this.container.isMessageAvailable()).isFalse();
+        verify(this.mockSession, never()).close();
+        assertThat(this.container.isMessageAvailable()).isTrue();
+        verify(mockConnectionFactory, times(1)).createConnection();
+        verify(mockConnection, times(1)).start();
+        verify(mockConnection, times(1)).createSession(false, Session.CLIENT_ACKNOWLEDGE);
+        verify(this.mockConsumer, times(2)).close();
+        verify(this.mockSession, times(1)).close();
+        verify(mockConnection, never()).close();
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms.outbox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.DeliveryMode;
+import jakarta.jms.JMSException;
+import jakarta.jms.MapMessage;
+import jakarta.jms.Message;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.ObjectMessage;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import dev.snowdrop.boot.narayana.core.properties.OutboxProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxConnectionFactoryTests {
+
+    @Mock
+    private ConnectionFactory mockConnectionFactory;
+
+    @Mock
+    private ConnectionFactory mockRelayConnectionFactory;
+
+    @Mock
+    private Connection mockRelayConnection;
+
+    @Mock
+    private Session mockRelaySession;
+
+    @Mock
+    private DataSource mockDataSource;
+
+    @Mock
+    private java.sql.Connection mockJdbcConnection;
+
+    @Mock
+    private PreparedStatement mockStatement;
+
+    @Mock
+    private TransactionSynchronizationRegistry mockRegistry;
+
+    @Mock
+    private Queue mockQueue;
+
+    @Mock
+    private TextMessage mockMessage;
+
+    private OutboxConnectionFactory connectionFactory;
+
+    @BeforeEach
+    void before() {
+        OutboxProperties properties = new OutboxProperties();
+        properties.setRelayInterval(Duration.ZERO);
+        this.connectionFactory = new OutboxConnectionFactory(this.mockConnectionFactory, this.mockRelayConnectionFactory,
+                () -> this.mockDataSource, this.mockRegistry, properties);
+    }
+
+    @AfterEach
+    void after() {
+        this.connectionFactory.close();
+    }
+
+    @Test
+    void shouldDelegateOutsideOfTransaction() throws Exception {
+        Connection mockConnection = mock(Connection.class);
+        given(this.mockConnectionFactory.createConnection()).willReturn(mockConnection);
+
+        assertThat(this.connectionFactory.createConnection()).isSameAs(mockConnection);
+    }
+
+    @Test
+    void shouldWriteMessageToOutboxWithinTransaction() throws Exception {
+        given(this.mockRegistry.getTransactionKey()).willReturn(new Object());
+        given(this.mockRegistry.getTransactionStatus()).willReturn(Status.STATUS_ACTIVE);
+        given(this.mockRelayConnectionFactory.createConnection()).willReturn(this.mockRelayConnection);
+        given(this.mockRelayConnection.createSession(false, Session.AUTO_ACKNOWLEDGE)).willReturn(this.mockRelaySession);
+        MessageProducer mockProducer = mock(MessageProducer.class);
+        given(this.mockRelaySession.createProducer(this.mockQueue)).willReturn(mockProducer);
+        given(mockProducer.getDestination()).willReturn(this.mockQueue);
+        given(mockProducer.getDeliveryMode()).willReturn(DeliveryMode.PERSISTENT);
+        given(mockProducer.getPriority()).willReturn(Message.DEFAULT_PRIORITY);
+        given(mockProducer.getTimeToLive()).willReturn(Message.DEFAULT_TIME_TO_LIVE);
+        given(this.mockQueue.getQueueName()).willReturn("orders");
+        given(this.mockMessage.getPropertyNames()).willReturn(Collections.emptyEnumeration());
+        given(this.mockMessage.getText()).willReturn("created");
+        given(this.mockDataSource.getConnection()).willReturn(this.mockJdbcConnection);
+        given(this.mockJdbcConnection.prepareStatement(startsWith("INSERT INTO NARAYANA_JMS_OUTBOX"))).willReturn(this.mockStatement);
+
+        try (Connection connection = this.connectionFactory.createConnection()) {
+            Session session = connection.createSession();
+            session.createProducer(this.mockQueue).send(this.mockMessage);
+        }
+
+        verify(this.mockStatement).setBytes(any(Integer.class), any(byte[].class));
+        verify(this.mockStatement).executeUpdate();
+        verify(this.mockRegistry).registerInterposedSynchronization(any(Synchronization.class));
+        verify(this.mockConnectionFactory, never()).createConnection();
+        verify(mockProducer, never()).send(any(Message.class));
+    }
+
+    @Test
+    void shouldPublishAndDeleteOutboxMessages() throws Exception {
+        given(this.mockQueue.getQueueName()).willReturn("orders");
+        given(this.mockMessage.getPropertyNames()).willReturn(Collections.emptyEnumeration());
+        given(this.mockMessage.getText()).willReturn("created");
+        Queue mockReplyTo = mock(Queue.class);
+        given(mockReplyTo.getQueueName()).willReturn("replies");
+        given(this.mockMessage.getJMSReplyTo()).willReturn(mockReplyTo);
+        byte[] payload = OutboxMessage.of(this.mockQueue, this.mockMessage, DeliveryMode.PERSISTENT, 4, 0, 1000).toBytes();
+        ResultSet mockResultSet = mock(ResultSet.class);
+        PreparedStatement mockClaimStatement = mock(PreparedStatement.class);
+        PreparedStatement mockDeleteStatement = mock(PreparedStatement.class);
+        given(this.mockDataSource.getConnection()).willReturn(this.mockJdbcConnection);
+        given(this.mockJdbcConnection.prepareStatement(startsWith("SELECT"))).willReturn(this.mockStatement);
+        given(this.mockJdbcConnection.prepareStatement(startsWith("UPDATE"))).willReturn(mockClaimStatement);
+        given(this.mockJdbcConnection.prepareStatement(startsWith("DELETE"))).willReturn(mockDeleteStatement);
+        given(mockClaimStatement.executeUpdate()).willReturn(1);
+        given(this.mockStatement.executeQuery()).willReturn(mockResultSet);
+        given(mockResultSet.next()).willReturn(true, false);
+        given(mockResultSet.getString(1)).willReturn("id");
+        given(mockResultSet.getBytes(2)).willReturn(payload);
+        given(this.mockRelayConnectionFactory.createConnection()).willReturn(this.mockRelayConnection);
+        given(this.mockRelayConnection.createSession(true, Session.SESSION_TRANSACTED)).willReturn(this.mockRelaySession);
+        MessageProducer mockProducer = mock(MessageProducer.class);
+        TextMessage mockRelayMessage = mock(TextMessage.class);
+        given(this.mockRelaySession.createProducer(null)).willReturn(mockProducer);
+        given(this.mockRelaySession.createQueue("orders")).willReturn(this.mockQueue);
+        given(this.mockRelaySession.createQueue("replies")).willReturn(mockReplyTo);
+        given(this.mockRelaySession.createTextMessage("created")).willReturn(mockRelayMessage);
+
+        this.connectionFactory.relay();
+
+        ArgumentCaptor<Message> message = ArgumentCaptor.forClass(Message.class);
+        verify(mockProducer).send(any(Queue.class), message.capture(), any(Integer.class), any(Integer.class), anyLong());
+        assertThat(message.getValue()).isSameAs(mockRelayMessage);
+        verify(mockRelayMessage).setJMSReplyTo(mockReplyTo);
+        verify(mockProducer).setDeliveryDelay(1000);
+        verify(this.mockRelaySession).commit();
+        verify(mockDeleteStatement).setString(any(Integer.class), anyString());
+        verify(mockDeleteStatement).executeBatch();
+    }
+
+    @Test
+    void shouldSkipMessagesClaimedByOtherRelay() throws Exception {
+        ResultSet mockResultSet = mock(ResultSet.class);
+        PreparedStatement mockClaimStatement = mock(PreparedStatement.class);
+        given(this.mockDataSource.getConnection()).willReturn(this.mockJdbcConnection);
+        given(this.mockJdbcConnection.prepareStatement(startsWith("SELECT"))).willReturn(this.mockStatement);
+        given(this.mockJdbcConnection.prepareStatement(startsWith("UPDATE"))).willReturn(mockClaimStatement);
+        given(this.mockStatement.executeQuery()).willReturn(mockResultSet);
+        given(mockResultSet.next()).willReturn(true, false);
+        given(mockResultSet.getString(1)).willReturn("id");
+        given(mockClaimStatement.executeUpdate()).willReturn(0);
+
+        this.connectionFactory.relay();
+
+        verify(mockResultSet, never()).getBytes(2);
+        verify(this.mockRelayConnectionFactory, never()).createConnection();
+    }
+
+    @Test
+    void shouldReadMapMessageFromPayload() throws Exception {
+        MapMessage mockMapMessage = mock(MapMessage.class);
+        MapMessage mockRelayMessage = mock(MapMessage.class);
+        byte[] bytes = {1, 2};
+        given(this.mockQueue.getQueueName()).willReturn("orders");
+        given(mockMapMessage.getPropertyNames()).willReturn(Collections.enumeration(List.of("count")));
+        given(mockMapMessage.getObjectProperty("count")).willReturn(1);
+        given(mockMapMessage.getMapNames()).willReturn(Collections.enumeration(List.of("bytes")));
+        given(mockMapMessage.getObject("bytes")).willReturn(bytes);
+        given(this.mockRelaySession.createMapMessage()).willReturn(mockRelayMessage);
+        byte[] payload = OutboxMessage.of(this.mockQueue, mockMapMessage, DeliveryMode.PERSISTENT, 4, 0, 0).toBytes();
+
+        OutboxMessage.fromBytes(payload).toMessage(this.mockRelaySession, null);
+
+        verify(mockRelayMessage).setObject("bytes", bytes);
+        verify(mockRelayMessage).setObjectProperty("count", 1);
+    }
+
+    @Test
+    void shouldRejectUnexpectedClassesInPayload() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(new ArrayList<>());
+        }
+
+        assertThatThrownBy(() -> OutboxMessage.fromBytes(bytes.toByteArray())).isInstanceOf(JMSException.class)
+                .hasCauseInstanceOf(InvalidClassException.class);
+    }
+
+    @Test
+    void shouldRejectObjectMessagesWithoutFilter() throws Exception {
+        ObjectMessage mockObjectMessage = mock(ObjectMessage.class);
+        given(this.mockQueue.getQueueName()).willReturn("orders");
+        given(mockObjectMessage.getPropertyNames()).willReturn(Collections.emptyEnumeration());
+        given(mockObjectMessage.getObject()).willReturn("created");
+        OutboxMessage message = OutboxMessage.of(this.mockQueue, mockObjectMessage, DeliveryMode.PERSISTENT, 4, 0, 0);
+
+        assertThatThrownBy(() -> this.connectionFactory.write(message)).isInstanceOf(JMSException.class);
+        verify(this.mockDataSource, never()).getConnection();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms.pool;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class AdaptiveSessionPoolSizerTests {
+
+    private JmsPoolNarayanaConnectionFactory connectionFactory;
+
+    private AdaptiveSessionPoolSizer sizer;
+
+    @BeforeEach
+    void before() {
+        this.connectionFactory = new JmsPoolNarayanaConnectionFactory();
+        this.connectionFactory.setMaxConnections(1);
+        this.connectionFactory.setMaxSessionsPerConnection(10);
+        this.sizer = new AdaptiveSessionPoolSizer(this.connectionFactory, 1, 2, 5, 20, Duration.ofMillis(10));
+    }
+
+    @AfterEach
+    void after() {
+        this.connectionFactory.stop();
+    }
+
+    @Test
+    void shouldGrowSessionsAndThenConnectionsWhenWaiting() {
+        this.connectionFactory.getStatistics().recordSessionWait(Duration.ofMillis(50).toNanos(), false);
+        this.connectionFactory.getStatistics().recordActiveSessions(10);
+        this.sizer.adjust();
+        assertThat(this.connectionFactory.getMaxSessionsPerConnection()).isEqualTo(20);
+        assertThat(this.connectionFactory.getMaxConnections()).isEqualTo(1);
+
+        this.connectionFactory.getStatistics().recordSessionWait(0, true);
+        this.sizer.adjust();
+        assertThat(this.connectionFactory.getMaxSessionsPerConnection()).isEqualTo(20);
+        assertThat(this.connectionFactory.getMaxConnections()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldShrinkWhenIdle() {
+        this.connectionFactory.setMaxSessionsPerConnection(20);
+        this.sizer.adjust();
+        assertThat(this.connectionFactory.getMaxSessionsPerConnection()).isEqualTo(10);
+        this.sizer.adjust();
+        assertThat(this.connectionFactory.getMaxSessionsPerConnection()).isEqualTo(5);
+    }
+
+    @Test
+    void shouldNotGrowForShortWaits() {
+        this.connectionFactory.getStatistics().recordSessionWait(Duration.ofMillis(1).toNanos(), false);
+        this.connectionFactory.getStatistics().recordActiveSessions(8);
+        this.sizer.adjust();
+        assertThat(this.connectionFactory.getMaxSessionsPerConnection()).isEqualTo(10);
+        assertThat(this.connectionFactory.getMaxConnections()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotGrowForSlowBorrowsBelowSessionLimit() {
+        this.connectionFactory.getStatistics().recordSessionWait(Duration.ofMillis(50).toNanos(), false);
+        this.connectionFactory.getStatistics().recordActiveSessions(8);
+        this.sizer.adjust();
+        assertThat(this.connectionFactory.getMaxSessionsPerConnection()).isEqualTo(10);
+        assertThat(this.connectionFactory.getMaxConnections()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldMoveConfiguredLimitsIntoBoundsOnStart() {
+        this.connectionFactory.setMaxConnections(5);
+        this.connectionFactory.setMaxSessionsPerConnection(1);
+        this.connectionFactory.setAdaptiveSessionPoolSizer(this.sizer);
+        this.sizer.start(Duration.ofMinutes(1));
+        assertThat(this.connectionFactory.getMaxConnections()).isEqualTo(2);
+        assertThat(this.connectionFactory.getMaxSessionsPerConnection()).isEqualTo(5);
+    }
+
+    @Test
+    void shouldRejectInvalidBounds() {
+        assertThatIllegalArgumentException().isThrownBy(
+                () -> new AdaptiveSessionPoolSizer(this.connectionFactory, 2, 1, 5, 20, Duration.ofMillis(10)));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms.pool;
+
+import javax.transaction.xa.XAResource;
+
+import jakarta.jms.Connection;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class NamedXAResourceTests {
+
+    @Mock
+    private XAResource mockXaResource1;
+
+    @Mock
+    private XAResource mockXaResource2;
+
+    @Mock
+    private Connection mockConnection1;
+
+    @Mock
+    private Connection mockConnection2;
+
+    @Test
+    void shouldBeSameRMForSameConnection() throws Exception {
+        NamedXAResource xaResource1 = new NamedXAResource(this.mockXaResource1, "jms", this.mockConnection1);
+        NamedXAResource xaResource2 = new NamedLastXAResource(this.mockXaResource2, "jms", this.mockConnection1);
+
+        assertThat(xaResource1.isSameRM(xaResource2)).isTrue();
+        verify(this.mockXaResource1, never()).isSameRM(any());
+    }
+
+    @Test
+    void shouldDelegateForDifferentConnections() throws Exception {
+        given(this.mockXaResource1.isSameRM(this.mockXaResource2)).willReturn(false);
+        NamedXAResource xaResource1 = new NamedXAResource(this.mockXaResource1, "jms", this.mockConnection1);
+        NamedXAResource xaResource2 = new NamedXAResource(this.mockXaResource2, "jms", this.mockConnection2);
+
+        assertThat(xaResource1.isSameRM(xaResource2)).isFalse();
+        verify(this.mockXaResource1).isSameRM(this.mockXaResource2);
+    }
+
+    @Test
+    void shouldDelegateWithoutResourceManagerId() throws Exception {
+        given(this.mockXaResource1.isSameRM(this.mockXaResource2)).willReturn(true);
+        NamedXAResource xaResource1 = new NamedXAResource(this.mockXaResource1, "jms");
+        NamedXAResource xaResource2 = new NamedXAResource(this.mockXaResource2, "jms");
+
+        assertThat(xaResource1.isSameRM(xaResource2)).isTrue();
+    }
+}
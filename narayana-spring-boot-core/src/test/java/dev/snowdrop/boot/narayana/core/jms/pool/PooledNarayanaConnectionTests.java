@@ -0,0 +1,229 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.jms.pool;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.transaction.xa.XAResource;
+
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionMetaData;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import jakarta.jms.XAConnection;
+import jakarta.jms.XAConnectionFactory;
+import jakarta.jms.XASession;
+import jakarta.transaction.Status;
+import jakarta.transaction.Transaction;
+import jakarta.transaction.TransactionManager;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class PooledNarayanaConnectionTests {
+
+    @Mock
+    private XAConnection mockXaConnection;
+
+    @Mock
+    private XASession mockXaSession;
+
+    @Mock
+    private XAResource mockXaResource;
+
+    @Mock
+    private TransactionManager mockTransactionManager;
+
+    @Mock
+    private Transaction mockTransaction;
+
+    @Mock
+    private TransactionSynchronizationRegistry mockRegistry;
+
+    private final Map<Object, Object> resources = new HashMap<>();
+
+    private PooledNarayanaConnection connection;
+
+    @BeforeEach
+    void before() throws Exception {
+        given(this.mockRegistry.getResource(any())).willAnswer(invocation -> this.resources.get(invocation.getArgument(0)));
+        willAnswer(invocation -> this.resources.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .given(this.mockRegistry).putResource(any(), any());
+        given(this.mockRegistry.getTransactionKey()).willReturn(new Object());
+        given(this.mockXaConnection.getMetaData()).willReturn(mock(ConnectionMetaData.class));
+        given(this.mockXaConnection.createXASession()).willReturn(this.mockXaSession);
+        given(this.mockXaSession.getXAResource()).willReturn(this.mockXaResource);
+        given(this.mockTransactionManager.getStatus()).willReturn(Status.STATUS_ACTIVE);
+        given(this.mockTransactionManager.getTransaction()).willReturn(this.mockTransaction);
+        lenient().when(this.mockTransaction.enlistResource(any())).thenReturn(true);
+        this.connection = new PooledNarayanaConnection(this.mockXaConnection, this.mockTransactionManager, this.mockRegistry,
+                "jms", false, false);
+    }
+
+    @Test
+    void shouldReuseSessionWithinTransaction() throws Exception {
+        Session session1 = this.connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Session session2 = this.connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+
+        assertThat(session2).isSameAs(session1);
+        verify(this.mockXaConnection, times(1)).createXASession();
+        verify(this.mockTransaction, times(1)).enlistResource(any(NamedXAResource.class));
+    }
+
+    @Test
+    void shouldDeferEnlistmentUntilProducerIsCreated() throws Exception {
+        PooledNarayanaConnection lazyConnection = new PooledNarayanaConnection(this.mockXaConnection, this.mockTransactionManager,
+                this.mockRegistry, "jms", false, false, true);
+        Queue mockQueue = mock(Queue.class);
+        given(this.mockXaSession.createProducer(any())).willReturn(mock(MessageProducer.class));
+
+        Session session = lazyConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        verify(this.mockTransaction, never()).enlistResource(any());
+
+        session.createProducer(mockQueue);
+        session.createProducer(mockQueue);
+        verify(this.mockTransaction, times(1)).enlistResource(any(NamedXAResource.class));
+    }
+
+    @Test
+    void shouldNotEnlistUnusedSession() throws Exception {
+        PooledNarayanaConnection lazyConnection = new PooledNarayanaConnection(this.mockXaConnection, this.mockTransactionManager,
+                this.mockRegistry, "jms", false, false, true);
+
+        Session session = lazyConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        session.createTextMessage("unused");
+
+        verify(this.mockTransaction, never()).enlistResource(any());
+    }
+
+    @Test
+    void shouldNotHoldMonitorWhileEnlisting() throws Exception {
+        PooledNarayanaConnection lazyConnection = new PooledNarayanaConnection(this.mockXaConnection, this.mockTransactionManager,
+                this.mockRegistry, "jms", false, false, true);
+        given(this.mockXaSession.createProducer(any())).willReturn(mock(MessageProducer.class));
+        Session session = lazyConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        AtomicBoolean holdsLock = new AtomicBoolean();
+        given(this.mockTransaction.enlistResource(any())).willAnswer(invocation -> {
+            holdsLock.set(Thread.holdsLock(session) || Thread.holdsLock(lazyConnection));
+            return true;
+        });
+
+        session.createProducer(mock(Queue.class));
+
+        verify(this.mockTransaction, times(1)).enlistResource(any(NamedXAResource.class));
+        assertThat(holdsLock).isFalse();
+    }
+
+    @Test
+    void shouldDeferEnlistmentOfSessionFromConnectionFactory() throws Exception {
+        XAConnectionFactory mockXaConnectionFactory = mock(XAConnectionFactory.class);
+        MessageProducer mockProducer = mock(MessageProducer.class);
+        given(mockXaConnectionFactory.createXAConnection()).willReturn(this.mockXaConnection);
+        given(this.mockXaSession.createProducer(any())).willReturn(mockProducer);
+        JmsPoolNarayanaConnectionFactory connectionFactory = new JmsPoolNarayanaConnectionFactory();
+        connectionFactory.setConnectionFactory(mockXaConnectionFactory);
+        connectionFactory.setTransactionManager(this.mockTransactionManager);
+        connectionFactory.setTransactionSynchronizationRegistry(this.mockRegistry);
+        connectionFactory.setLazyEnlistment(true);
+        try {
+            Connection connection = connectionFactory.createConnection();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            assertThat(connection.createSession(false, Session.AUTO_ACKNOWLEDGE)).isSameAs(session);
+            verify(this.mockTransaction, never()).enlistResource(any());
+
+            session.createProducer(mock(Queue.class)).send(session.createTextMessage("test"));
+            verify(this.mockTransaction, times(1)).enlistResource(any(NamedXAResource.class));
+        } finally {
+            connectionFactory.stop();
+        }
+    }
+
+    @Test
+    void shouldEnlistCachedProducerInNextTransaction() throws Exception {
+        PooledNarayanaConnection lazyConnection = new PooledNarayanaConnection(this.mockXaConnection, this.mockTransactionManager,
+                this.mockRegistry, "jms", false, false, true);
+        MessageProducer mockProducer = mock(MessageProducer.class);
+        given(this.mockXaSession.createProducer(any())).willReturn(mockProducer);
+
+        Session session = lazyConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        session.createProducer(null).send(mock(Queue.class), session.createTextMessage("first"));
+        session.close();
+        this.resources.clear();
+        Session nextSession = lazyConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        verify(this.mockTransaction, times(1)).enlistResource(any(NamedXAResource.class));
+        nextSession.createProducer(null).send(mock(Queue.class), nextSession.createTextMessage("second"));
+
+        verify(this.mockTransaction, times(2)).enlistResource(any(NamedXAResource.class));
+    }
+
+    @Test
+    void shouldRecordSessionWaitStatistics() throws Exception {
+        JmsPoolStatistics statistics = new JmsPoolStatistics();
+        List<Duration> waitTimes = new ArrayList<>();
+        statistics.setSessionWaitListener((waitTime, timedOut) -> waitTimes.add(waitTime));
+        this.connection.setStatistics(statistics);
+
+        this.connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+
+        assertThat(statistics.getNumConnections()).isEqualTo(1);
+        assertThat(statistics.getNumActiveSessions()).isEqualTo(1);
+        assertThat(statistics.getSessionWaitCount()).isEqualTo(1);
+        assertThat(statistics.getBlockTimeoutCount()).isZero();
+        assertThat(waitTimes).hasSize(1);
+
+        this.connection.close();
+        assertThat(statistics.getNumConnections()).isZero();
+    }
+
+    @Test
+    void shouldRecordSessionWaitBeforeEnlistment() throws Exception {
+        JmsPoolStatistics statistics = new JmsPoolStatistics();
+        JmsPoolStatistics.SessionWaitListener mockListener = mock(JmsPoolStatistics.SessionWaitListener.class);
+        statistics.setSessionWaitListener(mockListener);
+        this.connection.setStatistics(statistics);
+
+        this.connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+
+        InOrder inOrder = inOrder(mockListener, this.mockTransaction);
+        inOrder.verify(mockListener).sessionBorrowed(any(Duration.class), eq(false));
+        inOrder.verify(this.mockTransaction).enlistResource(any(NamedXAResource.class));
+    }
+}
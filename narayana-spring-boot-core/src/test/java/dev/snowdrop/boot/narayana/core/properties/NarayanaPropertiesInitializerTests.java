@@ -184,4 +184,34 @@ class NarayanaPropertiesInitializerTests {
         assertThat(BeanPopulator.getDefaultInstance(CoreEnvironmentBean.class)
                 .getNodeIdentifier().getBytes(StandardCharsets.UTF_8)).hasSize(28);
     }
+
+    @Test
+    void shouldReplaceXaRecoveryModuleForParallelRecovery() {
+        NarayanaProperties narayanaProperties = new NarayanaProperties();
+        narayanaProperties.getParallelRecovery().setEnabled(true);
+
+        NarayanaPropertiesInitializer narayanaPropertiesInitializer =
+                new NarayanaPropertiesInitializer(narayanaProperties);
+        narayanaPropertiesInitializer.afterPropertiesSet();
+
+        assertThat(BeanPopulator.getDefaultInstance(RecoveryEnvironmentBean.class)
+                .getRecoveryModuleClassNames())
+                .contains("dev.snowdrop.boot.narayana.core.recovery.ParallelXARecoveryModule")
+                .doesNotContain("com.arjuna.ats.internal.jta.recovery.arjunacore.XARecoveryModule");
+    }
+
+    @Test
+    void shouldReplaceXaRecoveryModuleForOnDemandRecovery() {
+        NarayanaProperties narayanaProperties = new NarayanaProperties();
+        narayanaProperties.setOnDemandRecovery(true);
+
+        NarayanaPropertiesInitializer narayanaPropertiesInitializer =
+                new NarayanaPropertiesInitializer(narayanaProperties);
+        narayanaPropertiesInitializer.afterPropertiesSet();
+
+        assertThat(BeanPopulator.getDefaultInstance(RecoveryEnvironmentBean.class)
+                .getRecoveryModuleClassNames())
+                .contains("dev.snowdrop.boot.narayana.core.recovery.ObservableXARecoveryModule")
+                .doesNotContain("com.arjuna.ats.internal.jta.recovery.arjunacore.XARecoveryModule");
+    }
 }
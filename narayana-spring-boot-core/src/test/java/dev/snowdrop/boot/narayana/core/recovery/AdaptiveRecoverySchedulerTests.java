@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.recovery;
+
+import java.time.Duration;
+
+import com.arjuna.ats.arjuna.common.RecoveryEnvironmentBean;
+import com.arjuna.ats.arjuna.common.recoveryPropertyManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveRecoverySchedulerTests {
+
+    private final RecoveryEnvironmentBean recoveryEnvironmentBean = recoveryPropertyManager.getRecoveryEnvironmentBean();
+
+    private int periodicRecoveryPeriod;
+
+    private boolean recoveryPending;
+
+    private int scanRequests;
+
+    private AdaptiveRecoveryScheduler scheduler;
+
+    @BeforeEach
+    void before() {
+        this.periodicRecoveryPeriod = this.recoveryEnvironmentBean.getPeriodicRecoveryPeriod();
+        this.scheduler = new AdaptiveRecoveryScheduler(Duration.ofSeconds(10), Duration.ofSeconds(60), 2) {
+            @Override
+            protected boolean isRecoveryPending() {
+                return AdaptiveRecoverySchedulerTests.this.recoveryPending;
+            }
+
+            @Override
+            protected void requestScan() {
+                AdaptiveRecoverySchedulerTests.this.scanRequests++;
+            }
+        };
+    }
+
+    @AfterEach
+    void after() {
+        this.recoveryEnvironmentBean.setPeriodicRecoveryPeriod(this.periodicRecoveryPeriod);
+    }
+
+    @Test
+    void shouldBackOffWhileNothingIsPending() {
+        assertThat(this.recoveryEnvironmentBean.getPeriodicRecoveryPeriod()).isEqualTo(10);
+        this.scheduler.periodicWorkSecondPass();
+        assertThat(this.recoveryEnvironmentBean.getPeriodicRecoveryPeriod()).isEqualTo(20);
+        this.scheduler.periodicWorkSecondPass();
+        this.scheduler.periodicWorkSecondPass();
+        assertThat(this.recoveryEnvironmentBean.getPeriodicRecoveryPeriod()).isEqualTo(60);
+        assertThat(this.scheduler.getPeriod()).isEqualTo(Duration.ofSeconds(60));
+    }
+
+    @Test
+    void shouldUseMinimumPeriodWhileRecoveryIsPending() {
+        this.scheduler.periodicWorkSecondPass();
+        this.scheduler.periodicWorkSecondPass();
+        this.recoveryPending = true;
+        this.scheduler.periodicWorkSecondPass();
+        assertThat(this.recoveryEnvironmentBean.getPeriodicRecoveryPeriod()).isEqualTo(10);
+        assertThat(this.scanRequests).isZero();
+    }
+
+    @Test
+    void shouldRequestScanWhenFailureIsReported() {
+        this.scheduler.periodicWorkSecondPass();
+        this.scheduler.recoveryRequired();
+        this.scheduler.recoveryRequired();
+        assertThat(this.recoveryEnvironmentBean.getPeriodicRecoveryPeriod()).isEqualTo(10);
+        assertThat(this.scanRequests).isEqualTo(1);
+
+        this.scheduler.periodicWorkSecondPass();
+        assertThat(this.recoveryEnvironmentBean.getPeriodicRecoveryPeriod()).isEqualTo(10);
+        this.scheduler.periodicWorkSecondPass();
+        assertThat(this.recoveryEnvironmentBean.getPeriodicRecoveryPeriod()).isEqualTo(20);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.recovery;
+
+import com.arjuna.ats.arjuna.common.RecoveryEnvironmentBean;
+import com.arjuna.ats.arjuna.common.recoveryPropertyManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdleRecoveryBackoffModuleTests {
+
+    private final RecoveryEnvironmentBean recoveryEnvironmentBean = recoveryPropertyManager.getRecoveryEnvironmentBean();
+
+    private int recoveryBackoffPeriod;
+
+    private boolean workLeft;
+
+    private boolean transactionLogs;
+
+    private IdleRecoveryBackoffModule recoveryModule;
+
+    @BeforeEach
+    void before() {
+        this.recoveryBackoffPeriod = this.recoveryEnvironmentBean.getRecoveryBackoffPeriod();
+        this.recoveryEnvironmentBean.setRecoveryBackoffPeriod(10);
+        this.recoveryModule = new IdleRecoveryBackoffModule() {
+            @Override
+            protected boolean isWorkLeft() {
+                return IdleRecoveryBackoffModuleTests.this.workLeft;
+            }
+
+            @Override
+            protected boolean hasTransactionLogs() {
+                return IdleRecoveryBackoffModuleTests.this.transactionLogs;
+            }
+        };
+    }
+
+    @AfterEach
+    void after() {
+        this.recoveryEnvironmentBean.setRecoveryBackoffPeriod(this.recoveryBackoffPeriod);
+    }
+
+    @Test
+    void shouldKeepBackoffForFirstScan() {
+        this.recoveryModule.periodicWorkFirstPass();
+        assertThat(this.recoveryEnvironmentBean.getRecoveryBackoffPeriod()).isEqualTo(10);
+    }
+
+    @Test
+    void shouldShortenBackoffWhenNothingIsPending() {
+        this.recoveryModule.periodicWorkFirstPass();
+        this.recoveryModule.periodicWorkSecondPass();
+
+        this.recoveryModule.periodicWorkFirstPass();
+        assertThat(this.recoveryEnvironmentBean.getRecoveryBackoffPeriod()).isEqualTo(1);
+        this.recoveryModule.periodicWorkSecondPass();
+        assertThat(this.recoveryEnvironmentBean.getRecoveryBackoffPeriod()).isEqualTo(10);
+    }
+
+    @Test
+    void shouldKeepBackoffWhenTransactionLogsExist() {
+        this.recoveryModule.periodicWorkFirstPass();
+        this.recoveryModule.periodicWorkSecondPass();
+        this.transactionLogs = true;
+
+        this.recoveryModule.periodicWorkFirstPass();
+        assertThat(this.recoveryEnvironmentBean.getRecoveryBackoffPeriod()).isEqualTo(10);
+    }
+
+    @Test
+    void shouldKeepBackoffWhenWorkIsLeft() {
+        this.workLeft = true;
+        this.recoveryModule.periodicWorkFirstPass();
+        this.recoveryModule.periodicWorkSecondPass();
+
+        this.recoveryModule.periodicWorkFirstPass();
+        assertThat(this.recoveryEnvironmentBean.getRecoveryBackoffPeriod()).isEqualTo(10);
+    }
+}
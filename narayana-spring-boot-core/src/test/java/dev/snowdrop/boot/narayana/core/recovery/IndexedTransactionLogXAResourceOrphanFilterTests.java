@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.recovery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.transaction.xa.Xid;
+
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.jta.recovery.XAResourceOrphanFilter.Vote;
+import com.arjuna.ats.jta.xa.XidImple;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndexedTransactionLogXAResourceOrphanFilterTests {
+
+    private final Uid loggedUid = new Uid();
+
+    private final Uid commitMarkableUid = new Uid();
+
+    private final List<Xid> checkedXids = new ArrayList<>();
+
+    private int indexCount;
+
+    private IndexedTransactionLogXAResourceOrphanFilter filter;
+
+    @BeforeEach
+    void before() {
+        this.filter = new IndexedTransactionLogXAResourceOrphanFilter() {
+            @Override
+            UidIndex createIndex() {
+                IndexedTransactionLogXAResourceOrphanFilterTests.this.indexCount++;
+                UidIndex uidIndex = new UidIndex();
+                uidIndex.add(IndexedTransactionLogXAResourceOrphanFilterTests.this.loggedUid);
+                return uidIndex;
+            }
+
+            @Override
+            UidIndex createCommitMarkableIndex() {
+                UidIndex uidIndex = new UidIndex();
+                uidIndex.add(IndexedTransactionLogXAResourceOrphanFilterTests.this.commitMarkableUid);
+                return uidIndex;
+            }
+
+            @Override
+            protected Vote checkTransactionLog(Xid xid) {
+                IndexedTransactionLogXAResourceOrphanFilterTests.this.checkedXids.add(xid);
+                return Vote.ABSTAIN;
+            }
+        };
+    }
+
+    @Test
+    void shouldLeaveAloneIndexedTransaction() {
+        assertThat(this.filter.checkXid(new XidImple(this.loggedUid))).isEqualTo(Vote.LEAVE_ALONE);
+        assertThat(this.checkedXids).isEmpty();
+    }
+
+    @Test
+    void shouldAbstainForTransactionMissingInIndex() {
+        assertThat(this.filter.checkXid(new XidImple(new Uid()))).isEqualTo(Vote.ABSTAIN);
+        assertThat(this.checkedXids).isEmpty();
+    }
+
+    @Test
+    void shouldCheckStoreForCommitMarkableTransaction() {
+        Xid xid = new XidImple(this.commitMarkableUid);
+
+        this.filter.checkXid(xid);
+
+        assertThat(this.checkedXids).containsExactly(xid);
+    }
+
+    @Test
+    void shouldAbstainForForeignXid() {
+        XidImple xid = new XidImple(this.loggedUid);
+        Xid foreignXid = new Xid() {
+            @Override
+            public int getFormatId() {
+                return 0;
+            }
+
+            @Override
+            public byte[] getGlobalTransactionId() {
+                return xid.getGlobalTransactionId();
+            }
+
+            @Override
+            public byte[] getBranchQualifier() {
+                return xid.getBranchQualifier();
+            }
+        };
+
+        assertThat(this.filter.checkXid(foreignXid)).isEqualTo(Vote.ABSTAIN);
+        assertThat(this.indexCount).isZero();
+        assertThat(this.checkedXids).isEmpty();
+    }
+
+    @Test
+    void shouldBuildIndexOncePerScan() {
+        this.filter.periodicWorkFirstPass();
+        this.filter.checkXid(new XidImple(this.loggedUid));
+        this.filter.checkXid(new XidImple(new Uid()));
+        this.filter.checkXid(new XidImple(this.loggedUid));
+        this.filter.periodicWorkSecondPass();
+        assertThat(this.indexCount).isEqualTo(1);
+
+        this.filter.periodicWorkFirstPass();
+        this.filter.checkXid(new XidImple(this.loggedUid));
+        assertThat(this.indexCount).isEqualTo(2);
+    }
+
+    @Test
+    void shouldIndexManyTransactions() {
+        List<Uid> uids = new ArrayList<>();
+        UidIndex uidIndex = new UidIndex();
+        for (int i = 0; i < 10_000; i++) {
+            Uid uid = new Uid();
+            uids.add(uid);
+            assertThat(uidIndex.add(uid)).isTrue();
+        }
+
+        assertThat(uidIndex.add(uids.get(0))).isFalse();
+        assertThat(uidIndex.size()).isEqualTo(10_000);
+        assertThat(uids).allMatch(uid -> uidIndex.contains(new Uid(uid.getBytes())));
+        assertThat(uidIndex.contains(new Uid())).isFalse();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.recovery;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import com.arjuna.ats.arjuna.common.ObjectStoreEnvironmentBean;
+import com.arjuna.ats.jta.recovery.XAResourceRecoveryHelper;
+import com.arjuna.common.internal.util.propertyservice.BeanPopulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ParallelXARecoveryModuleTests {
+
+    private static final long AWAIT_SECONDS = 10;
+
+    @Mock
+    private XAResource mockXaResource;
+
+    @Mock
+    private Xid mockXid;
+
+    private ParallelXARecoveryModule recoveryModule;
+
+    @BeforeAll
+    static void beforeAll() {
+        BeanPopulator.getDefaultInstance(ObjectStoreEnvironmentBean.class).setObjectStoreDir("target/ObjectStore");
+    }
+
+    @BeforeEach
+    void before() {
+        this.recoveryModule = new ParallelXARecoveryModule();
+        this.recoveryModule.setParallelism(4);
+    }
+
+    @AfterEach
+    void after() {
+        this.recoveryModule.shutdown();
+    }
+
+    @Test
+    void shouldScanHelpersConcurrently() throws Exception {
+        given(this.mockXaResource.recover(XAResource.TMSTARTRSCAN)).willReturn(new Xid[]{this.mockXid});
+        given(this.mockXaResource.recover(XAResource.TMENDRSCAN)).willReturn(new Xid[0]);
+        CountDownLatch scanning = new CountDownLatch(3);
+        XAResourceRecoveryHelper helper1 = blockingHelper(scanning);
+        XAResourceRecoveryHelper helper2 = blockingHelper(scanning);
+        XAResourceRecoveryHelper helper3 = blockingHelper(scanning);
+        this.recoveryModule.addXAResourceRecoveryHelper(helper1);
+        this.recoveryModule.addXAResourceRecoveryHelper(helper2);
+        this.recoveryModule.addXAResourceRecoveryHelper(helper3);
+
+        this.recoveryModule.prefetch();
+
+        verify(helper1, times(1)).getXAResources();
+        verify(helper2, times(1)).getXAResources();
+        verify(helper3, times(1)).getXAResources();
+        verify(this.mockXaResource, times(3)).recover(XAResource.TMSTARTRSCAN);
+        verify(this.mockXaResource, times(3)).recover(XAResource.TMENDRSCAN);
+    }
+
+    @Test
+    void shouldSkipHelperExceedingTimeout() throws Exception {
+        this.recoveryModule.setHelperTimeout(Duration.ofMillis(100));
+        CountDownLatch release = new CountDownLatch(1);
+        XAResourceRecoveryHelper helper = mock(XAResourceRecoveryHelper.class);
+        given(helper.getXAResources()).willAnswer(invocation -> {
+            release.await(AWAIT_SECONDS, TimeUnit.SECONDS);
+            return new XAResource[]{this.mockXaResource};
+        });
+        this.recoveryModule.addXAResourceRecoveryHelper(helper);
+
+        try {
+            this.recoveryModule.prefetch();
+        } finally {
+            release.countDown();
+        }
+
+        verify(this.mockXaResource, never()).recover(XAResource.TMSTARTRSCAN);
+    }
+
+    @Test
+    void shouldRemoveWrappedHelper() throws Exception {
+        XAResourceRecoveryHelper helper = mock(XAResourceRecoveryHelper.class);
+        this.recoveryModule.addXAResourceRecoveryHelper(helper);
+        this.recoveryModule.removeXAResourceRecoveryHelper(helper);
+
+        this.recoveryModule.prefetch();
+
+        verify(helper, never()).getXAResources();
+    }
+
+    @Test
+    void shouldStopScanThreadsOnShutdown() throws Exception {
+        AtomicReference<Thread> scanThread = new AtomicReference<>();
+        XAResourceRecoveryHelper helper = mock(XAResourceRecoveryHelper.class);
+        given(helper.getXAResources()).willAnswer(invocation -> {
+            scanThread.set(Thread.currentThread());
+            return new XAResource[0];
+        });
+        this.recoveryModule.addXAResourceRecoveryHelper(helper);
+        this.recoveryModule.prefetch();
+
+        this.recoveryModule.shutdown();
+        scanThread.get().join(TimeUnit.SECONDS.toMillis(AWAIT_SECONDS));
+
+        assertThat(scanThread.get().isAlive()).isFalse();
+    }
+
+    /**
+     * Helper counting down the latch and then waiting for it to reach zero, failing the scan if it doesn't.
+     */
+    private XAResourceRecoveryHelper blockingHelper(CountDownLatch latch) throws Exception {
+        XAResourceRecoveryHelper helper = mock(XAResourceRecoveryHelper.class);
+        given(helper.getXAResources()).willAnswer(invocation -> {
+            latch.countDown();
+            if (!latch.await(AWAIT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Helpers were not scanned concurrently");
+            }
+            return new XAResource[]{this.mockXaResource};
+        });
+        return helper;
+    }
+}
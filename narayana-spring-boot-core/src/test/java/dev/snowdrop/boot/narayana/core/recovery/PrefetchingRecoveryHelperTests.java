@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.recovery;
+
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import com.arjuna.ats.jta.recovery.XAResourceRecoveryHelper;
+import org.jboss.tm.XAResourceWrapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class PrefetchingRecoveryHelperTests {
+
+    @Mock
+    private XAResourceRecoveryHelper mockHelper;
+
+    @Mock
+    private XAResourceWrapper mockXaResource;
+
+    @Mock
+    private Xid mockXid;
+
+    @Test
+    void shouldReturnPrefetchedXidsToFirstScan() throws Exception {
+        given(this.mockHelper.getXAResources()).willReturn(new XAResource[]{this.mockXaResource});
+        given(this.mockXaResource.recover(XAResource.TMSTARTRSCAN)).willReturn(new Xid[]{this.mockXid});
+        given(this.mockXaResource.recover(XAResource.TMENDRSCAN)).willReturn(new Xid[0]);
+        given(this.mockXaResource.getJndiName()).willReturn("dataSource");
+        PrefetchingRecoveryHelper helper = new PrefetchingRecoveryHelper(this.mockHelper);
+
+        helper.prefetch();
+        XAResource[] xaResources = helper.getXAResources();
+
+        assertThat(xaResources).hasSize(1);
+        assertThat(((XAResourceWrapper) xaResources[0]).getJndiName()).isEqualTo("dataSource");
+        assertThat(xaResources[0].recover(XAResource.TMSTARTRSCAN)).containsExactly(this.mockXid);
+        assertThat(xaResources[0].recover(XAResource.TMENDRSCAN)).isEmpty();
+        verify(this.mockHelper, times(1)).getXAResources();
+        verify(this.mockXaResource, times(1)).recover(XAResource.TMSTARTRSCAN);
+        verify(this.mockXaResource, times(1)).recover(XAResource.TMENDRSCAN);
+
+        xaResources[0].commit(this.mockXid, false);
+        verify(this.mockXaResource).commit(this.mockXid, false);
+    }
+
+    @Test
+    void shouldReturnNoResourcesWhenSkipped() throws Exception {
+        PrefetchingRecoveryHelper helper = new PrefetchingRecoveryHelper(this.mockHelper);
+
+        helper.skip();
+
+        assertThat(helper.getXAResources()).isEmpty();
+        verify(this.mockHelper, times(0)).getXAResources();
+    }
+
+    @Test
+    void shouldDelegateWithoutPrefetch() throws Exception {
+        given(this.mockHelper.getXAResources()).willReturn(new XAResource[]{this.mockXaResource});
+        PrefetchingRecoveryHelper helper = new PrefetchingRecoveryHelper(this.mockHelper);
+
+        assertThat(helper.getXAResources()).containsExactly(this.mockXaResource);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.core.recovery;
+
+import java.util.List;
+
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import com.arjuna.ats.arjuna.common.ObjectStoreEnvironmentBean;
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.jta.recovery.XAResourceRecoveryHelper;
+import com.arjuna.ats.jta.xa.XidImple;
+import com.arjuna.common.internal.util.propertyservice.BeanPopulator;
+import dev.snowdrop.boot.narayana.core.jdbc.NamedXAResource;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class RecoveryScannerTests {
+
+    @Mock
+    private XAResource mockXaResource1;
+
+    @Mock
+    private XAResource mockXaResource2;
+
+    private final Xid xid = new XidImple(new Uid());
+
+    private ObservableXARecoveryModule recoveryModule;
+
+    private RecoveryScanner recoveryScanner;
+
+    @BeforeAll
+    static void beforeAll() {
+        BeanPopulator.getDefaultInstance(ObjectStoreEnvironmentBean.class).setObjectStoreDir("target/ObjectStore");
+    }
+
+    @BeforeEach
+    void before() throws Exception {
+        this.recoveryModule = new ObservableXARecoveryModule();
+        this.recoveryModule.addXAResourceRecoveryHelper(helper(new NamedXAResource(this.mockXaResource1, "db1")));
+        this.recoveryModule.addXAResourceRecoveryHelper(helper(new NamedXAResource(this.mockXaResource2, "db2")));
+        this.recoveryScanner = new RecoveryScanner(this.recoveryModule) {
+            @Override
+            protected void runScan() {
+                RecoveryScannerTests.this.recoveryModule.periodicWorkFirstPass();
+                RecoveryScannerTests.this.recoveryModule.periodicWorkSecondPass();
+            }
+        };
+    }
+
+    @Test
+    void shouldReportXidsPerResource() throws Exception {
+        given(this.mockXaResource1.recover(XAResource.TMSTARTRSCAN)).willReturn(new Xid[]{this.xid});
+
+        RecoveryScanResult result = this.recoveryScanner.scan();
+
+        assertThat(result.getResources()).extracting(ResourceScanResult::getName).containsExactly("db1", "db2");
+        ResourceScanResult db1 = result.getResources().get(0);
+        assertThat(db1.getFound()).containsExactly(this.xid);
+        assertThat(db1.getInDoubt()).containsExactly(this.xid);
+        assertThat(db1.getCommitted()).isEmpty();
+        assertThat(db1.getRolledBack()).isEmpty();
+        assertThat(result.getResources().get(1).getFound()).isEmpty();
+    }
+
+    @Test
+    void shouldScanNamedResourcesOnly() throws Exception {
+        RecoveryScanResult result = this.recoveryScanner.scan(List.of("db2"));
+
+        assertThat(result.getResources()).extracting(ResourceScanResult::getName).containsExactly("db2");
+        verify(this.mockXaResource1, never()).recover(anyInt());
+    }
+
+    @Test
+    void shouldNotRecordOutsideOfScan() throws Exception {
+        this.recoveryModule.periodicWorkFirstPass();
+        this.recoveryModule.periodicWorkSecondPass();
+
+        RecoveryScanResult result = this.recoveryModule.observe(List.of(), () -> { });
+
+        assertThat(result.getResources()).isEmpty();
+    }
+
+    private static XAResourceRecoveryHelper helper(XAResource xaResource) throws Exception {
+        XAResourceRecoveryHelper helper = mock(XAResourceRecoveryHelper.class);
+        given(helper.getXAResources()).willReturn(new XAResource[]{xaResource});
+        return helper;
+    }
+}
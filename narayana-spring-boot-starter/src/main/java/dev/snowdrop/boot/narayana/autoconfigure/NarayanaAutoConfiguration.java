@@ -17,6 +17,9 @@
 package dev.snowdrop.boot.narayana.autoconfigure;
 
 import java.io.File;
+import java.util.List;
+
+import javax.sql.DataSource;
 
 import jakarta.jms.Message;
 import jakarta.transaction.Transaction;
@@ -25,30 +28,53 @@ import jakarta.transaction.TransactionSynchronizationRegistry;
 import jakarta.transaction.UserTransaction;
 
 import com.arjuna.ats.arjuna.recovery.RecoveryManager;
+import com.arjuna.ats.arjuna.recovery.RecoveryModule;
 import com.arjuna.ats.internal.jta.recovery.arjunacore.XARecoveryModule;
 import com.arjuna.ats.jbossatx.jta.RecoveryManagerService;
 import com.arjuna.ats.jta.common.jtaPropertyManager;
+import com.arjuna.ats.jta.recovery.XAResourceOrphanFilter;
 import dev.snowdrop.boot.narayana.core.jdbc.GenericXADataSourceWrapper;
 import dev.snowdrop.boot.narayana.core.jms.GenericXAConnectionFactoryWrapper;
+import dev.snowdrop.boot.narayana.core.jms.NamedXAConnectionFactoryWrapper;
 import dev.snowdrop.boot.narayana.core.jms.PooledXAConnectionFactoryWrapper;
+import dev.snowdrop.boot.narayana.core.jms.outbox.OutboxXAConnectionFactoryWrapper;
+import dev.snowdrop.boot.narayana.core.properties.AdaptiveRecoveryProperties;
 import dev.snowdrop.boot.narayana.core.properties.NarayanaProperties;
 import dev.snowdrop.boot.narayana.core.properties.NarayanaPropertiesInitializer;
+import dev.snowdrop.boot.narayana.core.properties.OutboxProperties;
+import dev.snowdrop.boot.narayana.core.recovery.AdaptiveRecoveryScheduler;
+import dev.snowdrop.boot.narayana.core.recovery.IdleRecoveryBackoffModule;
+import dev.snowdrop.boot.narayana.core.recovery.IndexedTransactionLogXAResourceOrphanFilter;
+import dev.snowdrop.boot.narayana.core.recovery.ObservableXARecoveryModule;
+import dev.snowdrop.boot.narayana.core.recovery.ParallelXARecoveryModule;
+import dev.snowdrop.boot.narayana.core.recovery.RecoveryScanner;
 import org.apache.commons.pool2.PooledObject;
 import org.jboss.tm.XAResourceRecoveryRegistry;
 import org.messaginghub.pooled.jms.JmsPoolConnectionFactory;
+import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.boot.jdbc.XADataSourceWrapper;
 import org.springframework.boot.jms.XAConnectionFactoryWrapper;
+import org.springframework.boot.jms.autoconfigure.JmsProperties;
 import org.springframework.boot.system.ApplicationHome;
+import org.springframework.boot.thread.Threading;
 import org.springframework.boot.transaction.autoconfigure.TransactionManagerCustomizers;
 import org.springframework.boot.transaction.jta.autoconfigure.JtaAutoConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.type.AnnotatedTypeMetadata;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.jta.JtaTransactionManager;
 import org.springframework.util.StringUtils;
@@ -130,8 +156,66 @@ public class NarayanaAutoConfiguration {
     @Bean
     @DependsOn("recoveryManagerService")
     @ConditionalOnMissingBean
-    public XARecoveryModule xaRecoveryModule() {
-        return XARecoveryModule.getRegisteredXARecoveryModule();
+    public XARecoveryModule xaRecoveryModule(NarayanaProperties narayanaProperties) {
+        XARecoveryModule xaRecoveryModule = XARecoveryModule.getRegisteredXARecoveryModule();
+        if (xaRecoveryModule instanceof ParallelXARecoveryModule parallelXaRecoveryModule) {
+            parallelXaRecoveryModule.setParallelism(narayanaProperties.getParallelRecovery().getParallelism());
+            parallelXaRecoveryModule.setHelperTimeout(narayanaProperties.getParallelRecovery().getHelperTimeout());
+        }
+        return xaRecoveryModule;
+    }
+
+    @Bean
+    @DependsOn("xaRecoveryModule")
+    @ConditionalOnMissingBean
+    @Conditional(OnIndexedOrphanFilterCondition.class)
+    public IndexedTransactionLogXAResourceOrphanFilter indexedTransactionLogXAResourceOrphanFilter() {
+        for (XAResourceOrphanFilter filter : jtaPropertyManager.getJTAEnvironmentBean().getXaResourceOrphanFilters()) {
+            if (filter instanceof IndexedTransactionLogXAResourceOrphanFilter indexedFilter) {
+                if (!RecoveryManager.manager().getModules().contains(indexedFilter)) {
+                    RecoveryManager.manager().addModule(indexedFilter);
+                }
+                return indexedFilter;
+            }
+        }
+        throw new IllegalStateException(IndexedTransactionLogXAResourceOrphanFilter.class.getName()
+                + " is not in the XA resource orphan filters of Narayana");
+    }
+
+    @Bean
+    @DependsOn("xaRecoveryModule")
+    @ConditionalOnMissingBean
+    @ConditionalOnBooleanProperty(name = "narayana.adaptive-recovery.enabled")
+    public AdaptiveRecoveryScheduler adaptiveRecoveryScheduler(NarayanaProperties narayanaProperties) {
+        AdaptiveRecoveryProperties properties = narayanaProperties.getAdaptiveRecovery();
+        AdaptiveRecoveryScheduler adaptiveRecoveryScheduler = new AdaptiveRecoveryScheduler(properties.getMinPeriod(),
+                properties.getMaxPeriod(), properties.getMultiplier());
+        RecoveryManager.manager().addModule(adaptiveRecoveryScheduler);
+        return adaptiveRecoveryScheduler;
+    }
+
+    @Bean
+    @DependsOn("xaRecoveryModule")
+    @ConditionalOnMissingBean
+    @ConditionalOnBooleanProperty(name = "narayana.shorten-idle-recovery-backoff", matchIfMissing = true)
+    public IdleRecoveryBackoffModule idleRecoveryBackoffModule() {
+        IdleRecoveryBackoffModule idleRecoveryBackoffModule = new IdleRecoveryBackoffModule();
+        RecoveryManager.manager().addModule(idleRecoveryBackoffModule);
+        return idleRecoveryBackoffModule;
+    }
+
+    @Bean
+    @DependsOn("recoveryManagerService")
+    @ConditionalOnMissingBean
+    @ConditionalOnBooleanProperty(name = "narayana.on-demand-recovery")
+    public RecoveryScanner recoveryScanner() {
+        for (RecoveryModule recoveryModule : RecoveryManager.manager().getModules()) {
+            if (recoveryModule instanceof ObservableXARecoveryModule observableXaRecoveryModule) {
+                return new RecoveryScanner(observableXaRecoveryModule);
+            }
+        }
+        throw new IllegalStateException("On-demand recovery requires " + XARecoveryModule.class.getName()
+                + " in narayana.recovery-modules");
     }
 
     private void initLogDir(NarayanaProperties properties) {
@@ -147,6 +231,27 @@ public class NarayanaAutoConfiguration {
         return new File(home, "transaction-logs");
     }
 
+    private static XAConnectionFactoryWrapper withOutbox(XAConnectionFactoryWrapper xaConnectionFactoryWrapper,
+            NarayanaProperties narayanaProperties, BeanFactory beanFactory) {
+        OutboxProperties outboxProperties = narayanaProperties.getOutbox();
+        if (!outboxProperties.isEnabled()) {
+            return xaConnectionFactoryWrapper;
+        }
+        return new OutboxXAConnectionFactoryWrapper(xaConnectionFactoryWrapper,
+                () -> getOutboxDataSource(outboxProperties, beanFactory), outboxProperties);
+    }
+
+    private static DataSource getOutboxDataSource(OutboxProperties outboxProperties, BeanFactory beanFactory) {
+        if (StringUtils.hasText(outboxProperties.getDataSourceName())) {
+            return beanFactory.getBean(outboxProperties.getDataSourceName(), DataSource.class);
+        }
+        DataSource dataSource = beanFactory.getBeanProvider(DataSource.class).getIfUnique();
+        if (dataSource == null) {
+            throw new IllegalStateException("No unique DataSource found for the outbox, set narayana.outbox.data-source-name");
+        }
+        return dataSource;
+    }
+
     /**
      * Generic data source wrapper configuration.
      */
@@ -174,9 +279,10 @@ public class NarayanaAutoConfiguration {
         @Bean
         @ConditionalOnMissingBean(XAConnectionFactoryWrapper.class)
         public XAConnectionFactoryWrapper xaConnectionFactoryWrapper(TransactionManager transactionManager,
-                XARecoveryModule xaRecoveryModule, NarayanaProperties narayanaProperties) {
-            return new GenericXAConnectionFactoryWrapper(transactionManager, xaRecoveryModule,
-                    narayanaProperties.getJmsRecoveryProperties());
+                XARecoveryModule xaRecoveryModule, NarayanaProperties narayanaProperties, BeanFactory beanFactory) {
+            return withOutbox(new GenericXAConnectionFactoryWrapper(transactionManager, xaRecoveryModule,
+                    narayanaProperties.getJmsRecoveryProperties(),
+                    narayanaProperties.getJmsCache()), narayanaProperties, beanFactory);
         }
 
     }
@@ -187,11 +293,46 @@ public class NarayanaAutoConfiguration {
 
         @Bean
         @ConditionalOnMissingBean(XAConnectionFactoryWrapper.class)
-        public XAConnectionFactoryWrapper xaConnectionFactoryWrapper(TransactionManager transactionManager,
-                XARecoveryModule xaRecoveryModule, NarayanaProperties narayanaProperties) {
-            return new PooledXAConnectionFactoryWrapper(transactionManager, xaRecoveryModule,
-                    narayanaProperties.getMessaginghub(),
-                    narayanaProperties.getJmsRecoveryProperties());
+        public NamedXAConnectionFactoryWrapper xaConnectionFactoryWrapper(TransactionManager transactionManager,
+                XARecoveryModule xaRecoveryModule, NarayanaProperties narayanaProperties, BeanFactory beanFactory) {
+            return (NamedXAConnectionFactoryWrapper) withOutbox(new PooledXAConnectionFactoryWrapper(transactionManager,
+                    xaRecoveryModule, narayanaProperties.getMessaginghub(),
+                    narayanaProperties.getJmsRecoveryProperties()), narayanaProperties, beanFactory);
+        }
+
+        /**
+         * Virtual thread JMS listener configuration.
+         */
+        @ConditionalOnThreading(Threading.VIRTUAL)
+        @ConditionalOnBooleanProperty(name = "narayana.messaginghub.virtual-thread-listeners", matchIfMissing = true)
+        static class VirtualThreadJmsListenerConfiguration {
+
+            @Bean
+            @ConditionalOnMissingBean
+            public static VirtualThreadJmsListenerBeanPostProcessor virtualThreadJmsListenerBeanPostProcessor(
+                    ObjectProvider<JmsProperties> jmsProperties) {
+                return new VirtualThreadJmsListenerBeanPostProcessor(jmsProperties);
+            }
+
+        }
+
+    }
+
+    /**
+     * Condition matching if {@link IndexedTransactionLogXAResourceOrphanFilter} is configured in
+     * {@code narayana.xa-resource-orphan-filters}.
+     */
+    static class OnIndexedOrphanFilterCondition extends SpringBootCondition {
+
+        @Override
+        public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            List<String> filters = Binder.get(context.getEnvironment())
+                    .bind("narayana.xa-resource-orphan-filters", Bindable.listOf(String.class))
+                    .orElse(List.of());
+            if (filters.stream().map(String::trim).anyMatch(IndexedTransactionLogXAResourceOrphanFilter.class.getName()::equals)) {
+                return ConditionOutcome.match("Indexed orphan filter is configured");
+            }
+            return ConditionOutcome.noMatch("Indexed orphan filter is not configured");
         }
 
     }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.autoconfigure;
+
+import dev.snowdrop.boot.narayana.core.jms.pool.JmsPoolNarayanaConnectionFactory;
+import org.jboss.logging.Logger;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.jms.autoconfigure.JmsProperties;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
+
+public class VirtualThreadJmsListenerBeanPostProcessor implements BeanPostProcessor {
+
+    private static final Logger LOGGER = Logger.getLogger(VirtualThreadJmsListenerBeanPostProcessor.class);
+
+    private static final String THREAD_NAME_PREFIX = "jms-listener-";
+
+    private final ObjectProvider<JmsProperties> jmsProperties;
+
+    /**
+     * Create a new {@link VirtualThreadJmsListenerBeanPostProcessor} instance. Listener containers created by
+     * {@link DefaultJmsListenerContainerFactory} beans using a {@link JmsPoolNarayanaConnectionFactory} run their
+     * consumers on virtual threads, unless a task executor is configured already. The session pool of
+     * {@link JmsPoolNarayanaConnectionFactory} beans is enlarged to serve the configured listener concurrency.
+     *
+     * @param jmsProperties provider of the JMS properties defining the listener concurrency
+     */
+    public VirtualThreadJmsListenerBeanPostProcessor(ObjectProvider<JmsProperties> jmsProperties) {
+        this.jmsProperties = jmsProperties;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof DefaultJmsListenerContainerFactory listenerContainerFactory) {
+            configureTaskExecutor(listenerContainerFactory, beanName);
+        } else if (bean instanceof JmsPoolNarayanaConnectionFactory connectionFactory) {
+            sizeSessionPool(connectionFactory, beanName);
+        }
+        return bean;
+    }
+
+    private void configureTaskExecutor(DefaultJmsListenerContainerFactory listenerContainerFactory, String beanName) {
+        DirectFieldAccessor accessor = new DirectFieldAccessor(listenerContainerFactory);
+        if (accessor.getPropertyValue("taskExecutor") != null
+                || !(accessor.getPropertyValue("connectionFactory") instanceof JmsPoolNarayanaConnectionFactory)) {
+            return;
+        }
+        LOGGER.debugf("Running listeners of %s on virtual threads", beanName);
+        listenerContainerFactory.setTaskExecutor(new VirtualThreadTaskExecutor(THREAD_NAME_PREFIX));
+    }
+
+    private void sizeSessionPool(JmsPoolNarayanaConnectionFactory connectionFactory, String beanName) {
+        int concurrency = getListenerConcurrency();
+        int connections = Math.max(connectionFactory.getMaxConnections(), 1);
+        int sessionsPerConnection = (concurrency + connections - 1) / connections;
+        int maxSessionsPerConnection = connectionFactory.getMaxSessionsPerConnection();
+        if (maxSessionsPerConnection > 0 && maxSessionsPerConnection < sessionsPerConnection) {
+            LOGGER.debugf("Raising max sessions per connection of %s to %d for %d virtual thread listeners", beanName,
+                    sessionsPerConnection, concurrency);
+            connectionFactory.setMaxSessionsPerConnection(sessionsPerConnection);
+        }
+    }
+
+    private int getListenerConcurrency() {
+        JmsProperties properties = this.jmsProperties.getIfAvailable();
+        if (properties == null) {
+            return 1;
+        }
+        Integer maxConcurrency = properties.getListener().getMaxConcurrency();
+        if (maxConcurrency != null) {
+            return maxConcurrency;
+        }
+        Integer minConcurrency = properties.getListener().getMinConcurrency();
+        return minConcurrency != null ? minConcurrency : 1;
+    }
+}
@@ -19,17 +19,27 @@ package dev.snowdrop.boot.narayana.autoconfigure;
 import java.io.File;
 import java.util.Properties;
 
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.XAConnectionFactory;
 import jakarta.transaction.TransactionManager;
 import jakarta.transaction.TransactionSynchronizationRegistry;
 import jakarta.transaction.UserTransaction;
 
+import com.arjuna.ats.arjuna.recovery.RecoveryManager;
 import com.arjuna.ats.internal.jta.recovery.arjunacore.XARecoveryModule;
 import com.arjuna.ats.jbossatx.jta.RecoveryManagerService;
 import dev.snowdrop.boot.narayana.core.jdbc.GenericXADataSourceWrapper;
 import dev.snowdrop.boot.narayana.core.jms.GenericXAConnectionFactoryWrapper;
+import dev.snowdrop.boot.narayana.core.jms.NamedXAConnectionFactoryWrapper;
 import dev.snowdrop.boot.narayana.core.jms.PooledXAConnectionFactoryWrapper;
+import dev.snowdrop.boot.narayana.core.jms.outbox.OutboxXAConnectionFactoryWrapper;
+import dev.snowdrop.boot.narayana.core.jms.pool.JmsPoolNarayanaConnectionFactory;
 import dev.snowdrop.boot.narayana.core.properties.NarayanaProperties;
 import dev.snowdrop.boot.narayana.core.properties.NarayanaPropertiesInitializer;
+import dev.snowdrop.boot.narayana.core.recovery.AdaptiveRecoveryScheduler;
+import dev.snowdrop.boot.narayana.core.recovery.IdleRecoveryBackoffModule;
+import dev.snowdrop.boot.narayana.core.recovery.IndexedTransactionLogXAResourceOrphanFilter;
+import dev.snowdrop.boot.narayana.core.recovery.RecoveryScanner;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.jdbc.XADataSourceWrapper;
@@ -40,6 +50,8 @@ import org.springframework.transaction.jta.JtaTransactionManager;
 import org.springframework.util.FileSystemUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
 
 /**
  * @author <a href="mailto:gytis@redhat.com">Gytis Trikleris</a>
@@ -69,6 +81,7 @@ class NarayanaAutoConfigurationIT {
         this.context.getBean(JtaTransactionManager.class);
         this.context.getBean(RecoveryManagerService.class);
         this.context.getBean(XARecoveryModule.class);
+        this.context.getBean(IdleRecoveryBackoffModule.class);
     }
 
     @Test
@@ -148,4 +161,81 @@ class NarayanaAutoConfigurationIT {
         XAConnectionFactoryWrapper xaConnectionFactoryWrapper = this.context.getBean(XAConnectionFactoryWrapper.class);
         assertThat(xaConnectionFactoryWrapper).isInstanceOf(PooledXAConnectionFactoryWrapper.class);
     }
+
+    @Test
+    void namedFactoryShouldBeWrappedWithOutbox() throws Exception {
+        Properties properties = new Properties();
+        properties.put("narayana.messaginghub.enabled", "true");
+        properties.put("narayana.messaginghub.factories.orders.max-connections", "4");
+        properties.put("narayana.outbox.enabled", "true");
+        PropertiesPropertySource propertySource = new PropertiesPropertySource("test", properties);
+
+        this.context = new AnnotationConfigApplicationContext();
+        this.context.register(NarayanaAutoConfiguration.class);
+        this.context.getEnvironment().getPropertySources().addFirst(propertySource);
+        this.context.refresh();
+
+        NamedXAConnectionFactoryWrapper xaConnectionFactoryWrapper = this.context.getBean(NamedXAConnectionFactoryWrapper.class);
+        assertThat(xaConnectionFactoryWrapper).isInstanceOf(OutboxXAConnectionFactoryWrapper.class);
+        XAConnectionFactory xaConnectionFactory = mock(XAConnectionFactory.class,
+                withSettings().extraInterfaces(ConnectionFactory.class));
+        ConnectionFactory connectionFactory = xaConnectionFactoryWrapper.wrapConnectionFactory(xaConnectionFactory, "orders");
+        assertThat(connectionFactory).extracting("connectionFactory")
+                .isInstanceOfSatisfying(JmsPoolNarayanaConnectionFactory.class, pooledConnectionFactory -> {
+                    assertThat(pooledConnectionFactory.getName()).isEqualTo("orders");
+                    assertThat(pooledConnectionFactory.getMaxConnections()).isEqualTo(4);
+                });
+    }
+
+    @Test
+    void adaptiveRecoverySchedulerShouldBeRegistered() {
+        Properties properties = new Properties();
+        properties.put("narayana.adaptive-recovery.enabled", "true");
+        PropertiesPropertySource propertySource = new PropertiesPropertySource("test", properties);
+
+        this.context = new AnnotationConfigApplicationContext();
+        this.context.register(NarayanaAutoConfiguration.class);
+        this.context.getEnvironment().getPropertySources().addFirst(propertySource);
+        this.context.refresh();
+
+        AdaptiveRecoveryScheduler adaptiveRecoveryScheduler = this.context.getBean(AdaptiveRecoveryScheduler.class);
+        assertThat(RecoveryManager.manager().getModules()).contains(adaptiveRecoveryScheduler);
+    }
+
+    @Test
+    void indexedOrphanFilterShouldBeRegistered() {
+        Properties properties = new Properties();
+        properties.put("narayana.xa-resource-orphan-filters", IndexedTransactionLogXAResourceOrphanFilter.class.getName());
+        PropertiesPropertySource propertySource = new PropertiesPropertySource("test", properties);
+
+        this.context = new AnnotationConfigApplicationContext();
+        this.context.register(NarayanaAutoConfiguration.class);
+        this.context.getEnvironment().getPropertySources().addFirst(propertySource);
+        this.context.refresh();
+
+        IndexedTransactionLogXAResourceOrphanFilter indexedFilter = this.context.getBean(IndexedTransactionLogXAResourceOrphanFilter.class);
+        assertThat(RecoveryManager.manager().getModules()).contains(indexedFilter);
+    }
+
+    @Test
+    void indexedOrphanFilterShouldNotBeLoadedByDefault() {
+        this.context = new AnnotationConfigApplicationContext(NarayanaAutoConfiguration.class);
+
+        assertThat(this.context.getBeanProvider(IndexedTransactionLogXAResourceOrphanFilter.class).getIfAvailable()).isNull();
+    }
+
+    @Test
+    void recoveryScannerShouldBeLoaded() {
+        Properties properties = new Properties();
+        properties.put("narayana.on-demand-recovery", "true");
+        PropertiesPropertySource propertySource = new PropertiesPropertySource("test", properties);
+
+        this.context = new AnnotationConfigApplicationContext();
+        this.context.register(NarayanaAutoConfiguration.class);
+        this.context.getEnvironment().getPropertySources().addFirst(propertySource);
+        this.context.refresh();
+
+        RecoveryScanner recoveryScanner = this.context.getBean(RecoveryScanner.class);
+        assertThat(recoveryScanner.scan().getResources()).isEmpty();
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.boot.narayana.autoconfigure;
+
+import java.util.concurrent.Executor;
+
+import jakarta.jms.ConnectionFactory;
+
+import dev.snowdrop.boot.narayana.core.jms.pool.JmsPoolNarayanaConnectionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.jms.autoconfigure.JmsProperties;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+@ExtendWith(MockitoExtension.class)
+class VirtualThreadJmsListenerBeanPostProcessorTests {
+
+    @Mock
+    private ObjectProvider<JmsProperties> mockJmsPropertiesProvider;
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void shouldRunListenersOnVirtualThreads() {
+        VirtualThreadJmsListenerBeanPostProcessor postProcessor = new VirtualThreadJmsListenerBeanPostProcessor(this.mockJmsPropertiesProvider);
+        DefaultJmsListenerContainerFactory listenerContainerFactory = new DefaultJmsListenerContainerFactory();
+        listenerContainerFactory.setConnectionFactory(new JmsPoolNarayanaConnectionFactory());
+
+        postProcessor.postProcessAfterInitialization(listenerContainerFactory, "jmsListenerContainerFactory");
+
+        assertThat(getTaskExecutor(listenerContainerFactory)).isInstanceOf(VirtualThreadTaskExecutor.class);
+    }
+
+    @Test
+    void shouldKeepConfiguredTaskExecutor() {
+        VirtualThreadJmsListenerBeanPostProcessor postProcessor = new VirtualThreadJmsListenerBeanPostProcessor(this.mockJmsPropertiesProvider);
+        DefaultJmsListenerContainerFactory listenerContainerFactory = new DefaultJmsListenerContainerFactory();
+        listenerContainerFactory.setConnectionFactory(new JmsPoolNarayanaConnectionFactory());
+        Executor executor = mock(Executor.class);
+        listenerContainerFactory.setTaskExecutor(executor);
+
+        postProcessor.postProcessAfterInitialization(listenerContainerFactory, "jmsListenerContainerFactory");
+
+        assertThat(getTaskExecutor(listenerContainerFactory)).isSameAs(executor);
+    }
+
+    @Test
+    void shouldIgnoreListenersOfOtherConnectionFactories() {
+        VirtualThreadJmsListenerBeanPostProcessor postProcessor = new VirtualThreadJmsListenerBeanPostProcessor(this.mockJmsPropertiesProvider);
+        DefaultJmsListenerContainerFactory listenerContainerFactory = new DefaultJmsListenerContainerFactory();
+        listenerContainerFactory.setConnectionFactory(mock(ConnectionFactory.class));
+
+        postProcessor.postProcessAfterInitialization(listenerContainerFactory, "jmsListenerContainerFactory");
+
+        assertThat(getTaskExecutor(listenerContainerFactory)).isNull();
+    }
+
+    @Test
+    void shouldSizeSessionPoolForListenerConcurrency() {
+        JmsProperties jmsProperties = new JmsProperties();
+        jmsProperties.getListener().setMaxConcurrency(1000);
+        given(this.mockJmsPropertiesProvider.getIfAvailable()).willReturn(jmsProperties);
+        JmsPoolNarayanaConnectionFactory connectionFactory = new JmsPoolNarayanaConnectionFactory();
+        connectionFactory.setMaxConnections(2);
+        VirtualThreadJmsListenerBeanPostProcessor postProcessor = new VirtualThreadJmsListenerBeanPostProcessor(this.mockJmsPropertiesProvider);
+
+        postProcessor.postProcessAfterInitialization(connectionFactory, "connectionFactory");
+
+        assertThat(connectionFactory.getMaxSessionsPerConnection()).isEqualTo(500);
+        jmsProperties.getListener().setMaxConcurrency(2000);
+        postProcessor.postProcessAfterInitialization(connectionFactory, "connectionFactory");
+        assertThat(connectionFactory.getMaxSessionsPerConnection()).isEqualTo(1000);
+    }
+
+    private static Object getTaskExecutor(DefaultJmsListenerContainerFactory listenerContainerFactory) {
+        return new DirectFieldAccessor(listenerContainerFactory).getPropertyValue("taskExecutor");
+    }
+}
@@ -23,6 +23,7 @@ import java.util.Objects;
 import com.arjuna.ats.arjuna.common.Uid;
 import com.arjuna.ats.arjuna.objectstore.StoreManager;
 import com.arjuna.ats.arjuna.recovery.RecoveryManager;
+import com.arjuna.ats.arjuna.recovery.RecoveryModule;
 import com.arjuna.ats.arjuna.state.InputObjectState;
 import com.arjuna.ats.internal.arjuna.common.UidHelper;
 import org.slf4j.Logger;
@@ -64,8 +65,12 @@ public class NarayanaRecoveryTerminationController {
 
             LOG.info("Performing transaction recovery scan...");
             RecoveryManager.manager().scan();
-            LOG.info("Performing second run of transaction recovery scan...");
-            RecoveryManager.manager().scan();
+            if (recoveryWorkLeft()) {
+                LOG.info("Performing second run of transaction recovery scan...");
+                RecoveryManager.manager().scan();
+            } else {
+                LOG.info("First transaction recovery scan found nothing to recover, skipping second run");
+            }
 
         } catch (Exception ex) {
             LOG.error("Error while performing transaction scan", ex);
@@ -101,6 +106,18 @@ public class NarayanaRecoveryTerminationController {
         LOG.info("All service shutdown hooks stopped");
     }
 
+    private boolean recoveryWorkLeft() throws Exception {
+        if (recoveryErrorsDetected()) {
+            return true;
+        }
+        for (RecoveryModule recoveryModule : RecoveryManager.manager().getModules()) {
+            if (recoveryModule.hasWorkLeftToDo()) {
+                return true;
+            }
+        }
+        return !getPendingUids().isEmpty();
+    }
+
     private List<Uid> getPendingUids() throws Exception {
         InputObjectState types = new InputObjectState();
         StoreManager.getRecoveryStore().allTypes(types);